@@ -2,6 +2,7 @@
 package com.squareup.wire;
 
 import com.squareup.protoparser.MessageType;
+import com.squareup.protoparser.Option;
 
 import static com.squareup.protoparser.MessageType.Field;
 
@@ -28,6 +29,16 @@ final class FieldInfo {
     return TypeInfo.isScalar(type) && !"string".equals(type) && !"bytes".equals(type);
   }
 
+  /** Returns true if the field is declared with {@code [lazy = true]}. */
+  public static boolean isLazy(Field field) {
+    for (Option option : field.getOptions()) {
+      if ("lazy".equals(option.getName())) {
+        return "true".equals(String.valueOf(option.getValue()));
+      }
+    }
+    return false;
+  }
+
   public static boolean isRepeated(Field field) {
     return field.getLabel() == MessageType.Label.REPEATED;
   }
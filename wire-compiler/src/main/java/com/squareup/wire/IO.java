@@ -2,8 +2,6 @@
 package com.squareup.wire;
 
 import com.squareup.javawriter.JavaWriter;
-import com.squareup.protoparser.ProtoFile;
-import com.squareup.protoparser.ProtoSchemaParser;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -11,6 +9,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 
 /**
@@ -18,9 +19,9 @@ import java.nio.charset.Charset;
  */
 interface IO {
   /**
-   * Parses the given file.
+   * Returns the contents of the given file.
    */
-  ProtoFile parse(String filename) throws IOException;
+  String read(String filename) throws IOException;
 
   /**
    * Returns a JavaWriter for a given class. The output will be written to:
@@ -39,9 +40,23 @@ interface IO {
     private static final Charset UTF_8 = Charset.forName("UTF8");
 
     @Override
-    public ProtoFile parse(String filename) throws IOException {
-      return ProtoSchemaParser.parse(filename,
-          new InputStreamReader(new FileInputStream(filename), UTF_8));
+    public String read(String filename) throws IOException {
+      return readFile(filename);
+    }
+
+    private static String readFile(String filename) throws IOException {
+      Reader reader = new InputStreamReader(new FileInputStream(filename), UTF_8);
+      try {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[8192];
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+          result.append(buffer, 0, count);
+        }
+        return result.toString();
+      } finally {
+        reader.close();
+      }
     }
 
     @Override
@@ -55,8 +70,38 @@ interface IO {
       }
 
       String fileName = directory + File.separator + className + ".java";
-      System.out.println("Writing generated code to " + fileName);
-      return new JavaWriter(new OutputStreamWriter(new FileOutputStream(fileName), UTF_8));
+      return new JavaWriter(new OutputFileWriter(new File(fileName)));
+    }
+
+    /**
+     * Buffers generated code, and writes it to its file when closed unless the file already has
+     * the same contents. Leaving unchanged files alone keeps their timestamps, so that build tools
+     * don't recompile them.
+     */
+    private static final class OutputFileWriter extends StringWriter {
+      private final File file;
+      private boolean closed;
+
+      OutputFileWriter(File file) {
+        this.file = file;
+      }
+
+      @Override public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        String code = toString();
+        if (file.exists() && code.equals(readFile(file.getPath()))) {
+          System.out.println("Generated code is unchanged in " + file);
+          return;
+        }
+        System.out.println("Writing generated code to " + file);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+        try {
+          writer.write(code);
+        } finally {
+          writer.close();
+        }
+      }
     }
   }
 }
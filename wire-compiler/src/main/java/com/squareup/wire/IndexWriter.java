@@ -0,0 +1,143 @@
+package com.squareup.wire;
+
+import com.squareup.javawriter.JavaWriter;
+import com.squareup.protoparser.EnumType;
+import com.squareup.protoparser.MessageType;
+import com.squareup.protoparser.Type;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.squareup.protoparser.MessageType.Field;
+import static com.squareup.wire.Message.Datatype;
+import static com.squareup.wire.Message.Label;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Collects the generated message and enum types, and emits a class with a {@code TypeIndex}
+ * constant named "TYPES" that describes them. The types of each source file are added by their
+ * own method, so that large schemas do not exceed the size limit of a single method.
+ */
+public class IndexWriter {
+
+  private final WireCompiler compiler;
+  /** Statements adding the types of each source file, by source file name. */
+  private final Map<String, List<String>> statements = new LinkedHashMap<String, List<String>>();
+  private final Set<Datatype> datatypes = new TreeSet<Datatype>(Datatype.ORDER_BY_NAME);
+  private final Set<Label> labels = new TreeSet<Label>(Label.ORDER_BY_NAME);
+
+  public IndexWriter(WireCompiler compiler) {
+    this.compiler = compiler;
+  }
+
+  /** Adds {@code type} and its nested types, from the file currently being compiled. */
+  public void addType(String sourceFileName, Type type) {
+    List<String> fileStatements = statements.get(sourceFileName);
+    if (fileStatements == null) {
+      fileStatements = new ArrayList<String>();
+      statements.put(sourceFileName, fileStatements);
+    }
+    addType(type, fileStatements);
+  }
+
+  // Example:
+  //
+  // builder.message(com.squareup.wire.protos.person.Person.class,
+  //     com.squareup.wire.protos.person.Person.Builder.class);
+  // builder.field(1, "name", STRING, REQUIRED);
+  // builder.field(4, "phone", MESSAGE, REPEATED,
+  //     com.squareup.wire.protos.person.Person.PhoneNumber.class);
+  // builder.enumType(com.squareup.wire.protos.person.Person.PhoneType.class, 0, 1, 2);
+  //
+  private void addType(Type type, List<String> fileStatements) {
+    String javaName = compiler.javaName(type.getFullyQualifiedName());
+    if (type instanceof MessageType) {
+      MessageType messageType = (MessageType) type;
+      fileStatements.add(String.format("builder.message(%s.class,\n%s.Builder.class)",
+          javaName, javaName));
+      for (Field field : messageType.getFields()) {
+        Datatype datatype = compiler.datatype(messageType, field);
+        Label label = label(field, datatype);
+        datatypes.add(datatype);
+        labels.add(label);
+        String args = String.format("%d, \"%s\", %s, %s", field.getTag(),
+            MessageWriter.sanitize(field.getName()), datatype, label);
+        if (datatype == Datatype.ENUM || datatype == Datatype.MESSAGE) {
+          args += ",\n" + compiler.javaName(compiler.fullyQualifiedName(messageType,
+              field.getType())) + ".class";
+        }
+        fileStatements.add("builder.field(" + args + ")");
+      }
+    } else if (type instanceof EnumType) {
+      StringBuilder values = new StringBuilder();
+      for (EnumType.Value value : ((EnumType) type).getValues()) {
+        values.append(", ").append(value.getTag());
+      }
+      fileStatements.add("builder.enumType(" + javaName + ".class" + values + ")");
+    }
+    for (Type nestedType : type.getNestedTypes()) {
+      addType(nestedType, fileStatements);
+    }
+  }
+
+  private static Label label(Field field, Datatype datatype) {
+    if (FieldInfo.isOptional(field)) {
+      return Label.OPTIONAL;
+    } else if (FieldInfo.isPacked(field, datatype == Datatype.ENUM)) {
+      return Label.PACKED;
+    } else {
+      return Label.valueOf(field.getLabel().toString());
+    }
+  }
+
+  public void emitIndex(JavaWriter writer, String className) throws IOException {
+    writer.emitImports("com.squareup.wire.TypeIndex");
+    writer.emitEmptyLine();
+    for (Datatype datatype : datatypes) {
+      writer.emitStaticImports("com.squareup.wire.Message.Datatype." + datatype);
+    }
+    for (Label label : labels) {
+      writer.emitStaticImports("com.squareup.wire.Message.Label." + label);
+    }
+    if (!datatypes.isEmpty()) {
+      writer.emitEmptyLine();
+    }
+    writer.beginType(className, "class", EnumSet.of(PUBLIC, FINAL));
+    writer.emitEmptyLine();
+    writer.emitField("TypeIndex", "TYPES", EnumSet.of(PUBLIC, STATIC, FINAL));
+    writer.emitEmptyLine();
+    writer.beginInitializer(true);
+    writer.emitStatement("TypeIndex.Builder builder = new TypeIndex.Builder()");
+    for (int i = 0; i < statements.size(); i++) {
+      writer.emitStatement("addTypes%d(builder)", i);
+    }
+    writer.emitStatement("TYPES = builder.build()");
+    writer.endInitializer();
+
+    int i = 0;
+    for (Map.Entry<String, List<String>> entry : statements.entrySet()) {
+      writer.emitEmptyLine();
+      writer.emitSingleLineComment("Source file: %s", entry.getKey());
+      writer.beginMethod("void", "addTypes" + i++, EnumSet.of(PRIVATE, STATIC),
+          "TypeIndex.Builder", "builder");
+      for (String statement : entry.getValue()) {
+        writer.emitStatement(statement);
+      }
+      writer.endMethod();
+    }
+
+    // Private no-args constructor
+    writer.emitEmptyLine();
+    writer.beginMethod(null, className, EnumSet.of(PRIVATE));
+    writer.endMethod();
+    writer.endType();
+  }
+}
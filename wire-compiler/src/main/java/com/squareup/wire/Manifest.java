@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records, for each source file of a compile, the hashes of the files it was generated from and
+ * the classes that were generated. A later compile with the same options skips the source files
+ * whose inputs are unchanged and whose classes still exist.
+ *
+ * <p>The manifest is a text file with one tab-separated record per line:
+ *
+ * <pre>
+ * options  &lt;compiler options&gt;
+ * source   &lt;source file&gt;
+ * input    &lt;canonical path&gt;  &lt;SHA-1 of contents&gt;
+ * output   &lt;generated class name&gt;
+ * </pre>
+ *
+ * Each source record is followed by its input and output records.
+ */
+final class Manifest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String OPTIONS = "options";
+  private static final String SOURCE = "source";
+  private static final String INPUT = "input";
+  private static final String OUTPUT = "output";
+
+  private final String options;
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+  Manifest(String options) {
+    this.options = options;
+  }
+
+  /** Returns the options of the compile that wrote this manifest, or null if there was none. */
+  String getOptions() {
+    return options;
+  }
+
+  /**
+   * Reads the manifest at {@code file}. Returns an empty manifest if there is none, if it was
+   * written with options other than {@code options}, or if it is malformed.
+   */
+  static Manifest read(File file, String options) throws IOException {
+    Manifest manifest = new Manifest(options);
+    BufferedReader reader;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+    } catch (FileNotFoundException e) {
+      return manifest;
+    }
+    try {
+      String line = reader.readLine();
+      if (line == null || !line.equals(OPTIONS + "\t" + options)) {
+        return new Manifest(options);
+      }
+      Entry entry = null;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", -1);
+        if (fields[0].equals(SOURCE) && fields.length == 2) {
+          entry = new Entry(new TreeMap<String, String>(), new ArrayList<String>());
+          manifest.entries.put(fields[1], entry);
+        } else if (fields[0].equals(INPUT) && fields.length == 3 && entry != null) {
+          entry.inputs.put(fields[1], fields[2]);
+        } else if (fields[0].equals(OUTPUT) && fields.length == 2 && entry != null) {
+          entry.outputs.add(fields[1]);
+        } else {
+          return new Manifest(options);
+        }
+      }
+      return manifest;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Returns true if {@code sourceFile} was compiled from {@code inputs}, a map from canonical path
+   * to hash, and all of the classes it generated are still in {@code outputDirectory}.
+   */
+  boolean isUpToDate(String sourceFile, Map<String, String> inputs, String outputDirectory) {
+    Entry entry = entries.get(sourceFile);
+    if (entry == null || !entry.inputs.equals(inputs)) {
+      return false;
+    }
+    for (String className : entry.outputs) {
+      if (!new File(outputDirectory, className.replace('.', File.separatorChar) + ".java")
+          .exists()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the classes generated from {@code sourceFile}, or null if it is not recorded. */
+  List<String> getOutputs(String sourceFile) {
+    Entry entry = entries.get(sourceFile);
+    return entry != null ? entry.outputs : null;
+  }
+
+  /** Records that {@code sourceFile} was compiled from {@code inputs} into {@code outputs}. */
+  void put(String sourceFile, Map<String, String> inputs, List<String> outputs) {
+    entries.put(sourceFile, new Entry(new TreeMap<String, String>(inputs),
+        new ArrayList<String>(outputs)));
+  }
+
+  void write(File file) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+    try {
+      writer.write(OPTIONS + "\t" + options + "\n");
+      for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+        writer.write(SOURCE + "\t" + mapEntry.getKey() + "\n");
+        Entry entry = mapEntry.getValue();
+        for (Map.Entry<String, String> input : entry.inputs.entrySet()) {
+          writer.write(INPUT + "\t" + input.getKey() + "\t" + input.getValue() + "\n");
+        }
+        for (String output : entry.outputs) {
+          writer.write(OUTPUT + "\t" + output + "\n");
+        }
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  private static final class Entry {
+    final Map<String, String> inputs;
+    final List<String> outputs;
+
+    Entry(Map<String, String> inputs, List<String> outputs) {
+      this.inputs = inputs;
+      this.outputs = outputs;
+    }
+  }
+}
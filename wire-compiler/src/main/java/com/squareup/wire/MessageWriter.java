@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -21,6 +22,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import static com.squareup.protoparser.MessageType.Field;
 import static javax.lang.model.element.Modifier.FINAL;
@@ -115,10 +117,7 @@ public class MessageWriter {
     writer.beginType(name, "class", modifiers,
         compiler.hasExtensions(messageType) ? "ExtendableMessage<" + name + ">" : "Message");
 
-    emitMessageOptions(optionsMap);
-    if (compiler.emitOptions()) {
-      emitMessageFieldOptions(messageType);
-    }
+    emitOptions(messageType, optionsMap);
     emitMessageFieldDefaults(messageType);
     emitMessageFields(messageType);
     emitMessageConstructor(messageType);
@@ -127,30 +126,132 @@ public class MessageWriter {
     emitBuilder(messageType);
   }
 
-  private void emitMessageOptions(Map<String, ?> optionsMap) throws IOException {
-    if (optionsMap != null) {
-      StringBuilder sb = new StringBuilder();
-      sb.append("new MessageOptions.Builder()");
-      for (Map.Entry<String, ?> entry : optionsMap.entrySet()) {
-        String fqName = entry.getKey();
-        ExtensionInfo info = compiler.getExtension(fqName);
-        sb.append(WireCompiler.NEW_LINE_INDENT_LINE_WRAP_INDENT);
-        sb.append(String.format(".setExtension(Ext_%s.%s, %s)",
-            info.location, compiler.getTrailingSegment(fqName),
-            compiler.getOptionsMapMaker().createOptionInitializer(entry.getValue(), "", "",
-                info.fqType, false, 1)));
-      }
-      sb.append(WireCompiler.NEW_LINE_INDENT_LINE_WRAP_INDENT);
-      sb.append(".build()");
+  // Example:
+  //
+  // /**
+  //  * Options of this message and its fields, built when first used rather than when this
+  //  * message class is initialized.
+  //  */
+  // public static final class Options {
+  //
+  //   public static final MessageOptions MESSAGE_OPTIONS = new MessageOptions.Builder()
+  //       .setExtension(Ext_custom_options.my_message_option_two, 91011.0F)
+  //       .build();
+  //
+  //   public static final FieldOptions FIELD_OPTIONS_FOO = new FieldOptions.Builder()
+  //       .setExtension(Ext_custom_options.my_field_option_one, 17)
+  //       .build();
+  //
+  //   private Options() {
+  //   }
+  // }
+  //
+  private void emitOptions(MessageType messageType, Map<String, ?> optionsMap)
+      throws IOException {
+    String messageOptions = messageOptionsInitializer(optionsMap);
+    Map<String, String> fieldOptions = compiler.emitOptions()
+        ? fieldOptionsInitializers(messageType)
+        : Collections.<String, String>emptyMap();
+    if (messageOptions == null && fieldOptions.isEmpty()) {
+      return;
+    }
+
+    List<String> initializers = new ArrayList<String>(fieldOptions.values());
+    if (messageOptions != null) {
+      initializers.add(messageOptions);
+    }
+    String className = optionsClassName(messageType, initializers);
+
+    writer.emitEmptyLine();
+    writer.emitJavadoc("Options of this message and its fields, built when first used rather "
+        + "than when this\nmessage class is initialized.");
+    writer.beginType(className, "class", EnumSet.of(PUBLIC, STATIC, FINAL));
+    if (messageOptions != null) {
       writer.emitEmptyLine();
       writer.emitField("MessageOptions", "MESSAGE_OPTIONS", EnumSet.of(PUBLIC, STATIC, FINAL),
-          sb.toString());
+          nested(messageOptions));
+    }
+    if (!fieldOptions.isEmpty()) {
+      writer.emitEmptyLine();
     }
+    for (Map.Entry<String, String> entry : fieldOptions.entrySet()) {
+      writer.emitField("FieldOptions", "FIELD_OPTIONS_" + entry.getKey().toUpperCase(Locale.US),
+          EnumSet.of(PUBLIC, STATIC, FINAL), nested(entry.getValue()));
+    }
+    writer.emitEmptyLine();
+    writer.beginMethod(null, className, EnumSet.of(PRIVATE));
+    writer.endMethod();
+    writer.endType();
+  }
+
+  /**
+   * Returns the name of the class that holds the options of {@code messageType}. This is
+   * "Options", with underscores appended while that name is taken by the message, a type that
+   * encloses it or is nested in it, or a type referenced by its fields or {@code initializers}.
+   * Java does not allow the first two, and the holder would hide the others.
+   */
+  private String optionsClassName(MessageType messageType, List<String> initializers) {
+    Set<String> names = new HashSet<String>(
+        Arrays.asList(messageType.getFullyQualifiedName().split("\\.")));
+    addTypeNames(messageType, names);
+    String className = "Options";
+    while (names.contains(className) || mentions(initializers, className)) {
+      className += "_";
+    }
+    return className;
+  }
+
+  /** Adds the names of {@code type}, its nested types, and the types of their fields. */
+  private void addTypeNames(Type type, Set<String> names) {
+    names.add(type.getName());
+    if (type instanceof MessageType) {
+      for (Field field : ((MessageType) type).getFields()) {
+        String javaName = compiler.javaName((MessageType) type, field.getType());
+        names.addAll(Arrays.asList(javaName.split("\\.")));
+      }
+    }
+    for (Type nestedType : type.getNestedTypes()) {
+      addTypeNames(nestedType, names);
+    }
+  }
+
+  private static boolean mentions(List<String> initializers, String name) {
+    Pattern pattern = Pattern.compile("\\b" + name + "\\b");
+    for (String initializer : initializers) {
+      if (pattern.matcher(initializer).find()) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  private void emitMessageFieldOptions(MessageType messageType) throws IOException {
-    Map<String, List<Option>> fieldOptions = new LinkedHashMap<String, List<Option>>();
+  /** Indents the continuation lines of an initializer for a member of the Options class. */
+  private static String nested(String initializer) {
+    return initializer.replace("\n", "\n" + WireCompiler.INDENT);
+  }
+
+  private String messageOptionsInitializer(Map<String, ?> optionsMap) {
+    if (optionsMap == null) return null;
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("new MessageOptions.Builder()");
+    for (Map.Entry<String, ?> entry : optionsMap.entrySet()) {
+      String fqName = entry.getKey();
+      ExtensionInfo info = compiler.getExtension(fqName);
+      sb.append(WireCompiler.NEW_LINE_INDENT_LINE_WRAP_INDENT);
+      sb.append(String.format(".setExtension(Ext_%s.%s, %s)",
+          info.location, compiler.getTrailingSegment(fqName),
+          compiler.getOptionsMapMaker().createOptionInitializer(entry.getValue(), "", "",
+              info.fqType, false, 1)));
+    }
+    sb.append(WireCompiler.NEW_LINE_INDENT_LINE_WRAP_INDENT);
+    sb.append(".build()");
+    return sb.toString();
+  }
 
+  /** Returns the initializer of the options of each field that has custom options. */
+  private Map<String, String> fieldOptionsInitializers(MessageType messageType) {
+    Map<String, String> result = new LinkedHashMap<String, String>();
     for (Field field : messageType.getFields()) {
       List<Option> options = new ArrayList<Option>(field.getOptions());
       for (Iterator<Option> iterator = options.iterator(); iterator.hasNext();) {
@@ -160,25 +261,18 @@ public class MessageWriter {
           iterator.remove();
         }
       }
-      if (!options.isEmpty()) {
-        fieldOptions.put(field.getName(), options);
-      }
-    }
+      if (options.isEmpty()) continue;
 
-    if (!fieldOptions.isEmpty()) {
-      writer.emitEmptyLine();
-    }
-
-    for (Map.Entry<String, List<Option>> entry : fieldOptions.entrySet()) {
       Map<String, ?> fieldOptionsMap =
-          compiler.getOptionsMapMaker().createFieldOptionsMap(messageType, entry.getValue());
-      emitFieldOptions(entry.getKey(), fieldOptionsMap);
+          compiler.getOptionsMapMaker().createFieldOptionsMap(messageType, options);
+      if (fieldOptionsMap != null) {
+        result.put(field.getName(), fieldOptionsInitializer(fieldOptionsMap));
+      }
     }
+    return result;
   }
 
-  private void emitFieldOptions(String fieldName, Map<String, ?> optionsMap) throws IOException {
-    if (optionsMap == null) return;
-
+  private String fieldOptionsInitializer(Map<String, ?> optionsMap) {
     StringBuilder sb = new StringBuilder();
     sb.append("new FieldOptions.Builder()");
     for (Map.Entry<String, ?> entry : optionsMap.entrySet()) {
@@ -195,8 +289,7 @@ public class MessageWriter {
     }
     sb.append(WireCompiler.NEW_LINE_INDENT_LINE_WRAP_INDENT);
     sb.append(".build()");
-    writer.emitField("FieldOptions", "FIELD_OPTIONS_" + fieldName.toUpperCase(Locale.US),
-        EnumSet.of(PUBLIC, STATIC, FINAL), sb.toString());
+    return sb.toString();
   }
 
   // Example:
@@ -283,6 +376,7 @@ public class MessageWriter {
       writer.emitAnnotation(ProtoField.class, map);
 
       if (FieldInfo.isRepeated(field)) javaName = "List<" + javaName + ">";
+      if (compiler.isLazy(messageType, field)) javaName = "LazyMessage<" + javaName + ">";
       writer.emitField(javaName, sanitize(field.getName()), EnumSet.of(PUBLIC, FINAL));
     }
   }
@@ -429,6 +523,7 @@ public class MessageWriter {
     emitBuilderConstructors(messageType);
     emitBuilderSetters(messageType);
     if (compiler.hasExtensions(messageType)) emitBuilderSetExtension(messageType);
+    emitBuilderClear(messageType);
     emitBuilderBuild(messageType);
     writer.endType();
   }
@@ -512,23 +607,66 @@ public class MessageWriter {
     writer.endMethod();
   }
 
+  // Example:
+  //
+  // @Override
+  // public Builder clear() {
+  //   super.clear();
+  //   this.optional_int32 = null;
+  //   ...
+  //   return this;
+  // }
+  //
+  private void emitBuilderClear(MessageType messageType) throws IOException {
+    writer.emitEmptyLine();
+    writer.emitAnnotation(Override.class);
+    writer.beginMethod("Builder", "clear", EnumSet.of(PUBLIC));
+    writer.emitStatement("super.clear()");
+    for (Field field : messageType.getFields()) {
+      writer.emitStatement("this.%s = null", sanitize(field.getName()));
+    }
+    writer.emitStatement("return this");
+    writer.endMethod();
+  }
+
   // Example:
   //
   // @Override
   // public SimpleMessage build() {
-  //   checkRequiredFields();
+  //   if (required_int32 == null) {
+  //     throw missingRequiredFields(required_int32, "required_int32");
+  //   }
   //   return new SimpleMessage(this);
   // }
   //
-  // The call to checkRequiredFields will be emitted only if the message has
-  // required fields.
+  // The check will be emitted only if the message has required fields. Its arguments are
+  // ordered by field name, so that missing fields are listed in that order.
   //
   private void emitBuilderBuild(MessageType messageType) throws IOException {
     writer.emitEmptyLine();
     writer.emitAnnotation(Override.class);
     writer.beginMethod(messageType.getName(), "build", EnumSet.of(PUBLIC));
     if (hasRequiredFields(messageType)) {
-      writer.emitStatement("checkRequiredFields()");
+      List<String> names = new ArrayList<String>();
+      for (Field field : messageType.getFields()) {
+        if (FieldInfo.isRequired(field)) {
+          names.add(sanitize(field.getName()));
+        }
+      }
+      Collections.sort(names);
+      StringBuilder condition = new StringBuilder();
+      StringBuilder arguments = new StringBuilder();
+      for (String name : names) {
+        if (condition.length() > 0) {
+          condition.append(" || ");
+          arguments.append(",\n");
+        }
+        condition.append(name).append(" == null");
+        arguments.append(name).append(", \"").append(name).append("\"");
+      }
+      writer.beginControlFlow("if (" + condition + ")");
+      writer.emitStatement("throw missingRequiredFields(%s)", arguments);
+      writer.endControlFlow();
     }
     writer.emitStatement("return new %s(this)", messageType.getName());
     writer.endMethod();
@@ -571,6 +709,7 @@ public class MessageWriter {
   private String getJavaFieldType(ProtoFile protoFile, MessageType messageType, Field field) {
     String javaName = compiler.javaName(protoFile, messageType, field.getType());
     if (FieldInfo.isRepeated(field)) javaName = "List<" + javaName + ">";
+    if (compiler.isLazy(messageType, field)) javaName = "LazyMessage<" + javaName + ">";
     return javaName;
   }
 
@@ -596,7 +735,7 @@ public class MessageWriter {
         && !compiler.isEnum(compiler.fullyQualifiedName(messageType, field.getType()));
   }
 
-  private String sanitize(String name) {
+  static String sanitize(String name) {
     return JAVA_KEYWORDS.contains(name) ? "_" + name : name;
   }
 
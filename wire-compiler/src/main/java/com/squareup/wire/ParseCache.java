@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import com.squareup.protoparser.ProtoFile;
+import com.squareup.protoparser.ProtoSchemaParser;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed .proto files, keyed by canonical path and checked against a hash of their contents.
+ * Share one cache between compiles with {@link WireCompiler#setParseCache} so that each compile
+ * only parses the files that have changed since the last one. This class is thread-safe.
+ */
+public final class ParseCache {
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  /**
+   * Returns the parsed contents of the file {@code fileName}, whose canonical path is
+   * {@code canonicalPath} and whose contents hash to {@code hash}, reusing the previous parse if
+   * the hash is unchanged.
+   */
+  ProtoFile parse(String canonicalPath, String fileName, String data, String hash) {
+    Entry entry = entries.get(canonicalPath);
+    if (entry != null && entry.hash.equals(hash)) {
+      return entry.protoFile;
+    }
+    ProtoFile protoFile = ProtoSchemaParser.parse(fileName, data);
+    entries.put(canonicalPath, new Entry(hash, protoFile));
+    return protoFile;
+  }
+
+  /** Returns the number of files in this cache. */
+  public int size() {
+    return entries.size();
+  }
+
+  /** Removes all files from this cache. */
+  public void clear() {
+    entries.clear();
+  }
+
+  private static final class Entry {
+    final String hash;
+    final ProtoFile protoFile;
+
+    Entry(String hash, ProtoFile protoFile) {
+      this.hash = hash;
+      this.protoFile = protoFile;
+    }
+  }
+}
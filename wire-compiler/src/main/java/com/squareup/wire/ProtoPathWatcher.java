@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Polls a directory tree for .proto files that have been added, removed or modified. A file is
+ * considered modified when its timestamp or length changes.
+ */
+final class ProtoPathWatcher {
+  private final File root;
+  private Map<String, String> snapshot;
+
+  ProtoPathWatcher(String root) {
+    this.root = new File(root);
+    this.snapshot = snapshot();
+  }
+
+  /**
+   * Blocks until a .proto file has changed since this watcher was created or last returned,
+   * checking every {@code intervalMillis}.
+   */
+  void awaitChange(long intervalMillis) throws InterruptedException {
+    while (true) {
+      Thread.sleep(intervalMillis);
+      Map<String, String> newSnapshot = snapshot();
+      if (!newSnapshot.equals(snapshot)) {
+        snapshot = newSnapshot;
+        return;
+      }
+    }
+  }
+
+  private Map<String, String> snapshot() {
+    Map<String, String> result = new TreeMap<String, String>();
+    addFiles(root, result);
+    return result;
+  }
+
+  private static void addFiles(File directory, Map<String, String> snapshot) {
+    File[] files = directory.listFiles();
+    if (files == null) return;
+    for (File file : files) {
+      if (file.isDirectory()) {
+        addFiles(file, snapshot);
+      } else if (file.getName().endsWith(".proto")) {
+        snapshot.put(file.getPath(), file.lastModified() + ":" + file.length());
+      }
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package com.squareup.wire;
+
+import com.squareup.javawriter.JavaWriter;
+import com.squareup.protoparser.MessageType;
+import com.squareup.protoparser.Type;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import javax.lang.model.element.Modifier;
+
+import static com.squareup.protoparser.MessageType.Field;
+import static com.squareup.wire.Message.Datatype;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Emits read-only {@link MessageView} subclasses. The view of message {@code Foo} is named
+ * {@code FooView}; views of nested messages are nested within it in the same way.
+ */
+public class ViewWriter {
+
+  private final WireCompiler compiler;
+  private final JavaWriter writer;
+
+  public ViewWriter(WireCompiler compiler) {
+    this.compiler = compiler;
+    this.writer = compiler.getWriter();
+  }
+
+  public void emitHeader(Set<String> imports, Set<Datatype> datatypes) throws IOException {
+    writer.emitImports(imports);
+    if (!datatypes.isEmpty()) {
+      writer.emitEmptyLine();
+    }
+    for (Datatype datatype : datatypes) {
+      writer.emitStaticImports("com.squareup.wire.Message.Datatype." + datatype.toString());
+    }
+  }
+
+  public void emitView(MessageType messageType, boolean topLevel) throws IOException {
+    Set<Modifier> modifiers = EnumSet.of(PUBLIC, FINAL);
+    if (!topLevel) {
+      modifiers.add(STATIC);
+    }
+    String messageName = compiler.packageRelativeName(compiler.javaName(
+        messageType.getFullyQualifiedName()));
+    String viewName = messageType.getName() + "View";
+
+    writer.emitEmptyLine();
+    writer.emitJavadoc("A read-only view of an encoded {@link %s}.", messageName);
+    writer.beginType(viewName, "class", modifiers, "MessageView");
+    emitConstructors(viewName);
+    for (Field field : messageType.getFields()) {
+      if (FieldInfo.isRepeated(field)) {
+        emitRepeatedGetters(messageType, field);
+      } else {
+        emitGetters(messageType, messageName, field);
+      }
+    }
+    for (Type nestedType : messageType.getNestedTypes()) {
+      if (nestedType instanceof MessageType) {
+        emitView((MessageType) nestedType, false);
+      }
+    }
+    writer.endType();
+  }
+
+  private void emitConstructors(String viewName) throws IOException {
+    writer.emitEmptyLine();
+    writer.beginMethod(null, viewName, EnumSet.of(PUBLIC), "byte[]", "data");
+    writer.emitStatement("super(data, 0, data.length)");
+    writer.endMethod();
+
+    writer.emitEmptyLine();
+    writer.beginMethod(null, viewName, EnumSet.of(PUBLIC),
+        "byte[]", "data", "int", "offset", "int", "count");
+    writer.emitStatement("super(data, offset, count)");
+    writer.endMethod();
+
+    writer.emitEmptyLine();
+    writer.beginMethod(null, viewName, EnumSet.of(PUBLIC), "ByteBuffer", "buffer");
+    writer.emitStatement("super(buffer)");
+    writer.endMethod();
+  }
+
+  // Example:
+  //
+  // public boolean has_id() {
+  //   return lastOffset(2, INT32) != -1;
+  // }
+  //
+  // public int id() {
+  //   int offset = lastOffset(2, INT32);
+  //   if (offset == -1) return Person.DEFAULT_ID;
+  //   return readVarint32(offset);
+  // }
+  //
+  private void emitGetters(MessageType messageType, String messageName, Field field)
+      throws IOException {
+    String name = MessageWriter.sanitize(field.getName());
+    Datatype datatype = datatype(messageType, field);
+
+    writer.emitEmptyLine();
+    writer.beginMethod("boolean", "has_" + field.getName(), EnumSet.of(PUBLIC));
+    writer.emitStatement("return lastOffset(%d, %s) != -1", field.getTag(), datatype);
+    writer.endMethod();
+
+    writer.emitEmptyLine();
+    MessageWriter.emitDocumentation(writer, field.getDocumentation());
+    writer.beginMethod(javaType(messageType, field, datatype), name, EnumSet.of(PUBLIC));
+    writer.emitStatement("int offset = lastOffset(%d, %s)", field.getTag(), datatype);
+    if (datatype == Datatype.MESSAGE) {
+      writer.emitStatement("if (offset == -1) return null");
+      writer.emitStatement("return %s", newView(messageType, field));
+    } else {
+      writer.emitStatement("if (offset == -1) return %s.DEFAULT_%s", messageName,
+          field.getName().toUpperCase(Locale.US));
+      writer.emitStatement("return %s", read(messageType, field, datatype));
+    }
+    writer.endMethod();
+  }
+
+  // Example:
+  //
+  // public int phone_count() {
+  //   return count(4, MESSAGE);
+  // }
+  //
+  // public PersonView.PhoneNumberView phone(int index) {
+  //   int offset = offset(4, MESSAGE, index);
+  //   return new PersonView.PhoneNumberView(array(), contentOffset(offset), readVarint32(offset));
+  // }
+  //
+  private void emitRepeatedGetters(MessageType messageType, Field field) throws IOException {
+    String name = MessageWriter.sanitize(field.getName());
+    Datatype datatype = datatype(messageType, field);
+
+    writer.emitEmptyLine();
+    writer.beginMethod("int", field.getName() + "_count", EnumSet.of(PUBLIC));
+    writer.emitStatement("return count(%d, %s)", field.getTag(), datatype);
+    writer.endMethod();
+
+    writer.emitEmptyLine();
+    MessageWriter.emitDocumentation(writer, field.getDocumentation());
+    writer.beginMethod(javaType(messageType, field, datatype), name, EnumSet.of(PUBLIC),
+        "int", "index");
+    writer.emitStatement("int offset = offset(%d, %s, index)", field.getTag(), datatype);
+    if (datatype == Datatype.MESSAGE) {
+      writer.emitStatement("return %s", newView(messageType, field));
+    } else {
+      writer.emitStatement("return %s", read(messageType, field, datatype));
+    }
+    writer.endMethod();
+  }
+
+  private String newView(MessageType messageType, Field field) {
+    return String.format("new %s(array(), contentOffset(offset), readVarint32(offset))",
+        viewName(messageType, field));
+  }
+
+  private String read(MessageType messageType, Field field, Datatype datatype) {
+    switch (datatype) {
+      case INT32: case UINT32: return "readVarint32(offset)";
+      case INT64: case UINT64: return "readVarint64(offset)";
+      case SINT32: return "readSint32(offset)";
+      case SINT64: return "readSint64(offset)";
+      case FIXED32: case SFIXED32: return "readFixed32(offset)";
+      case FIXED64: case SFIXED64: return "readFixed64(offset)";
+      case BOOL: return "readBool(offset)";
+      case FLOAT: return "readFloat(offset)";
+      case DOUBLE: return "readDouble(offset)";
+      case STRING: return "readString(offset)";
+      case BYTES: return "readBytes(offset)";
+      case ENUM: return "readEnum(offset, " + typeName(messageType, field) + ".class)";
+      default: throw new AssertionError("Unexpected datatype " + datatype);
+    }
+  }
+
+  private String javaType(MessageType messageType, Field field, Datatype datatype) {
+    switch (datatype) {
+      case INT32: case UINT32: case SINT32: case FIXED32: case SFIXED32: return "int";
+      case INT64: case UINT64: case SINT64: case FIXED64: case SFIXED64: return "long";
+      case BOOL: return "boolean";
+      case FLOAT: return "float";
+      case DOUBLE: return "double";
+      case STRING: return "String";
+      case BYTES: return "ByteString";
+      case ENUM: return typeName(messageType, field);
+      case MESSAGE: return viewName(messageType, field);
+      default: throw new AssertionError("Unexpected datatype " + datatype);
+    }
+  }
+
+  Datatype datatype(MessageType messageType, Field field) {
+    return compiler.datatype(messageType, field);
+  }
+
+  /** Returns the package-relative name of the field's enum or message class. */
+  private String typeName(MessageType messageType, Field field) {
+    return compiler.packageRelativeName(fieldJavaName(messageType, field));
+  }
+
+  /** Returns the package-relative name of the view of the field's message type. */
+  private String viewName(MessageType messageType, Field field) {
+    return typeName(messageType, field).replace(".", "View.") + "View";
+  }
+
+  private String fieldJavaName(MessageType messageType, Field field) {
+    return compiler.javaName(compiler.fullyQualifiedName(messageType, field.getType()));
+  }
+}
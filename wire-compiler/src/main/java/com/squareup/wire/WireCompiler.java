@@ -21,22 +21,37 @@ import com.squareup.protoparser.ExtendDeclaration;
 import com.squareup.protoparser.MessageType;
 import com.squareup.protoparser.Option;
 import com.squareup.protoparser.ProtoFile;
+import com.squareup.protoparser.ProtoSchemaParser;
 import com.squareup.protoparser.Type;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.math.BigDecimal;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.squareup.protoparser.MessageType.Field;
 import static com.squareup.wire.Message.Datatype;
@@ -58,34 +73,60 @@ public class WireCompiler {
    * Field options that don't trigger generation of a FIELD_OPTIONS_* field.
    */
   static final Set<String> DEFAULT_FIELD_OPTION_KEYS =
-      new LinkedHashSet<String>(Arrays.asList("default", "deprecated", "packed"));
+      new LinkedHashSet<String>(Arrays.asList("default", "deprecated", "lazy", "packed"));
 
   private static final Charset ISO_8859_1 = Charset.forName("ISO_8859_1");
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
   private static final String PROTO_PATH_FLAG = "--proto_path=";
   private static final String JAVA_OUT_FLAG = "--java_out=";
   private static final String FILES_FLAG = "--files=";
   private static final String REGISTRY_CLASS_FLAG = "--registry_class=";
+  private static final String INDEX_CLASS_FLAG = "--index_class=";
   private static final String ROOTS_FLAG = "--roots=";
   private static final String NO_OPTIONS_FLAG = "--no_options";
+  private static final String VIEWS_FLAG = "--views";
+  private static final String THREADS_FLAG = "--threads=";
+  private static final String MANIFEST_FLAG = "--manifest=";
+  private static final String WATCH_FLAG = "--watch";
+  private static final long WATCH_INTERVAL_MILLIS = 250;
   private static final String CODE_GENERATED_BY_WIRE =
       "Code generated by Wire protocol buffer compiler, do not edit.";
 
+  // Symbols of the whole compile. They are shared with the compilers of single files used by
+  // parallel compiles, which only read them.
   private final String repoPath;
   private final List<String> sourceFileNames;
+  private final List<String> roots;
   private final IO io;
-  private final Set<String> typesToEmit = new LinkedHashSet<String>();
-  private final Map<String, String> javaSymbolMap = new LinkedHashMap<String, String>();
-  private final Set<String> javaSymbols = new LinkedHashSet<String>();
-  private final Set<String> enumTypes = new LinkedHashSet<String>();
-  private final Map<String, String> enumDefaults = new LinkedHashMap<String, String>();
-  private final Map<String, Set<String>> enumValuesByScope =
-      new LinkedHashMap<String, Set<String>>();
-  private final Map<String, ExtensionInfo> extensionInfo =
-      new LinkedHashMap<String, ExtensionInfo>();
-  private final Map<String, FieldInfo> fieldMap = new LinkedHashMap<String, FieldInfo>();
+  private final Set<String> typesToEmit;
+  private final Map<String, String> javaSymbolMap;
+  private final Set<String> javaSymbols;
+  private final Set<String> enumTypes;
+  private final Map<String, String> enumDefaults;
+  private final Map<String, Set<String>> enumValuesByScope;
+  private final Map<String, ExtensionInfo> extensionInfo;
+  private final Map<String, FieldInfo> fieldMap;
   private final String outputDirectory;
   private final String registryClass;
+  private String indexClass;
+  private IndexWriter indexWriter;
+  private int threads = 1;
+  private ParseCache parseCache;
+  private String manifestPath;
+  private Manifest previousManifest;
+  private Manifest manifest;
+  /** Files parsed by this compile, by canonical path. Each file is parsed at most once. */
+  private final Map<String, ProtoFile> parsedFiles = new ConcurrentHashMap<String, ProtoFile>();
+  /** SHA-1 hashes of the contents of the parsed files, by canonical path. */
+  private final Map<String, String> fileHashes = new ConcurrentHashMap<String, String>();
+  /** Files whose symbols have been loaded by each pass of {@link #loadSymbols}. */
+  private final Set<ProtoFile> typesLoaded =
+      Collections.newSetFromMap(new IdentityHashMap<ProtoFile, Boolean>());
+  private final Set<ProtoFile> fieldsLoaded =
+      Collections.newSetFromMap(new IdentityHashMap<ProtoFile, Boolean>());
   private final List<String> extensionClasses = new ArrayList<String>();
+  /** Names of the classes generated for the current source file. */
+  private final List<String> generatedClasses = new ArrayList<String>();
   private final OptionsMapMaker optionsMapMaker = new OptionsMapMaker(this);
 
   private ProtoFile protoFile;
@@ -94,6 +135,7 @@ public class WireCompiler {
   private String protoFileName;
   private String typeBeingGenerated = "";
   private boolean emitOptions = false;
+  private boolean emitViews = false;
 
   /**
    * Runs the compiler. Usage:
@@ -101,7 +143,8 @@ public class WireCompiler {
    * <pre>
    * java WireCompiler --proto_path=<path> --java_out=<path> [--files=<protos.include>]
    *     [--roots=<message_name>[,<message_name>...]] [--registry_class=<class_name>]
-   *     [--no_options]
+   *     [--index_class=<class_name>]
+   *     [--no_options] [--views] [--threads=<count>] [--manifest=<path>] [--watch]
    *     [file [file...]]
    * </pre>
    *
@@ -114,12 +157,44 @@ public class WireCompiler {
    * classes generated during the compile. This list is suitable for passing to Wire's constructor
    * at runtime for constructing its internal extension registry.
    * <p>
+   * If the {@code --index_class} flag is present, its argument must be a Java class name. A class
+   * with the given name will be generated, containing a constant {@code TypeIndex} named "TYPES"
+   * that describes every message and enum generated during the compile. Passing it to
+   * {@code Wire.registerTypeIndex} at runtime lets Wire build its adapters without reflective
+   * discovery.
+   * <p>
    * Unless the {@code --no_options} flag is supplied, code will be emitted for options on messages
    * and fields.  The presence of options on a message will result in a static member named
    * "MESSAGE_OPTIONS", initialized with the options and their values.   The presence of options on
-   * a field (other than the standard options "default", "deprecated", and "packed") will result in
-   * a static member named "FIELD_OPTIONS_&lt;field name&gt;" in the generated code, initialized
-   * with the field option values.
+   * a field (other than the standard options "default", "deprecated", "lazy", and "packed") will
+   * result in a static member named "FIELD_OPTIONS_&lt;field name&gt;", initialized with the
+   * field option values. These members are emitted in a nested class named "Options", so that
+   * they are only built when first used rather than whenever the message class is initialized.
+   * If the message already uses that name, for example for a nested message, underscores are
+   * appended to it.
+   * <p>
+   * If the {@code --views} flag is present, a read-only {@code MessageView} subclass named
+   * "&lt;message name&gt;View" is also emitted for each top-level message. Views decode fields in
+   * place from encoded bytes without building a message.
+   * <p>
+   * A non-repeated message field declared with {@code [lazy = true]} is generated with type
+   * {@code LazyMessage<T>}. Its encoded bytes are kept at parse time and decoded on the first
+   * call to {@code get()}.
+   * <p>
+   * If the {@code --threads} flag is present, its argument is the number of threads used to
+   * parse source files and their imports, and to generate code for each source file. The output
+   * is the same as that of a compile with a single thread, which is the default.
+   * <p>
+   * If the {@code --manifest} flag is present, its argument is the path of a manifest file that
+   * records the hashes of each source file and its transitive imports, together with the
+   * classes generated from them. A later compile with the same manifest and flags only generates
+   * code for source files whose inputs have changed. When {@code --roots} is present, any change
+   * to any input regenerates every source file. Generated files whose contents are unchanged are
+   * never rewritten, so that their timestamps do not trigger downstream recompiles.
+   * <p>
+   * If the {@code --watch} flag is present, the compiler does not exit after compiling. It keeps
+   * parsed files in memory, polls the proto path for changes to .proto files, and recompiles when
+   * one changes. Only source files whose inputs have changed are parsed and generated again.
    * </p>
    *
    */
@@ -127,9 +202,14 @@ public class WireCompiler {
     String protoPath = null;
     String javaOut = null;
     String registryClass = null;
+    String indexClass = null;
     List<String> sourceFileNames = new ArrayList<String>();
     List<String> roots = new ArrayList<String>();
+    String manifestPath = null;
     boolean emitOptions = true;
+    boolean emitViews = false;
+    boolean watch = false;
+    int threads = 1;
 
     int index = 0;
     while (index < args.length) {
@@ -145,8 +225,18 @@ public class WireCompiler {
         roots.addAll(Arrays.asList(args[index].substring(ROOTS_FLAG.length()).split(",")));
       } else if (args[index].startsWith(REGISTRY_CLASS_FLAG)) {
         registryClass = args[index].substring(REGISTRY_CLASS_FLAG.length());
+      } else if (args[index].startsWith(INDEX_CLASS_FLAG)) {
+        indexClass = args[index].substring(INDEX_CLASS_FLAG.length());
       } else if (args[index].equals(NO_OPTIONS_FLAG)) {
         emitOptions = false;
+      } else if (args[index].equals(VIEWS_FLAG)) {
+        emitViews = true;
+      } else if (args[index].startsWith(THREADS_FLAG)) {
+        threads = Integer.parseInt(args[index].substring(THREADS_FLAG.length()));
+      } else if (args[index].startsWith(MANIFEST_FLAG)) {
+        manifestPath = args[index].substring(MANIFEST_FLAG.length());
+      } else if (args[index].equals(WATCH_FLAG)) {
+        watch = true;
       } else {
         sourceFileNames.add(args[index]);
       }
@@ -161,54 +251,389 @@ public class WireCompiler {
       System.err.println(PROTO_PATH_FLAG + " flag not specified, using current dir " + protoPath);
     }
     WireCompiler wireCompiler = new WireCompiler(protoPath, sourceFileNames, roots, javaOut,
-        registryClass, emitOptions);
-    wireCompiler.compile();
+        registryClass, emitOptions, emitViews);
+    wireCompiler.setIndexClass(indexClass);
+    wireCompiler.setThreads(threads);
+    wireCompiler.setManifest(manifestPath);
+    if (watch) {
+      wireCompiler.watch(WATCH_INTERVAL_MILLIS);
+    } else {
+      wireCompiler.compile();
+    }
   }
 
   public WireCompiler(String protoPath, List<String> sourceFileNames, List<String> roots,
       String outputDirectory, String registryClass, boolean emitOptions) {
+    this(protoPath, sourceFileNames, roots, outputDirectory, registryClass, emitOptions, false);
+  }
+
+  public WireCompiler(String protoPath, List<String> sourceFileNames, List<String> roots,
+      String outputDirectory, String registryClass, boolean emitOptions, boolean emitViews) {
     this(protoPath, sourceFileNames, roots, outputDirectory, registryClass, emitOptions,
         new IO.FileIO());
+    this.emitViews = emitViews;
   }
 
    WireCompiler(String protoPath, List<String> sourceFileNames, List<String> roots,
       String outputDirectory, String registryClass, boolean emitOptions, IO io) {
     this.repoPath = protoPath;
-    this.typesToEmit.addAll(roots);
+    this.typesToEmit = new LinkedHashSet<String>(roots);
     this.sourceFileNames = sourceFileNames;
+    this.roots = roots;
+    this.javaSymbolMap = new LinkedHashMap<String, String>();
+    this.javaSymbols = new LinkedHashSet<String>();
+    this.enumTypes = new LinkedHashSet<String>();
+    this.enumDefaults = new LinkedHashMap<String, String>();
+    this.enumValuesByScope = new LinkedHashMap<String, Set<String>>();
+    this.extensionInfo = new LinkedHashMap<String, ExtensionInfo>();
+    this.fieldMap = new LinkedHashMap<String, FieldInfo>();
     this.outputDirectory = outputDirectory;
     this.registryClass = registryClass;
     this.emitOptions = emitOptions;
     this.io = io;
   }
 
+  /**
+   * Creates a compiler for a single file of {@code parent}'s compile. It shares the parent's
+   * symbols, and has its own state for the file and class being generated.
+   */
+  private WireCompiler(WireCompiler parent) {
+    this.repoPath = parent.repoPath;
+    this.typesToEmit = parent.typesToEmit;
+    this.sourceFileNames = parent.sourceFileNames;
+    this.roots = parent.roots;
+    this.javaSymbolMap = parent.javaSymbolMap;
+    this.javaSymbols = parent.javaSymbols;
+    this.enumTypes = parent.enumTypes;
+    this.enumDefaults = parent.enumDefaults;
+    this.enumValuesByScope = parent.enumValuesByScope;
+    this.extensionInfo = parent.extensionInfo;
+    this.fieldMap = parent.fieldMap;
+    this.outputDirectory = parent.outputDirectory;
+    this.registryClass = null;
+    this.emitOptions = parent.emitOptions;
+    this.emitViews = parent.emitViews;
+    this.io = parent.io;
+  }
+
+  /**
+   * Sets the name of the type index class to generate, or null to generate none. See the
+   * {@code --index_class} flag.
+   */
+  public void setIndexClass(String indexClass) {
+    this.indexClass = indexClass;
+  }
+
+  /**
+   * Sets the number of threads used to parse and generate code. See the {@code --threads} flag.
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads < 1: " + threads);
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Sets a cache of parsed files to share with other compiles, or null to share none. Files
+   * whose contents are unchanged since a previous compile using the cache are not parsed again.
+   */
+  public void setParseCache(ParseCache parseCache) {
+    this.parseCache = parseCache;
+  }
+
+  /**
+   * Sets the path of the manifest used to skip unchanged source files, or null to use none. See
+   * the {@code --manifest} flag.
+   */
+  public void setManifest(String manifestPath) {
+    this.manifestPath = manifestPath;
+  }
+
+  /**
+   * Compiles, then recompiles whenever a .proto file in the proto path changes, checking every
+   * {@code intervalMillis}. See the {@code --watch} flag. Failed compiles are reported and
+   * watching continues. Returns only if the calling thread is interrupted.
+   */
+  public void watch(long intervalMillis) {
+    if (parseCache == null) {
+      parseCache = new ParseCache();
+    }
+    ProtoPathWatcher watcher = new ProtoPathWatcher(repoPath);
+    // Unless there is a manifest file, the manifest of the last compile is kept in memory.
+    Manifest lastManifest = new Manifest(null);
+    while (true) {
+      // Symbol tables are rebuilt from the cached files by each compile, so that types that have
+      // been removed or renamed do not linger.
+      WireCompiler compiler = new WireCompiler(repoPath, sourceFileNames, roots, outputDirectory,
+          registryClass, emitOptions, io);
+      compiler.emitViews = emitViews;
+      compiler.indexClass = indexClass;
+      compiler.threads = threads;
+      compiler.parseCache = parseCache;
+      compiler.manifestPath = manifestPath;
+      compiler.previousManifest = lastManifest;
+      long start = System.nanoTime();
+      try {
+        compiler.compile();
+        lastManifest = compiler.manifest;
+        System.out.printf("Compiled in %d ms, watching %s for changes.%n",
+            (System.nanoTime() - start) / 1000000, repoPath);
+      } catch (IOException e) {
+        System.err.println("Compile failed: " + e);
+      } catch (RuntimeException e) {
+        // Includes WireCompilerException and errors from the parser.
+        System.err.println("Compile failed: " + e);
+      }
+      try {
+        watcher.awaitChange(intervalMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
   public void compile() throws IOException {
-    Map<String, ProtoFile> parsedFiles = new LinkedHashMap<String, ProtoFile>();
+    if (threads == 1) {
+      compile(null);
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      compile(executor);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Compiles the source files, parsing them and generating their code on {@code executor} if it
+   * is non-null. Symbols are always loaded on this thread, in source file order, so that the
+   * output does not depend on the order in which tasks finish.
+   */
+  private void compile(ExecutorService executor) throws IOException {
+    if (indexClass != null) {
+      indexWriter = new IndexWriter(this);
+    }
+    if (manifestPath != null || previousManifest != null) {
+      // The roots are included before findDependencies() adds to them.
+      String options = String.format("emitOptions=%s emitViews=%s roots=%s",
+          emitOptions, emitViews, typesToEmit);
+      if (manifestPath != null) {
+        previousManifest = Manifest.read(new File(manifestPath), options);
+      } else if (!options.equals(previousManifest.getOptions())) {
+        previousManifest = new Manifest(options);
+      }
+      manifest = new Manifest(options);
+    }
+    if (executor != null) {
+      parseAll(executor);
+    }
+    Map<String, ProtoFile> sourceFiles = new LinkedHashMap<String, ProtoFile>();
 
     for (String sourceFilename : sourceFileNames) {
       String sourcePath = repoPath + File.separator + sourceFilename;
-      ProtoFile protoFile = io.parse(sourcePath);
-      parsedFiles.put(sourcePath, protoFile);
+      ProtoFile protoFile = parse(sourcePath);
+      sourceFiles.put(sourcePath, protoFile);
 
       loadSymbols(protoFile);
     }
 
     if (!typesToEmit.isEmpty()) {
       System.out.println("Analyzing dependencies of root types.");
-      findDependencies(parsedFiles.values());
+      findDependencies(sourceFiles.values());
+    }
+    javaSymbols.addAll(javaSymbolMap.values());
+
+    // The inputs of each source file, and whether its generated code is up to date.
+    List<Map<String, String>> inputs = new ArrayList<Map<String, String>>();
+    List<Boolean> upToDate = new ArrayList<Boolean>();
+    if (manifest != null) {
+      Map<String, String> allInputs = new TreeMap<String, String>();
+      for (String sourcePath : sourceFiles.keySet()) {
+        addInputs(sourcePath, allInputs);
+      }
+      for (String sourcePath : sourceFiles.keySet()) {
+        Map<String, String> fileInputs = allInputs;
+        if (typesToEmit.isEmpty()) {
+          // Without roots, a file's code only depends on the file and its imports.
+          fileInputs = new TreeMap<String, String>();
+          addInputs(sourcePath, fileInputs);
+        }
+        inputs.add(fileInputs);
+        upToDate.add(previousManifest.isUpToDate(sourcePath, fileInputs, outputDirectory));
+      }
     }
 
-    for (Map.Entry<String, ProtoFile> entry : parsedFiles.entrySet()) {
-      this.sourceFileName = entry.getKey();
-      this.protoFile = entry.getValue();
-      this.protoFileName = protoFileName(protoFile.getFileName());
-      System.out.println("Compiling proto source file " + sourceFileName);
-      compileOne();
+    if (executor == null) {
+      int i = 0;
+      for (Map.Entry<String, ProtoFile> entry : sourceFiles.entrySet()) {
+        setSourceFile(entry.getKey(), entry.getValue());
+        if (manifest != null && upToDate.get(i)) {
+          addToIndex(skipOne());
+        } else {
+          addToIndex(compileOne());
+        }
+        if (manifest != null) {
+          addToManifest(entry.getKey(), inputs.get(i), upToDate.get(i), generatedClasses);
+        }
+        i++;
+      }
+    } else {
+      List<WireCompiler> fileCompilers = new ArrayList<WireCompiler>();
+      List<Future<List<Type>>> results = new ArrayList<Future<List<Type>>>();
+      for (final Map.Entry<String, ProtoFile> entry : sourceFiles.entrySet()) {
+        final WireCompiler fileCompiler = new WireCompiler(this);
+        final boolean skip = manifest != null && upToDate.get(fileCompilers.size());
+        fileCompilers.add(fileCompiler);
+        results.add(executor.submit(new Callable<List<Type>>() {
+          @Override public List<Type> call() throws IOException {
+            fileCompiler.setSourceFile(entry.getKey(), entry.getValue());
+            return skip ? fileCompiler.skipOne() : fileCompiler.compileOne();
+          }
+        }));
+      }
+      // Collect the results of each file in order, so that the registry and index are stable.
+      for (int i = 0; i < results.size(); i++) {
+        WireCompiler fileCompiler = fileCompilers.get(i);
+        List<Type> emittedTypes = get(results.get(i));
+        extensionClasses.addAll(fileCompiler.extensionClasses);
+        sourceFileName = fileCompiler.sourceFileName;
+        addToIndex(emittedTypes);
+        if (manifest != null) {
+          addToManifest(sourceFileName, inputs.get(i), upToDate.get(i),
+              fileCompiler.generatedClasses);
+        }
+      }
     }
 
     if (registryClass != null) {
       emitRegistry();
     }
+    if (indexClass != null) {
+      emitIndex();
+    }
+    if (manifestPath != null) {
+      manifest.write(new File(manifestPath));
+    }
+  }
+
+  private void setSourceFile(String sourceFileName, ProtoFile protoFile) {
+    this.sourceFileName = sourceFileName;
+    this.protoFile = protoFile;
+    this.protoFileName = protoFileName(protoFile.getFileName());
+    generatedClasses.clear();
+    System.out.println("Compiling proto source file " + sourceFileName);
+  }
+
+  /** Adds the file at {@code path} and its transitive imports to {@code inputs}. */
+  private void addInputs(String path, Map<String, String> inputs) throws IOException {
+    String canonicalPath = canonicalPath(path);
+    if (inputs.containsKey(canonicalPath)) return;
+    ProtoFile protoFile = parse(path);
+    inputs.put(canonicalPath, fileHashes.get(canonicalPath));
+    for (String dependency : protoFile.getDependencies()) {
+      addInputs(repoPath + File.separator + dependency, inputs);
+    }
+  }
+
+  /**
+   * Records the classes generated from {@code sourcePath} in the manifest. Those of a skipped
+   * file are carried over from the previous manifest.
+   */
+  private void addToManifest(String sourcePath, Map<String, String> inputs, boolean skipped,
+      List<String> classes) {
+    manifest.put(sourcePath, inputs, skipped ? previousManifest.getOutputs(sourcePath) : classes);
+  }
+
+  private void addToIndex(List<Type> types) {
+    if (indexWriter != null) {
+      for (Type type : types) {
+        indexWriter.addType(sourceFileName, type);
+      }
+    }
+  }
+
+  /**
+   * Parses the source files and everything they import on {@code executor}. A file's imports
+   * are parsed once it has been.
+   */
+  private void parseAll(ExecutorService executor) throws IOException {
+    Set<String> submitted = new LinkedHashSet<String>();
+    List<Future<ProtoFile>> futures = new ArrayList<Future<ProtoFile>>();
+    for (String sourceFilename : sourceFileNames) {
+      submitParse(executor, submitted, futures, repoPath + File.separator + sourceFilename);
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      ProtoFile protoFile = get(futures.get(i));
+      for (String dependency : protoFile.getDependencies()) {
+        submitParse(executor, submitted, futures, repoPath + File.separator + dependency);
+      }
+    }
+  }
+
+  private void submitParse(ExecutorService executor, Set<String> submitted,
+      List<Future<ProtoFile>> futures, final String path) throws IOException {
+    if (!submitted.add(canonicalPath(path))) return;
+    futures.add(executor.submit(new Callable<ProtoFile>() {
+      @Override public ProtoFile call() throws IOException {
+        return parse(path);
+      }
+    }));
+  }
+
+  /** Returns the result of {@code future}, rethrowing the exception of a failed task. */
+  private static <T> T get(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Returns the file at {@code path}, parsing it unless this compile already has. Files are
+   * keyed by canonical path, so that each is parsed once however it is imported.
+   */
+  private ProtoFile parse(String path) throws IOException {
+    String canonicalPath = canonicalPath(path);
+    ProtoFile protoFile = parsedFiles.get(canonicalPath);
+    if (protoFile == null) {
+      String data = io.read(path);
+      String hash = sha1(data);
+      protoFile = parseCache != null
+          ? parseCache.parse(canonicalPath, path, data, hash)
+          : ProtoSchemaParser.parse(path, data);
+      fileHashes.put(canonicalPath, hash);
+      parsedFiles.put(canonicalPath, protoFile);
+    }
+    return protoFile;
+  }
+
+  private static String canonicalPath(String path) throws IOException {
+    return new File(path).getCanonicalPath();
+  }
+
+  /** Returns the SHA-1 hash of the UTF-8 encoding of {@code data}, in hexadecimal. */
+  private static String sha1(String data) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(data.getBytes(UTF_8));
+      StringBuilder result = new StringBuilder();
+      for (byte b : digest) {
+        result.append(String.format("%02x", b & 0xff));
+      }
+      return result.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
   }
 
   boolean emitOptions() {
@@ -316,18 +741,28 @@ public class WireCompiler {
     return fullyQualifiedName(protoFile, messageType, type);
   }
 
+  /** Returns the datatype of {@code field}, resolving enum and message types. */
+  Datatype datatype(MessageType messageType, Field field) {
+    Datatype datatype = Datatype.of(field.getType());
+    if (datatype != null) return datatype;
+    return isEnum(fullyQualifiedName(messageType, field.getType()))
+        ? Datatype.ENUM : Datatype.MESSAGE;
+  }
+
   String shortenJavaName(String fullyQualifiedName) {
     return shortenJavaName(protoFile, fullyQualifiedName);
   }
 
-  private void compileOne() throws IOException {
+  /** Generates the code of the current source file, returning the top-level types emitted. */
+  private List<Type> compileOne() throws IOException {
     typeBeingGenerated = "";
+    List<Type> emittedTypes = new ArrayList<Type>();
 
     if (hasExtends()) {
       try {
         String className = "Ext_" + protoFileName;
         String javaPackage = protoFile.getJavaPackage();
-        writer = io.getJavaWriter(outputDirectory, javaPackage, className);
+        writer = getJavaWriter(javaPackage, className);
         emitExtensionClass();
 
         String extensionClass = javaPackage + "." + className;
@@ -343,9 +778,38 @@ public class WireCompiler {
         String savedType = typeBeingGenerated;
         typeBeingGenerated += type.getName() + ".";
         emitMessageClass(type);
+        emittedTypes.add(type);
+        if (emitViews && type instanceof MessageType) {
+          emitViewClass((MessageType) type);
+        }
         typeBeingGenerated = savedType;
       }
     }
+    return emittedTypes;
+  }
+
+  /**
+   * Records the extension class and returns the types that {@link #compileOne} would generate
+   * for the current source file, without generating them.
+   */
+  private List<Type> skipOne() {
+    System.out.println("Generated code is up to date for " + sourceFileName);
+    if (hasExtends()) {
+      extensionClasses.add(protoFile.getJavaPackage() + ".Ext_" + protoFileName);
+    }
+    List<Type> emittedTypes = new ArrayList<Type>();
+    for (Type type : protoFile.getTypes()) {
+      if (shouldEmitType(type.getFullyQualifiedName())) {
+        emittedTypes.add(type);
+      }
+    }
+    return emittedTypes;
+  }
+
+  /** Returns a writer for a class generated from the current source file. */
+  private JavaWriter getJavaWriter(String javaPackage, String className) throws IOException {
+    generatedClasses.add(javaPackage + "." + className);
+    return io.getJavaWriter(outputDirectory, javaPackage, className);
   }
 
   private boolean hasFieldOption(List<Type> types) {
@@ -422,74 +886,75 @@ public class WireCompiler {
     }
   }
 
-  private boolean shouldEmitType(String name) {
-    return typesToEmit.isEmpty() || typesToEmit.contains(name);
+  private void emitIndex() throws IOException {
+    int packageClassSep = indexClass.lastIndexOf(".");
+    String javaPackage = indexClass.substring(0, packageClassSep);
+    String className = indexClass.substring(packageClassSep + 1);
+    try {
+      writer = io.getJavaWriter(outputDirectory, javaPackage, className);
+      writer.emitSingleLineComment(CODE_GENERATED_BY_WIRE);
+      writer.emitPackage(javaPackage);
+      indexWriter.emitIndex(writer, className);
+    } finally {
+      writer.close();
+    }
   }
 
-  private void findDependencies(Collection<ProtoFile> protoFiles) throws IOException {
-    Set<String> loadedDependencies = new LinkedHashSet<String>();
-    int count = typesToEmit.size();
-    while (true) {
-      for (ProtoFile protoFile : protoFiles) {
-        findDependenciesHelper(protoFile, loadedDependencies);
-      }
-      int newCount = typesToEmit.size();
-      if (newCount == count) {
-        break;
-      }
-      count = newCount;
-    }
+  private boolean shouldEmitType(String name) {
+    return typesToEmit.isEmpty() || typesToEmit.contains(name);
   }
 
-  private void findDependenciesHelper(ProtoFile protoFile, Set<String> loadedDependencies)
-      throws IOException {
-    // Load symbols from imports
-    for (String dependency : protoFile.getDependencies()) {
-      if (!loadedDependencies.contains(dependency)) {
-        String dep = repoPath + File.separator + dependency;
-        ProtoFile dependencyFile = io.parse(dep);
-        loadSymbols(dependencyFile);
-        loadedDependencies.add(dependency);
+  /**
+   * Expands the set of types to emit to include everything reachable from the roots and from
+   * extensions: the types of their fields, and the types enclosing those. Each type is visited
+   * once, by a worklist over the messages declared in {@code protoFiles}.
+   */
+  private void findDependencies(Collection<ProtoFile> protoFiles) {
+    Map<String, MessageType> messageTypes = new LinkedHashMap<String, MessageType>();
+    for (ProtoFile protoFile : protoFiles) {
+      addMessageTypes(protoFile.getTypes(), messageTypes);
+      for (ExtendDeclaration extend : protoFile.getExtendDeclarations()) {
+        typesToEmit.add(extend.getFullyQualifiedName());
+        for (Field field : extend.getFields()) {
+          // FIXME: we need to determine the fully-qualified name of the extension field.
+          // Perhaps this should be handled by protoparser.
+          // For now, just prepend the proto file's package name
+          typesToEmit.add(prefixWithPackageName(protoFile, field.getType()));
+        }
       }
     }
 
-    for (ExtendDeclaration extend : protoFile.getExtendDeclarations()) {
-      String typeName = extend.getFullyQualifiedName();
-      typesToEmit.add(typeName);
-      for (Field field : extend.getFields()) {
-        // FIXME: we need to determine the fully-qualified name of the extension field.
-        // Perhaps this should be handled by protoparser.
-        // For now, just prepend the proto file's package name
-        String fieldTypeName = prefixWithPackageName(protoFile, field.getType());
-        typesToEmit.add(fieldTypeName);
+    Deque<String> worklist = new ArrayDeque<String>(typesToEmit);
+    while (!worklist.isEmpty()) {
+      MessageType messageType = messageTypes.get(worklist.removeFirst());
+      if (messageType == null) continue;
+      for (Field field : messageType.getFields()) {
+        if (!TypeInfo.isScalar(field.getType())) {
+          addDependencyBranch(fullyQualifiedName(messageType, field.getType()), worklist);
+        }
       }
     }
-
-    addDependencies(protoFile.getTypes(), protoFile.getJavaPackage() + ".");
   }
 
-  /** Expands the set of types to emit to include types of fields of current emittable types. */
-  private void addDependencies(List<Type> types, String javaPrefix) {
+  /** Indexes {@code types} and their nested message types by fully-qualified name. */
+  private static void addMessageTypes(List<Type> types, Map<String, MessageType> messageTypes) {
     for (Type type : types) {
-      String name = type.getName();
-      String fqName = type.getFullyQualifiedName();
-      if (type instanceof MessageType && typesToEmit.contains(fqName)) {
-        for (MessageType.Field field : ((MessageType) type).getFields()) {
-          String fieldType = field.getType();
-          if (!TypeInfo.isScalar(fieldType)) {
-            String fqFieldType = fullyQualifiedName((MessageType) type, field.getType());
-            addDependencyBranch(fqFieldType);
-          }
-        }
+      if (type instanceof MessageType) {
+        messageTypes.put(type.getFullyQualifiedName(), (MessageType) type);
       }
-      addDependencies(type.getNestedTypes(), javaPrefix + name + ".");
+      addMessageTypes(type.getNestedTypes(), messageTypes);
     }
   }
 
-  /** Adds a type name and all its ancestors to the set of emittable types. */
-  private void addDependencyBranch(String name) {
+  /**
+   * Adds a type name and all its ancestors to the set of emittable types, and those that were
+   * not already in it to {@code worklist}.
+   */
+  private void addDependencyBranch(String name, Deque<String> worklist) {
     while (typeIsComplete(name)) {
-      typesToEmit.add(name);
+      if (typesToEmit.add(name)) {
+        worklist.addLast(name);
+      }
       name = removeTrailingSegment(name);
     }
   }
@@ -511,21 +976,19 @@ public class WireCompiler {
   private void loadSymbols(ProtoFile protoFile) throws IOException {
     // Make two passes through the input files. In the first pass we collect message and enum
     // types, and in the second pass we collect field types.
-    loadSymbolsHelper(protoFile, new LinkedHashSet<String>(), LoadSymbolsPass.LOAD_TYPES);
-    loadSymbolsHelper(protoFile, new LinkedHashSet<String>(), LoadSymbolsPass.LOAD_FIELDS);
+    loadSymbolsHelper(protoFile, typesLoaded, LoadSymbolsPass.LOAD_TYPES);
+    loadSymbolsHelper(protoFile, fieldsLoaded, LoadSymbolsPass.LOAD_FIELDS);
   }
 
-  // Call with pass == LOAD_TYPES, then pass == LOAD_FIELDS
-  private void loadSymbolsHelper(ProtoFile protoFile, Set<String> loadedDependencies,
+  // Call with pass == LOAD_TYPES, then pass == LOAD_FIELDS. Each file is loaded once per pass
+  // for the whole compile, however many files import it.
+  private void loadSymbolsHelper(ProtoFile protoFile, Set<ProtoFile> loaded,
       LoadSymbolsPass pass) throws IOException {
+    if (!loaded.add(protoFile)) return;
+
     // Load symbols from imports
     for (String dependency : protoFile.getDependencies()) {
-      if (!loadedDependencies.contains(dependency)) {
-        String dep = repoPath + File.separator + dependency;
-        ProtoFile dependencyFile = io.parse(dep);
-        loadSymbolsHelper(dependencyFile, loadedDependencies, pass);
-        loadedDependencies.add(dependency);
-      }
+      loadSymbolsHelper(parse(repoPath + File.separator + dependency), loaded, pass);
     }
 
     addTypes(protoFile.getTypes(), protoFile.getJavaPackage() + ".", pass);
@@ -662,7 +1125,7 @@ public class WireCompiler {
 
   private void emitMessageClass(Type type) throws IOException {
     try {
-      writer = io.getJavaWriter(outputDirectory, protoFile.getJavaPackage(), type.getName());
+      writer = getJavaWriter(protoFile.getJavaPackage(), type.getName());
       writer.emitSingleLineComment(CODE_GENERATED_BY_WIRE);
       writer.emitSingleLineComment("Source file: %s", sourceFileName);
       writer.emitPackage(protoFile.getJavaPackage());
@@ -691,6 +1154,9 @@ public class WireCompiler {
         imports.add("java.util.Collections");
         imports.add("java.util.List");
       }
+      if (hasLazyField(types)) {
+        imports.add("com.squareup.wire.LazyMessage");
+      }
       if (hasExtensions) {
         imports.add("com.squareup.wire.ExtendableMessage");
         imports.add("com.squareup.wire.Extension");
@@ -737,6 +1203,59 @@ public class WireCompiler {
     }
   }
 
+  private void emitViewClass(MessageType type) throws IOException {
+    String javaPackage = protoFile.getJavaPackage();
+    try {
+      writer = getJavaWriter(javaPackage, type.getName() + "View");
+      writer.emitSingleLineComment(CODE_GENERATED_BY_WIRE);
+      writer.emitSingleLineComment("Source file: %s", sourceFileName);
+      writer.emitPackage(javaPackage);
+
+      ViewWriter viewWriter = new ViewWriter(this);
+      Set<String> imports = new LinkedHashSet<String>();
+      imports.add("com.squareup.wire.MessageView");
+      imports.add("java.nio.ByteBuffer");
+      Set<Datatype> datatypes = new TreeSet<Datatype>(Datatype.ORDER_BY_NAME);
+      getViewTypes(viewWriter, type, imports, datatypes);
+
+      viewWriter.emitHeader(imports, datatypes);
+      viewWriter.emitView(type, true);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Collects the imports needed by the view of {@code type}, and the datatypes of its fields.
+   */
+  private void getViewTypes(ViewWriter viewWriter, MessageType type, Set<String> imports,
+      Set<Datatype> datatypes) {
+    for (Field field : type.getFields()) {
+      Datatype datatype = viewWriter.datatype(type, field);
+      if (datatype == Datatype.BYTES) {
+        imports.add("com.squareup.wire.ByteString");
+      }
+      datatypes.add(datatype);
+      String fqName = fullyQualifiedJavaName(type, field.getType());
+      if (fqName != null && fullyQualifiedNameIsOutsidePackage(fqName)) {
+        String packageName = getPackageFromFullyQualifiedJavaName(fqName);
+        String topLevel = packageName + "." + packageRelativeName(fqName).split("\\.")[0];
+        imports.add(datatype == Datatype.MESSAGE ? topLevel + "View" : topLevel);
+      }
+    }
+    for (Type nestedType : type.getNestedTypes()) {
+      if (nestedType instanceof MessageType) {
+        getViewTypes(viewWriter, (MessageType) nestedType, imports, datatypes);
+      }
+    }
+  }
+
+  /** Returns {@code fqName} without its package, e.g. "Person.PhoneNumber". */
+  String packageRelativeName(String fqName) {
+    String packageName = getPackageFromFullyQualifiedJavaName(fqName);
+    return packageName.isEmpty() ? fqName : fqName.substring(packageName.length() + 1);
+  }
+
   private void getExternalTypes(Type parent, List<String> types) {
     if (parent instanceof MessageType) {
       MessageType messageType = (MessageType) parent;
@@ -994,6 +1513,29 @@ public class WireCompiler {
     return false;
   }
 
+  private boolean hasLazyField(List<Type> types) {
+    for (Type type : types) {
+      if (type instanceof MessageType) {
+        for (Field field : ((MessageType) type).getFields()) {
+          if (isLazy((MessageType) type, field)) return true;
+        }
+      }
+      if (hasLazyField(type.getNestedTypes())) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if {@code field} is a non-repeated message field declared with
+   * {@code [lazy = true]}. The option is ignored on other fields.
+   */
+  boolean isLazy(MessageType messageType, Field field) {
+    return FieldInfo.isLazy(field)
+        && !FieldInfo.isRepeated(field)
+        && !TypeInfo.isScalar(field.getType())
+        && !isEnum(fullyQualifiedName(messageType, field.getType()));
+  }
+
   private boolean hasBytesField(List<Type> types) {
     for (Type type : types) {
       if (type instanceof MessageType) {
@@ -1050,9 +1592,6 @@ public class WireCompiler {
   }
 
   private boolean javaTypeIsComplete(String type) {
-    if (javaSymbols.isEmpty()) {
-      javaSymbols.addAll(javaSymbolMap.values());
-    }
     return javaSymbols.contains(type);
   }
 
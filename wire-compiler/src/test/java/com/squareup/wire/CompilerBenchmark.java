@@ -0,0 +1,172 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Measures compiler throughput on a generated schema, with one thread and with several. Each
+ * file declares messages and an enum, and imports a few earlier files. Run with:
+ *
+ * <pre>
+ * java -cp wire-compiler/target/classes:wire-compiler/target/test-classes:&lt;dependencies&gt; \
+ *     com.squareup.wire.CompilerBenchmark [file count] [thread count]
+ * </pre>
+ *
+ * The output of every run is checked against that of the first.
+ */
+public final class CompilerBenchmark {
+  private static final int MESSAGES_PER_FILE = 5;
+  private static final int IMPORTS_PER_FILE = 3;
+  private static final int RUNS = 5;
+
+  private CompilerBenchmark() {
+  }
+
+  public static void main(String... args) throws Exception {
+    int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int threads = args.length > 1
+        ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+    File root = File.createTempFile("wire-benchmark", "");
+    if (!root.delete() || !root.mkdir()) {
+      throw new IOException("Couldn't create " + root);
+    }
+    File protoPath = new File(root, "proto");
+    List<String> sources = writeSchema(protoPath, fileCount);
+
+    String expected = null;
+    for (int threadCount : new int[] { 1, threads }) {
+      for (int run = 0; run < RUNS; run++) {
+        File javaOut = new File(root, "java-" + threadCount + "-" + run);
+        long start = System.nanoTime();
+        compile(protoPath, javaOut, sources, threadCount);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d threads: %d files in %d ms (%.0f files/s)%n", threadCount,
+            fileCount, elapsed / 1000000, fileCount * 1e9 / elapsed);
+
+        String output = readAll(javaOut);
+        if (expected == null) {
+          expected = output;
+        } else if (!expected.equals(output)) {
+          throw new AssertionError("Output of " + threadCount + " threads differs");
+        }
+        delete(javaOut);
+      }
+    }
+    delete(root);
+  }
+
+  private static void compile(File protoPath, File javaOut, List<String> sources, int threads)
+      throws IOException {
+    PrintStream out = System.out;
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override public void write(int b) {
+      }
+    }));
+    try {
+      WireCompiler compiler = new WireCompiler(protoPath.getPath(), sources,
+          Collections.<String>emptyList(), javaOut.getPath(), null, true);
+      compiler.setThreads(threads);
+      compiler.compile();
+    } finally {
+      System.setOut(out);
+    }
+  }
+
+  private static List<String> writeSchema(File protoPath, int fileCount) throws IOException {
+    if (!protoPath.mkdirs()) {
+      throw new IOException("Couldn't create " + protoPath);
+    }
+    List<String> sources = new ArrayList<String>();
+    for (int i = 0; i < fileCount; i++) {
+      String name = "file" + i + ".proto";
+      StringBuilder proto = new StringBuilder();
+      proto.append("package bench.p").append(i).append(";\n");
+      proto.append("option java_package = \"com.squareup.wire.bench.p").append(i).append("\";\n");
+      for (int j = Math.max(0, i - IMPORTS_PER_FILE); j < i; j++) {
+        proto.append("import \"file").append(j).append(".proto\";\n");
+      }
+      proto.append("enum Kind").append(i).append(" { A").append(i).append(" = 0; B")
+          .append(i).append(" = 1; }\n");
+      for (int m = 0; m < MESSAGES_PER_FILE; m++) {
+        proto.append("message M").append(m).append(" {\n");
+        proto.append("  optional int32 a = 1;\n");
+        proto.append("  optional string b = 2 [default = \"b\"];\n");
+        proto.append("  repeated int64 c = 3 [packed = true];\n");
+        proto.append("  optional Kind").append(i).append(" kind = 4;\n");
+        if (i > 0) {
+          proto.append("  optional bench.p").append(i - 1).append(".M").append(m)
+              .append(" previous = 5;\n");
+        }
+        proto.append("  message Nested {\n    required bytes d = 1;\n  }\n");
+        proto.append("  repeated Nested nested = 6;\n");
+        proto.append("}\n");
+      }
+      Writer writer = new OutputStreamWriter(
+          new FileOutputStream(new File(protoPath, name)), "UTF-8");
+      try {
+        writer.write(proto.toString());
+      } finally {
+        writer.close();
+      }
+      sources.add(name);
+    }
+    return sources;
+  }
+
+  /** Returns the paths and contents of the files under {@code dir}, in a stable order. */
+  private static String readAll(File dir) throws IOException {
+    StringBuilder result = new StringBuilder();
+    File[] files = dir.listFiles();
+    Arrays.sort(files);
+    for (File file : files) {
+      if (file.isDirectory()) {
+        result.append(readAll(file));
+      } else {
+        result.append(file.getName()).append('\n');
+        Scanner scanner = new Scanner(file, "UTF-8");
+        try {
+          result.append(scanner.useDelimiter("\\A").next());
+        } finally {
+          scanner.close();
+        }
+      }
+    }
+    return result.toString();
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
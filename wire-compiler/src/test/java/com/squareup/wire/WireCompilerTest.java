@@ -15,10 +15,18 @@
  */
 package com.squareup.wire;
 
+import com.squareup.javawriter.JavaWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import org.junit.After;
 import org.junit.Assert;
@@ -26,6 +34,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class WireCompilerTest {
 
@@ -110,6 +119,45 @@ public class WireCompilerTest {
     }
   }
 
+  private void testProtoWithIndex(String[] sources, String indexClass, String[] outputs)
+      throws Exception {
+    int numFlags = 3;
+    String[] args = new String[numFlags + sources.length];
+    args[0] = "--proto_path=../wire-runtime/src/test/proto";
+    args[1] = "--java_out=" + testDir.getAbsolutePath();
+    args[2] = "--index_class=" + indexClass;
+    System.arraycopy(sources, 0, args, numFlags, sources.length);
+
+    WireCompiler.main(args);
+
+    List<String> filesAfter = getAllFiles(testDir);
+    assertEquals(outputs.length, filesAfter.size());
+
+    for (String output : outputs) {
+      assertFilesMatch(testDir, output);
+    }
+  }
+
+  private void testProtoWithIndexAndThreads(String[] sources, String indexClass, int threads,
+      String[] outputs) throws Exception {
+    int numFlags = 4;
+    String[] args = new String[numFlags + sources.length];
+    args[0] = "--proto_path=../wire-runtime/src/test/proto";
+    args[1] = "--java_out=" + testDir.getAbsolutePath();
+    args[2] = "--index_class=" + indexClass;
+    args[3] = "--threads=" + threads;
+    System.arraycopy(sources, 0, args, numFlags, sources.length);
+
+    WireCompiler.main(args);
+
+    List<String> filesAfter = getAllFiles(testDir);
+    assertEquals(outputs.length, filesAfter.size());
+
+    for (String output : outputs) {
+      assertFilesMatch(testDir, output);
+    }
+  }
+
   private void testProtoWithRoots(String[] sources, String roots, String[] outputs)
       throws Exception {
     int numFlags = 3;
@@ -129,6 +177,24 @@ public class WireCompilerTest {
     }
   }
 
+  private void testProtoWithViews(String[] sources, String[] outputs) throws Exception {
+    int numFlags = 3;
+    String[] args = new String[numFlags + sources.length];
+    args[0] = "--proto_path=../wire-runtime/src/test/proto";
+    args[1] = "--java_out=" + testDir.getAbsolutePath();
+    args[2] = "--views";
+    System.arraycopy(sources, 0, args, numFlags, sources.length);
+
+    WireCompiler.main(args);
+
+    List<String> filesAfter = getAllFiles(testDir);
+    assertEquals(outputs.length, filesAfter.size());
+
+    for (String output : outputs) {
+      assertFilesMatch(testDir, output);
+    }
+  }
+
   @Test public void testPerson() throws Exception {
     String[] sources = {
         "person.proto"
@@ -175,6 +241,158 @@ public class WireCompilerTest {
     testProtoWithRegistry(sources, registry, outputs);
   }
 
+  @Test public void testIndex() throws Exception {
+    String[] sources = {
+        "simple_message.proto",
+        "external_message.proto",
+        "foreign.proto"
+    };
+    String index = "com.squareup.wire.protos.ProtoIndex";
+    String[] outputs = {
+        "com/squareup/wire/protos/ProtoIndex.java",
+        "com/squareup/wire/protos/simple/Ext_simple_message.java",
+        "com/squareup/wire/protos/simple/SimpleMessage.java",
+        "com/squareup/wire/protos/simple/ExternalMessage.java",
+        "com/squareup/wire/protos/foreign/Ext_foreign.java",
+        "com/squareup/wire/protos/foreign/ForeignEnum.java",
+        "com/squareup/wire/protos/foreign/ForeignMessage.java"
+    };
+    testProtoWithIndex(sources, index, outputs);
+  }
+
+  @Test public void testThreads() throws Exception {
+    String[] sources = {
+        "simple_message.proto",
+        "external_message.proto",
+        "foreign.proto"
+    };
+    String index = "com.squareup.wire.protos.ProtoIndex";
+    String[] outputs = {
+        "com/squareup/wire/protos/ProtoIndex.java",
+        "com/squareup/wire/protos/simple/Ext_simple_message.java",
+        "com/squareup/wire/protos/simple/SimpleMessage.java",
+        "com/squareup/wire/protos/simple/ExternalMessage.java",
+        "com/squareup/wire/protos/foreign/Ext_foreign.java",
+        "com/squareup/wire/protos/foreign/ForeignEnum.java",
+        "com/squareup/wire/protos/foreign/ForeignMessage.java"
+    };
+    testProtoWithIndexAndThreads(sources, index, 4, outputs);
+  }
+
+  @Test public void testEachFileIsReadOnce() throws Exception {
+    List<String> sources = Arrays.asList(
+        "simple_message.proto",
+        "external_message.proto",
+        "foreign.proto");
+    final Map<String, Integer> reads = new LinkedHashMap<String, Integer>();
+    IO io = new IO.FileIO() {
+      @Override public String read(String filename) throws IOException {
+        Integer count = reads.get(filename);
+        reads.put(filename, count == null ? 1 : count + 1);
+        return super.read(filename);
+      }
+    };
+    ParseCache parseCache = new ParseCache();
+    for (int i = 0; i < 2; i++) {
+      reads.clear();
+      WireCompiler compiler = new WireCompiler("../wire-runtime/src/test/proto", sources,
+          new ArrayList<String>(), testDir.getAbsolutePath(), null, true, io);
+      compiler.setParseCache(parseCache);
+      compiler.compile();
+      // The sources and descriptor.proto, which foreign.proto imports.
+      assertEquals(4, reads.size());
+      for (Integer count : reads.values()) {
+        assertEquals(1, count.intValue());
+      }
+      assertEquals(4, parseCache.size());
+    }
+    assertFilesMatch(testDir, "com/squareup/wire/protos/simple/SimpleMessage.java");
+  }
+
+  @Test public void testManifest() throws Exception {
+    File protoDir = new File(testDir, "proto");
+    File javaOut = new File(testDir, "java");
+    String manifest = new File(testDir, "wire.manifest").getPath();
+    protoDir.mkdir();
+    writeFile(new File(protoDir, "a.proto"),
+        "package test;\nimport \"b.proto\";\nmessage A { optional B b = 1; }\n");
+    writeFile(new File(protoDir, "b.proto"), "package test;\nmessage B {}\n");
+    writeFile(new File(protoDir, "c.proto"), "package test;\nmessage C {}\n");
+
+    assertEquals(Arrays.asList("test.A", "test.C"),
+        compileWithManifest(protoDir, javaOut, manifest));
+    // Nothing has changed.
+    assertEquals(Arrays.<String>asList(), compileWithManifest(protoDir, javaOut, manifest));
+    // An import of a.proto has changed.
+    writeFile(new File(protoDir, "b.proto"),
+        "package test;\nmessage B { optional int32 i = 1; }\n");
+    assertEquals(Arrays.asList("test.A"), compileWithManifest(protoDir, javaOut, manifest));
+    // An output has been deleted.
+    assertTrue(new File(javaOut, "test/C.java").delete());
+    assertEquals(Arrays.asList("test.C"), compileWithManifest(protoDir, javaOut, manifest));
+  }
+
+  @Test public void testWatch() throws Exception {
+    File protoDir = new File(testDir, "proto");
+    final File javaOut = new File(testDir, "java");
+    protoDir.mkdir();
+    writeFile(new File(protoDir, "a.proto"), "package test;\nmessage A {}\n");
+    final WireCompiler compiler = new WireCompiler(protoDir.getPath(), Arrays.asList("a.proto"),
+        new ArrayList<String>(), javaOut.getPath(), null, true, new IO.FileIO());
+    Thread watcher = new Thread() {
+      @Override public void run() {
+        compiler.watch(10);
+      }
+    };
+    watcher.start();
+    try {
+      File output = new File(javaOut, "test/A.java");
+      awaitContents(output, "public final class A");
+      writeFile(new File(protoDir, "a.proto"),
+          "package test;\nmessage A { optional int32 watched = 1; }\n");
+      awaitContents(output, "public final Integer watched;");
+    } finally {
+      watcher.interrupt();
+      watcher.join();
+    }
+  }
+
+  private void awaitContents(File file, String expected) throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      if (file.exists() && new IO.FileIO().read(file.getPath()).contains(expected)) return;
+      Thread.sleep(10);
+    }
+    Assert.fail(file + " doesn't contain " + expected);
+  }
+
+  /** Compiles a.proto and c.proto, returning the names of the classes that were generated. */
+  private List<String> compileWithManifest(File protoDir, File javaOut, String manifest)
+      throws IOException {
+    final List<String> generated = new ArrayList<String>();
+    IO io = new IO.FileIO() {
+      @Override public JavaWriter getJavaWriter(String outputDirectory, String javaPackage,
+          String className) throws IOException {
+        generated.add(javaPackage + "." + className);
+        return super.getJavaWriter(outputDirectory, javaPackage, className);
+      }
+    };
+    WireCompiler compiler = new WireCompiler(protoDir.getPath(),
+        Arrays.asList("a.proto", "c.proto"), new ArrayList<String>(), javaOut.getPath(), null,
+        true, io);
+    compiler.setManifest(manifest);
+    compiler.compile();
+    return generated;
+  }
+
+  private void writeFile(File file, String content) throws IOException {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+  }
+
   @Test public void testSingleLevel() throws Exception {
     String[] sources = {
         "single_level.proto"
@@ -232,6 +450,41 @@ public class WireCompilerTest {
     testProto(sources, outputs);
   }
 
+  @Test public void testPersonViews() throws Exception {
+    String[] sources = {
+        "person.proto"
+    };
+    String[] outputs = {
+        "com/squareup/wire/protos/person/Person.java",
+        "com/squareup/wire/protos/person/PersonView.java"
+    };
+    testProtoWithViews(sources, outputs);
+  }
+
+  @Test public void testAllTypesViews() throws Exception {
+    String[] sources = {
+        "all_types.proto"
+    };
+    String[] outputs = {
+        "com/squareup/wire/protos/alltypes/Ext_all_types.java",
+        "com/squareup/wire/protos/alltypes/AllTypes.java",
+        "com/squareup/wire/protos/alltypes/AllTypesView.java"
+    };
+    testProtoWithViews(sources, outputs);
+  }
+
+  @Test public void testLazy() throws Exception {
+    String[] sources = {
+        "lazy.proto"
+    };
+    String[] outputs = {
+        "com/squareup/wire/protos/lazy/Envelope.java",
+        "com/squareup/wire/protos/lazy/Header.java",
+        "com/squareup/wire/protos/lazy/Payload.java"
+    };
+    testProto(sources, outputs);
+  }
+
   @Test public void testUnknownFields() throws Exception {
     String[] sources = {
         "unknown_fields.proto"
@@ -250,7 +503,8 @@ public class WireCompilerTest {
     String[] outputs = {
         "com/squareup/wire/protos/custom_options/FooBar.java",
         "com/squareup/wire/protos/custom_options/Ext_custom_options.java",
-        "com/squareup/wire/protos/custom_options/MessageWithOptions.java"
+        "com/squareup/wire/protos/custom_options/MessageWithOptions.java",
+        "com/squareup/wire/protos/custom_options/MessageWithNestedOptions.java"
     };
     testProto(sources, outputs);
   }
@@ -262,7 +516,8 @@ public class WireCompilerTest {
     String[] outputs = {
         "com/squareup/wire/protos/custom_options/FooBar.java",
         "com/squareup/wire/protos/custom_options/Ext_custom_options.java",
-        "com/squareup/wire/protos/custom_options/MessageWithOptions.java"
+        "com/squareup/wire/protos/custom_options/MessageWithOptions.java",
+        "com/squareup/wire/protos/custom_options/MessageWithNestedOptions.java"
     };
 
     testProtoNoOptions(sources, outputs);
@@ -63,6 +63,9 @@ class MessageTypeAdapter<M extends Message> extends TypeAdapter<M> {
       if (value == null) {
         continue;
       }
+      if (fieldInfo.lazy) {
+        value = ((LazyMessage<?>) value).get();
+      }
       out.name(fieldInfo.name);
       emitJson(out, value, fieldInfo.datatype, fieldInfo.label);
     }
@@ -176,6 +179,9 @@ class MessageTypeAdapter<M extends Message> extends TypeAdapter<M> {
       } else {
         Type valueType = getType(fieldInfo);
         Object value = parseValue(fieldInfo.label, valueType, parse(in));
+        if (fieldInfo.lazy) {
+          value = LazyMessage.of((Message) value);
+        }
         messageAdapter.setBuilderField(builder, fieldInfo.tag, value);
       }
     }
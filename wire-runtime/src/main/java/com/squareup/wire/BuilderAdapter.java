@@ -31,6 +31,14 @@ final class BuilderAdapter<B extends Message.Builder> {
 
   private static final int SUFFIX_LENGTH = "$Builder".length();
 
+  private static final ClassCache<BuilderAdapter<?>> CACHE =
+      new ClassCache<BuilderAdapter<?>>() {
+        @SuppressWarnings("unchecked")
+        @Override BuilderAdapter<?> create(Class<?> type) {
+          return new BuilderAdapter((Class<Message.Builder>) type);
+        }
+      };
+
   private static final Comparator<Field> ORDER_BY_FIELD_NAME = new Comparator<Field>() {
     @Override public int compare(Field field1, Field field2) {
       return field1.getName().compareTo(field2.getName());
@@ -40,7 +48,18 @@ final class BuilderAdapter<B extends Message.Builder> {
   private final List<Field> requiredFields = new ArrayList<Field>();
 
   @SuppressWarnings("unchecked")
-  public BuilderAdapter(Class<B> builderType) {
+  private BuilderAdapter(Class<B> builderType) {
+    TypeIndex.MessageEntry entry = TypeIndex.registeredBuilder(builderType);
+    if (entry != null) {
+      for (TypeIndex.FieldEntry field : entry.fields) {
+        if (field.label == Label.REQUIRED) {
+          addRequiredField(builderType, field.name);
+        }
+      }
+      Collections.sort(requiredFields, ORDER_BY_FIELD_NAME);
+      return;
+    }
+
     String builderTypeName = builderType.getName();
     String messageTypeName = builderTypeName.substring(0, builderTypeName.length() - SUFFIX_LENGTH);
     Class<? extends Message> messageType;
@@ -55,18 +74,27 @@ final class BuilderAdapter<B extends Message.Builder> {
     for (Field field : messageType.getDeclaredFields()) {
       ProtoField annotation = field.getAnnotation(ProtoField.class);
       if (annotation != null && annotation.label() == Label.REQUIRED) {
-        try {
-          requiredFields.add(builderType.getField(field.getName()));
-        } catch (NoSuchFieldException e) {
-          throw new AssertionError("No builder field found for message field "
-              + field.getName());
-        }
+        addRequiredField(builderType, field.getName());
       }
     }
 
     Collections.sort(requiredFields, ORDER_BY_FIELD_NAME);
   }
 
+  private void addRequiredField(Class<B> builderType, String name) {
+    try {
+      requiredFields.add(builderType.getField(name));
+    } catch (NoSuchFieldException e) {
+      throw new AssertionError("No builder field found for message field " + name);
+    }
+  }
+
+  /** Returns the adapter for {@code builderType}, shared by all {@link Wire} instances. */
+  @SuppressWarnings("unchecked")
+  static <B extends Message.Builder> BuilderAdapter<B> of(Class<B> builderType) {
+    return (BuilderAdapter<B>) CACHE.get(builderType);
+  }
+
   public <B extends Message.Builder> void checkRequiredFields(B builder) {
     StringBuilder sb = null;
     String plural = "";
@@ -19,6 +19,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -33,7 +34,7 @@ import java.util.Arrays;
  * process.
  */
 public final class ByteString {
-  private final byte[] data;
+  final byte[] data; // Visible to WireOutput
   private transient int hashCode; // Lazily computed; 0 if unknown.
 
   /**
@@ -102,6 +103,14 @@ public final class ByteString {
     return data.clone();
   }
 
+  /**
+   * Returns a read-only {@link ByteBuffer} view of this byte string. The
+   * contents are not copied.
+   */
+  public ByteBuffer asByteBuffer() {
+    return ByteBuffer.wrap(data).asReadOnlyBuffer();
+  }
+
   /** Writes the contents of this byte string to {@code out}. */
   public void write(OutputStream out) throws IOException {
     out.write(data);
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A process-wide cache of adapters derived from classes by reflection, shared by all {@link Wire}
+ * instances. Adapters are held weakly: each {@code Wire} keeps the ones it uses reachable, and
+ * neither adapters nor their classes are retained once no {@code Wire} uses them.
+ *
+ * @param <V> the type of cached value.
+ */
+abstract class ClassCache<V> {
+  private final Map<Class<?>, WeakReference<V>> cache =
+      new WeakHashMap<Class<?>, WeakReference<V>>();
+
+  /**
+   * Returns the value for {@code type}, creating it if it is not cached. Values are created
+   * outside of the lock so that different classes can be reflected on concurrently. If two
+   * threads race to create the same value, both get the one that was cached first.
+   */
+  V get(Class<?> type) {
+    V value = getIfPresent(type);
+    if (value != null) {
+      return value;
+    }
+    V created = create(type);
+    synchronized (this) {
+      value = getIfPresent(type);
+      if (value == null) {
+        value = created;
+        cache.put(type, new WeakReference<V>(value));
+      }
+      return value;
+    }
+  }
+
+  private synchronized V getIfPresent(Class<?> type) {
+    WeakReference<V> reference = cache.get(type);
+    return reference == null ? null : reference.get();
+  }
+
+  /** Creates the value for {@code type}. */
+  abstract V create(Class<?> type);
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A mutable list that shares the elements of an {@link ImmutableList} until it is first
+ * modified, and copies them then. Builders hold the repeated values of the message they were
+ * made from in these lists; if a list is not modified, building hands the shared list back to
+ * the new message.
+ */
+final class CopyOnWriteList<T> extends AbstractList<T> implements RandomAccess {
+  /** The shared list, or null once this has been modified. */
+  private ImmutableList<T> shared;
+  private List<T> list;
+
+  CopyOnWriteList(ImmutableList<T> shared) {
+    this.shared = shared;
+    this.list = shared;
+  }
+
+  /** Returns the shared list if this list has not been modified, or null. */
+  ImmutableList<T> shared() {
+    return shared;
+  }
+
+  private List<T> mutable() {
+    if (shared != null) {
+      list = new ArrayList<T>(shared);
+      shared = null;
+    }
+    modCount++;
+    return list;
+  }
+
+  @Override public T get(int index) {
+    return list.get(index);
+  }
+
+  @Override public int size() {
+    return list.size();
+  }
+
+  @Override public T set(int index, T element) {
+    return mutable().set(index, element);
+  }
+
+  @Override public void add(int index, T element) {
+    mutable().add(index, element);
+  }
+
+  @Override public T remove(int index) {
+    return mutable().remove(index);
+  }
+
+  @Override public void clear() {
+    if (shared != null) {
+      shared = null;
+      list = new ArrayList<T>();
+    }
+    modCount++;
+    list.clear();
+  }
+}
@@ -21,15 +21,34 @@ import java.util.Map;
 
 /**
  * Converts values of an enum to and from integers using {@link ProtoEnum}
- * annotations.
+ * annotations, or the values of a registered {@link TypeIndex}.
  */
 final class EnumAdapter<E extends Enum> {
+  private static final ClassCache<EnumAdapter<?>> CACHE = new ClassCache<EnumAdapter<?>>() {
+    @SuppressWarnings("unchecked")
+    @Override EnumAdapter<?> create(Class<?> type) {
+      return new EnumAdapter((Class<Enum>) type);
+    }
+  };
+
   private final Map<Integer, E> fromInt = new LinkedHashMap<Integer, E>();
   private final Map<E, Integer> toInt = new LinkedHashMap<E, Integer>();
 
-  EnumAdapter(Class<E> type) {
+  private EnumAdapter(Class<E> type) {
+    int[] indexed = TypeIndex.registeredEnum(type);
+    E[] constants = type.getEnumConstants();
+    // An index generated from another version of the enum doesn't match its constants; fall
+    // back to their annotations.
+    if (indexed != null && indexed.length == constants.length) {
+      for (int i = 0; i < constants.length; i++) {
+        fromInt.put(indexed[i], constants[i]);
+        toInt.put(constants[i], indexed[i]);
+      }
+      return;
+    }
+
     // Record values for each constant annotated with '@ProtoEnum'.
-    for (E value : type.getEnumConstants()) {
+    for (E value : constants) {
       try {
         Field f = type.getField(value.name());
         if (f.isAnnotationPresent(ProtoEnum.class)) {
@@ -44,6 +63,12 @@ final class EnumAdapter<E extends Enum> {
     }
   }
 
+  /** Returns the adapter for {@code type}, shared by all {@link Wire} instances. */
+  @SuppressWarnings("unchecked")
+  static <E extends Enum> EnumAdapter<E> of(Class<E> type) {
+    return (EnumAdapter<E>) CACHE.get(type);
+  }
+
   public int toInt(E e) {
     return toInt.get(e);
   }
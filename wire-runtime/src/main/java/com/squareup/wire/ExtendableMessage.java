@@ -36,7 +36,7 @@ public abstract class ExtendableMessage<T extends ExtendableMessage<?>> extends
   }
 
   /**
-   * Returns an immutable list of the extensions on this message in tag order.
+   * Returns an immutable snapshot of the extensions on this message in tag order.
    */
   public List<Extension<T, ?>> getExtensions() {
     return extensionMap == null ? Collections.<Extension<T, ?>>emptyList()
@@ -69,13 +69,6 @@ public abstract class ExtendableMessage<T extends ExtendableMessage<?>> extends
     return extensionMap == null ? 0 : extensionMap.hashCode();
   }
 
-  /**
-   * Returns a string describing the extensions on this message.
-   */
-  String extensionsToString() {
-    return extensionMap == null ? "{}" : extensionMap.toString();
-  }
-
   /**
    * Builds a message that declares an extension range.
    */
@@ -113,5 +106,11 @@ public abstract class ExtendableMessage<T extends ExtendableMessage<?>> extends
       extensionMap.put(extension, value);
       return this;
     }
+
+    @Override public ExtendableBuilder<T> clear() {
+      super.clear();
+      extensionMap = null;
+      return this;
+    }
   }
 }
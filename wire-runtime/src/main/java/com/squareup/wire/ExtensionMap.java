@@ -15,35 +15,86 @@
  */
 package com.squareup.wire;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
- * Maps {@link Extension} keys to their values.
+ * Maps {@link Extension} keys to their values. Parsed values are held in their encoded form and
+ * decoded the first time they are requested.
+ *
+ * <p>Entries are stored in an array in tag order. Copies share the array until one of them is
+ * modified, so building a message from a builder does not copy its extensions.
  *
  * @param <T> the type of the containing {@link ExtendableMessage}
  */
 final class ExtensionMap<T extends ExtendableMessage<?>> {
 
-  private final Map<Extension<T, ?>, Object> map = new TreeMap<Extension<T, ?>, Object>();
+  /** Alternating keys and values, ordered by key. */
+  private Object[] data;
+  private int size;
+
+  /** True if {@code data} may be referenced by another map. */
+  private boolean shared;
+
+  /**
+   * Identifies the {@link Encoded} values that only this map references, and so may append to.
+   * It is replaced whenever this map is copied, as values are shared even once {@code data} is
+   * not.
+   */
+  private Object owner = new Object();
 
   /** Constructs an empty ExtensionMap. */
   public ExtensionMap() {
+    this.data = new Object[8];
   }
 
   /** Constructs an ExtensionMap that is a copy of an existing ExtensionMap. */
   public ExtensionMap(ExtensionMap<T> other) {
-    map.putAll(other.map);
+    this.data = other.data;
+    this.size = other.size;
+    this.shared = true;
+    if (!other.shared) {
+      other.shared = true;
+    }
+    other.owner = new Object();
+  }
+
+  /** Returns the number of extensions in this map. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the extension at {@code index}, in tag order. */
+  @SuppressWarnings("unchecked")
+  Extension<T, ?> getExtension(int index) {
+    return (Extension<T, ?>) data[2 * index];
+  }
+
+  /** Returns the value of the extension at {@code index}, decoding it if necessary. */
+  Object getValue(int index) {
+    return decoded(data[2 * index + 1]);
+  }
+
+  /**
+   * Returns the encoded values of the extension at {@code index} retained at parse time, or
+   * null if it was set to a decoded value.
+   */
+  UnknownFieldMap getEncoded(int index) {
+    Object value = data[2 * index + 1];
+    return value instanceof Encoded ? ((Encoded) value).fields : null;
   }
 
   /**
-   * Returns a {@link List} of {@link Extension}s in this map in tag order.
+   * Returns an immutable {@link List} of the {@link Extension}s in this map in tag order. The
+   * list is a snapshot; later changes to this map do not affect it.
    */
   public List<Extension<T, ?>> getExtensions() {
-    return Collections.unmodifiableList(new ArrayList<Extension<T, ?>>(map.keySet()));
+    Object[] extensions = new Object[size];
+    for (int i = 0; i < size; i++) {
+      extensions[i] = data[2 * i];
+    }
+    return ImmutableList.wrap(extensions);
   }
 
   /**
@@ -54,7 +105,8 @@ final class ExtensionMap<T extends ExtendableMessage<?>> {
    */
   @SuppressWarnings("unchecked")
   public <E> E get(Extension<T, E> extension) {
-    return (E) map.get(extension);
+    int index = indexOf(extension);
+    return index < 0 ? null : (E) getValue(index);
   }
 
   /**
@@ -64,29 +116,142 @@ final class ExtensionMap<T extends ExtendableMessage<?>> {
    * @param <E> the (boxed) Java data type of the {@link Extension} value
    */
   public <E> void put(Extension<T, E> extension, E value) {
-    map.put(extension, value);
+    set(extension, value);
+  }
+
+  /**
+   * Returns the encoded values for {@code extension}, to which parsed values can be appended.
+   * Any decoded value is replaced. Encoded values that another map may reference, or that have
+   * been decoded, are copied first.
+   */
+  UnknownFieldMap encoded(Extension<T, ?> extension, MessageAdapter<?> adapter) {
+    int index = indexOf(extension);
+    Object value = index >= 0 ? data[2 * index + 1] : null;
+    Encoded encoded;
+    if (value instanceof Encoded) {
+      Encoded existing = (Encoded) value;
+      if (existing.owner == owner && !existing.isDecoded()) {
+        return existing.fields;
+      }
+      encoded = new Encoded(extension, adapter, owner, new UnknownFieldMap(existing.fields));
+    } else {
+      encoded = new Encoded(extension, adapter, owner, UnknownFieldMap.withMixedWireTypes());
+    }
+    set(extension, encoded);
+    return encoded.fields;
   }
 
+  private void set(Extension<T, ?> extension, Object value) {
+    int index = indexOf(extension);
+    if (shared || (index < 0 && 2 * size == data.length)) {
+      data = Arrays.copyOf(data, Math.max(8, index < 0 ? 4 * size : data.length));
+      shared = false;
+    }
+    if (index >= 0) {
+      data[2 * index + 1] = value;
+      return;
+    }
+    index = -index - 1;
+    System.arraycopy(data, 2 * index, data, 2 * index + 2, 2 * (size - index));
+    data[2 * index] = extension;
+    data[2 * index + 1] = value;
+    size++;
+  }
+
+  /**
+   * Returns the index of {@code extension}, or {@code -(insertion point) - 1} if it is absent.
+   * Extensions are ordered by {@link Extension#compareTo}, which compares tags first.
+   */
+  @SuppressWarnings("unchecked")
+  private int indexOf(Extension<T, ?> extension) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = ((Extension<T, ?>) data[2 * mid]).compareTo(extension);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  @SuppressWarnings("unchecked")
   @Override public boolean equals(Object other) {
-    return other instanceof ExtensionMap && map.equals(((ExtensionMap) other).map);
+    if (!(other instanceof ExtensionMap)) return false;
+    ExtensionMap<T> o = (ExtensionMap<T>) other;
+    if (size != o.size) return false;
+    for (int i = 0; i < size; i++) {
+      if (!getExtension(i).equals(o.getExtension(i)) || !getValue(i).equals(o.getValue(i))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override public int hashCode() {
-    return map.hashCode();
+    // Consistent with Map.hashCode().
+    int result = 0;
+    for (int i = 0; i < size; i++) {
+      result += getExtension(i).hashCode() ^ getValue(i).hashCode();
+    }
+    return result;
   }
 
   @Override public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append("{");
     String sep = "";
-    for (Map.Entry<? extends Extension<?, ?>, Object> entry : map.entrySet()) {
+    for (int i = 0; i < size; i++) {
       sb.append(sep);
-      sb.append(entry.getKey().getTag());
+      sb.append(getExtension(i).getTag());
       sb.append("=");
-      sb.append(entry.getValue());
+      sb.append(getValue(i));
       sep = ", ";
     }
     sb.append("}");
     return sb.toString();
   }
+
+  private static Object decoded(Object value) {
+    return value instanceof Encoded ? ((Encoded) value).get() : value;
+  }
+
+  /** The encoded values of an extension, and their decoded value once it has been requested. */
+  private static final class Encoded {
+    final UnknownFieldMap fields;
+    final Object owner;
+    private final Extension<?, ?> extension;
+    private final MessageAdapter<?> adapter;
+    private volatile Object value;
+
+    Encoded(Extension<?, ?> extension, MessageAdapter<?> adapter, Object owner,
+        UnknownFieldMap fields) {
+      this.extension = extension;
+      this.adapter = adapter;
+      this.owner = owner;
+      this.fields = fields;
+    }
+
+    boolean isDecoded() {
+      return value != null;
+    }
+
+    Object get() {
+      Object result = value;
+      if (result == null) {
+        try {
+          result = adapter.decodeExtension(extension, fields.toByteArray());
+        } catch (IOException e) {
+          throw new IllegalStateException("Failed to decode extension " + extension.getName(), e);
+        }
+        value = result;
+      }
+      return result;
+    }
+  }
 }
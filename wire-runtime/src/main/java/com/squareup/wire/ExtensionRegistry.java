@@ -15,30 +15,50 @@
  */
 package com.squareup.wire;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Extensions by extended type, then by tag and by name. Additions replace the maps rather than
+ * modifying them, so lookups never block and always see a consistent set of extensions.
+ */
 final class ExtensionRegistry {
 
-  private final Map<Class<? extends ExtendableMessage>, Map<Integer, Extension<?, ?>>>
-      extensionsByTag = new LinkedHashMap<Class<? extends ExtendableMessage>,
-                Map<Integer, Extension<?, ?>>>();
-  private final Map<Class<? extends ExtendableMessage>, Map<String, Extension<?, ?>>>
-      extensionsByName = new LinkedHashMap<Class<? extends ExtendableMessage>,
-          Map<String, Extension<?, ?>>>();
+  private volatile Map<Class<?>, Map<Integer, Extension<?, ?>>> extensionsByTag =
+      Collections.emptyMap();
+  private volatile Map<Class<?>, Map<String, Extension<?, ?>>> extensionsByName =
+      Collections.emptyMap();
 
   public <T extends ExtendableMessage<?>, E> void add(Extension<T, E> extension) {
-    Class<? extends ExtendableMessage<?>> messageClass = extension.getExtendedType();
-    Map<Integer, Extension<?, ?>> tagMap = extensionsByTag.get(messageClass);
-    Map<String, Extension<?, ?>> nameMap = extensionsByName.get(messageClass);
-    if (tagMap == null) {
-      tagMap = new LinkedHashMap<Integer, Extension<?, ?>>();
-      nameMap = new LinkedHashMap<String, Extension<?, ?>>();
-      extensionsByTag.put(messageClass, tagMap);
-      extensionsByName.put(messageClass, nameMap);
+    addAll(Collections.<Extension<?, ?>>singletonList(extension));
+  }
+
+  /** Adds {@code extensions}, replacing any with the same extended type and tag or name. */
+  public synchronized void addAll(Collection<Extension<?, ?>> extensions) {
+    Map<Class<?>, Map<Integer, Extension<?, ?>>> byTag =
+        new LinkedHashMap<Class<?>, Map<Integer, Extension<?, ?>>>(extensionsByTag);
+    Map<Class<?>, Map<String, Extension<?, ?>>> byName =
+        new LinkedHashMap<Class<?>, Map<String, Extension<?, ?>>>(extensionsByName);
+    for (Extension<?, ?> extension : extensions) {
+      Class<?> messageClass = extension.getExtendedType();
+      Map<Integer, Extension<?, ?>> tagMap = byTag.get(messageClass);
+      Map<String, Extension<?, ?>> nameMap = byName.get(messageClass);
+      if (tagMap == null || tagMap == extensionsByTag.get(messageClass)) {
+        // Copy the maps this addition changes. The others are shared with the previous version.
+        tagMap = tagMap == null ? new LinkedHashMap<Integer, Extension<?, ?>>()
+            : new LinkedHashMap<Integer, Extension<?, ?>>(tagMap);
+        nameMap = nameMap == null ? new LinkedHashMap<String, Extension<?, ?>>()
+            : new LinkedHashMap<String, Extension<?, ?>>(nameMap);
+        byTag.put(messageClass, tagMap);
+        byName.put(messageClass, nameMap);
+      }
+      tagMap.put(extension.getTag(), extension);
+      nameMap.put(extension.getName(), extension);
     }
-    tagMap.put(extension.getTag(), extension);
-    nameMap.put(extension.getName(), extension);
+    extensionsByName = byName;
+    extensionsByTag = byTag;
   }
 
   @SuppressWarnings("unchecked")
@@ -54,4 +74,10 @@ final class ExtensionRegistry {
     Map<String, Extension<?, ?>> nameMap = extensionsByName.get(messageClass);
     return nameMap == null ? null : (Extension<T, E>) nameMap.get(name);
   }
+
+  /** Returns the extensions of {@code messageClass}, or an empty collection if it has none. */
+  public Collection<Extension<?, ?>> getExtensions(Class<?> messageClass) {
+    Map<Integer, Extension<?, ?>> map = extensionsByTag.get(messageClass);
+    return map == null ? Collections.<Extension<?, ?>>emptyList() : map.values();
+  }
 }
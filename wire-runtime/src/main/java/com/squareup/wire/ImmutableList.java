@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list backed by an array of exactly its size. Messages hold their repeated values
+ * in these lists so that builders made from a message can share them rather than copy them.
+ */
+final class ImmutableList<T> extends AbstractList<T> implements RandomAccess {
+  private final Object[] elements;
+
+  private ImmutableList(Object[] elements) {
+    this.elements = elements;
+  }
+
+  /** Returns an immutable list of the elements of {@code source}, in order. */
+  static <T> ImmutableList<T> copyOf(Collection<? extends T> source) {
+    return new ImmutableList<T>(source.toArray());
+  }
+
+  /** Returns an immutable list of {@code elements}, which the caller must not modify. */
+  static <T> ImmutableList<T> wrap(Object[] elements) {
+    return new ImmutableList<T>(elements);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override public T get(int index) {
+    return (T) elements[index];
+  }
+
+  @Override public int size() {
+    return elements.length;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.io.IOException;
+
+/**
+ * A nested message field declared with {@code [lazy = true]}. When parsed, the field's encoded
+ * bytes are retained and only decoded the first time {@link #get} is called. Because messages
+ * are immutable, the retained bytes are written back verbatim when the enclosing message is
+ * serialized, whether or not the value was ever decoded.
+ *
+ * @param <M> the type of the nested message.
+ */
+public final class LazyMessage<M extends Message> {
+  private final Wire wire;
+  private final Class<M> messageType;
+  private final ByteString bytes;
+  private volatile M value;
+
+  private LazyMessage(Wire wire, Class<M> messageType, ByteString bytes, M value) {
+    this.wire = wire;
+    this.messageType = messageType;
+    this.bytes = bytes;
+    this.value = value;
+  }
+
+  /** Returns an already-decoded lazy field holding {@code value}, or null if it is null. */
+  public static <M extends Message> LazyMessage<M> of(M value) {
+    return value == null ? null : new LazyMessage<M>(null, null, null, value);
+  }
+
+  /** Returns a lazy field that will decode {@code bytes} using {@code wire}. */
+  static <M extends Message> LazyMessage<M> of(Wire wire, Class<M> messageType,
+      ByteString bytes) {
+    return new LazyMessage<M>(wire, messageType, bytes, null);
+  }
+
+  /**
+   * Returns the message, decoding it on first use.
+   *
+   * @throws IllegalStateException if the retained bytes are not a valid encoding of the message.
+   */
+  public M get() {
+    M result = value;
+    if (result == null) {
+      try {
+        result = wire.parseFrom(bytes.data, messageType);
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to decode lazy " + messageType.getName(), e);
+      }
+      value = result;
+    }
+    return result;
+  }
+
+  /** Returns true if this field's message has been decoded. */
+  public boolean isDecoded() {
+    return value != null;
+  }
+
+  /** Returns the encoded bytes retained at parse time, or null if built from a message. */
+  ByteString encoded() {
+    return bytes;
+  }
+
+  @Override public boolean equals(Object other) {
+    if (other == this) return true;
+    if (!(other instanceof LazyMessage)) return false;
+    LazyMessage<?> o = (LazyMessage<?>) other;
+    if (bytes != null && bytes.equals(o.bytes)) return true;
+    return get().equals(o.get());
+  }
+
+  @Override public int hashCode() {
+    return get().hashCode();
+  }
+
+  @Override public String toString() {
+    return get().toString();
+  }
+}
@@ -16,6 +16,10 @@
 package com.squareup.wire;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,7 +35,8 @@ import java.util.Map;
 public abstract class Message {
 
   // Hidden Wire instance that can perform work that does not require knowledge of extensions.
-  private static final Wire WIRE = new Wire();
+  // Visible to Wire, which prewarms it.
+  static final Wire WIRE = new Wire();
 
   /**
    * A protocol buffer data type.
@@ -138,6 +143,10 @@ public abstract class Message {
   /** If >= 0, the serialized size of this message. */
   private transient int cachedSerializedSize = -1;
 
+  /** If non-null, the array holding the bytes this message was parsed from. */
+  private transient byte[] encoded;
+  private transient int encodedOffset;
+
   /** If non-zero, the hash code of this message. Accessed by generated code. */
   protected transient int hashCode = 0;
 
@@ -151,27 +160,62 @@ public abstract class Message {
     }
   }
 
+  /**
+   * Retains {@code count} bytes of {@code data}, starting at {@code offset}, as the encoding of
+   * this message. Called only by the parser, before the message is published.
+   */
+  void retainEncoded(byte[] data, int offset, int count) {
+    encoded = data;
+    encodedOffset = offset;
+    cachedSerializedSize = count;
+  }
+
+  /** Writes the retained encoding of this message, returning false if there is none. */
+  boolean writeEncoded(WireOutput output) throws IOException {
+    if (encoded == null) return false;
+    output.writeRawBytes(encoded, encodedOffset, cachedSerializedSize);
+    return true;
+  }
+
   Collection<List<UnknownFieldMap.FieldValue>> unknownFields() {
     return unknownFields == null ? Collections.<List<UnknownFieldMap.FieldValue>>emptySet()
-        : unknownFields.fieldMap.values();
+        : unknownFields.toFieldMap().values();
   }
 
   /**
    * Utility method to return a mutable copy of a given List. Used by generated code.
+   * A list of a message's repeated values is shared until the copy is first modified.
    */
   protected static <T> List<T> copyOf(List<T> source) {
-    return source == null ? null : new ArrayList<T>(source);
+    if (source == null) {
+      return null;
+    }
+    if (source instanceof ImmutableList) {
+      return new CopyOnWriteList<T>((ImmutableList<T>) source);
+    }
+    return new ArrayList<T>(source);
   }
 
   /**
    * Utility method to return an immutable copy of a given List. Used by generated code.
-   * If {@code source} is null, {@link Collections#emptyList()} is returned.
+   * If {@code source} is null or empty, {@link Collections#emptyList()} is returned. Lists that
+   * are already immutable, and unmodified copies made by {@link #copyOf}, are returned without
+   * copying.
    */
   protected static <T> List<T> immutableCopyOf(List<T> source) {
-    if (source == null) {
+    if (source == null || source.isEmpty()) {
       return Collections.emptyList();
     }
-    return Collections.unmodifiableList(new ArrayList<T>(source));
+    if (source instanceof ImmutableList) {
+      return source;
+    }
+    if (source instanceof CopyOnWriteList) {
+      ImmutableList<T> shared = ((CopyOnWriteList<T>) source).shared();
+      if (shared != null) {
+        return shared;
+      }
+    }
+    return ImmutableList.copyOf(source);
   }
 
   /**
@@ -201,6 +245,9 @@ public abstract class Message {
 
   @SuppressWarnings("unchecked")
   public byte[] toByteArray() {
+    if (encoded != null) {
+      return Arrays.copyOfRange(encoded, encodedOffset, encodedOffset + cachedSerializedSize);
+    }
     return WIRE.messageAdapter((Class<Message>) getClass()).toByteArray(this);
   }
 
@@ -212,6 +259,34 @@ public abstract class Message {
     write(WireOutput.newInstance(output, offset, count));
   }
 
+  /**
+   * Serializes this message as a list of buffers. Large {@code bytes} fields are returned as
+   * read-only views of their contents rather than copied, which makes this suitable for writing
+   * messages carrying large payloads with {@link GatheringByteChannel#write(ByteBuffer[])}.
+   */
+  @SuppressWarnings("unchecked")
+  public ByteBuffer[] toByteBuffers() {
+    return WIRE.messageAdapter((Class<Message>) getClass()).toByteBuffers(this);
+  }
+
+  /**
+   * Writes this message to {@code channel} with a gathering write. See {@link #toByteBuffers}.
+   * The channel must be in blocking mode, as this returns only once the whole message is
+   * written; callers using non-blocking channels should write {@link #toByteBuffers} themselves.
+   *
+   * @throws IllegalBlockingModeException if {@code channel} is in non-blocking mode.
+   */
+  public void writeTo(GatheringByteChannel channel) throws IOException {
+    if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+      throw new IllegalBlockingModeException();
+    }
+    ByteBuffer[] buffers = toByteBuffers();
+    long remaining = getSerializedSize();
+    while (remaining > 0) {
+      remaining -= channel.write(buffers);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private void write(WireOutput output) {
     MessageAdapter<Message> adapter = WIRE.messageAdapter((Class<Message>) getClass());
@@ -256,9 +331,12 @@ public abstract class Message {
     return Arrays.asList(a);
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * Returns a human-readable version of this message. Use a {@link MessageFormatter} to limit its
+   * length or to write it to an {@link Appendable}.
+   */
   @Override public String toString() {
-    return WIRE.messageAdapter((Class<Message>) getClass()).toString(this);
+    return MessageFormatter.UNLIMITED.toString(this);
   }
 
   /**
@@ -268,6 +346,9 @@ public abstract class Message {
 
     UnknownFieldMap unknownFieldMap;
 
+    /** Reused when messages are parsed into this builder; null until then. */
+    ReusableBuilders reusableBuilders;
+
     /**
      * Constructs a Builder with no unknown field data.
      */
@@ -312,13 +393,41 @@ public abstract class Message {
       ensureUnknownFieldMap().addLengthDelimited(tag, value);
     }
 
-    private UnknownFieldMap ensureUnknownFieldMap() {
+    UnknownFieldMap ensureUnknownFieldMap() {
       if (unknownFieldMap == null) {
         unknownFieldMap = new UnknownFieldMap();
       }
       return unknownFieldMap;
     }
 
+    /**
+     * Clears this builder so that it can be reused. Generated builders override this to also
+     * clear their fields; this implementation only discards unknown fields.
+     */
+    public Builder<T> clear() {
+      unknownFieldMap = null;
+      return this;
+    }
+
+    /**
+     * Reads the fields of a message from {@code bytes} into this builder. Repeated values are
+     * appended to those already set; other values replace them. Extensions are kept as unknown
+     * fields; use {@link Wire#mergeFrom} to read them.
+     */
+    public Builder<T> mergeFrom(byte[] bytes) throws IOException {
+      WIRE.mergeFrom(bytes, this);
+      return this;
+    }
+
+    /**
+     * Reads the fields of a message from {@code input} into this builder. See
+     * {@link #mergeFrom(byte[])}.
+     */
+    Builder<T> mergeFrom(WireInput input) throws IOException {
+      WIRE.mergeFrom(input, this);
+      return this;
+    }
+
     /**
      * Throws an exception if a required field has not been set.
      */
@@ -326,6 +435,27 @@ public abstract class Message {
       WIRE.builderAdapter(getClass()).checkRequiredFields(this);
     }
 
+    /**
+     * Returns an exception naming the required fields that have not been set. The arguments
+     * alternate between the value of each required field and its name, in order of name.
+     * Generated builders check their required fields inline and call this only on failure.
+     */
+    protected static IllegalStateException missingRequiredFields(Object... valuesAndNames) {
+      StringBuilder sb = new StringBuilder();
+      String plural = "";
+      for (int i = 0; i < valuesAndNames.length; i += 2) {
+        if (valuesAndNames[i] == null) {
+          if (sb.length() > 0) {
+            // Found more than one missing field
+            plural = "s";
+          }
+          sb.append("\n  ");
+          sb.append(valuesAndNames[i + 1]);
+        }
+      }
+      return new IllegalStateException("Required field" + plural + " not set:" + sb);
+    }
+
     /**
      * Returns an immutable {@link com.squareup.wire.Message} based on the fields that have been set
      * in this builder.
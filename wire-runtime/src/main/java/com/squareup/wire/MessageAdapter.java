@@ -21,6 +21,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
@@ -47,15 +48,20 @@ final class MessageAdapter<M extends Message> {
     final Label label;
     final Class<? extends Enum> enumType;
     final Class<? extends Message> messageType;
+    final boolean lazy;
+
+    /** Non-null if this is a registered extension rather than a field of the message. */
+    final Extension<?, ?> extension;
 
     private final Field messageField;
+    private final Field builderField;
     private final Method builderMethod;
 
     @SuppressWarnings("unchecked")
-    private FieldInfo(int tag, String name, Datatype datatype, Label label,
-        Class<?> enumOrMessageType, Field messageField, Method builderMethod) {
+    private FieldInfo(int tag, Datatype datatype, Label label, Class<?> enumOrMessageType,
+        Field messageField, Field builderField, Method builderMethod) {
       this.tag = tag;
-      this.name = name;
+      this.name = messageField.getName();
       this.datatype = datatype;
       this.label = label;
       if (datatype == Datatype.ENUM) {
@@ -69,10 +75,28 @@ final class MessageAdapter<M extends Message> {
         this.messageType = null;
       }
 
+      this.lazy = messageField.getType() == LazyMessage.class;
+      this.extension = null;
+
       // private fields
       this.messageField = messageField;
+      this.builderField = builderField;
       this.builderMethod = builderMethod;
     }
+
+    private FieldInfo(Extension<?, ?> extension) {
+      this.tag = extension.getTag();
+      this.name = extension.getName();
+      this.datatype = extension.getDatatype();
+      this.label = extension.getLabel();
+      this.enumType = extension.getEnumType();
+      this.messageType = extension.getMessageType();
+      this.lazy = false;
+      this.extension = extension;
+      this.messageField = null;
+      this.builderField = null;
+      this.builderMethod = null;
+    }
   }
 
   Builder<M> newBuilder() {
@@ -85,6 +109,10 @@ final class MessageAdapter<M extends Message> {
     }
   }
 
+  Class<Builder<M>> getBuilderType() {
+    return builderType;
+  }
+
   Collection<FieldInfo> getFields() {
     return fieldInfoMap.values();
   }
@@ -106,8 +134,12 @@ final class MessageAdapter<M extends Message> {
   }
 
   public void setBuilderField(Builder<M> builder, int tag, Object value) {
+    setBuilderField(builder, fieldInfoMap.get(tag), value);
+  }
+
+  private void setBuilderField(Builder<M> builder, FieldInfo fieldInfo, Object value) {
     try {
-      fieldInfoMap.get(tag).builderMethod.invoke(builder, value);
+      fieldInfo.builderMethod.invoke(builder, value);
     } catch (IllegalAccessException e) {
       throw new AssertionError(e);
     } catch (InvocationTargetException e) {
@@ -115,87 +147,173 @@ final class MessageAdapter<M extends Message> {
     }
   }
 
-  private final Wire wire;
-  private final Class<M> messageType;
-  private final Class<Builder<M>> builderType;
-  private final Map<String, Integer> tagMap = new LinkedHashMap<String, Integer>();
-  private final Map<Integer, FieldInfo> fieldInfoMap =
-      new LinkedHashMap<Integer, FieldInfo>();
+  /**
+   * The fields of a message class, which do not depend on registered extensions. They are read
+   * from a registered {@link TypeIndex} if there is one, and found by reflection otherwise. This
+   * is computed once per class and shared by the adapters of every {@link Wire} instance.
+   */
+  private static final class Metadata {
+    private static final ClassCache<Metadata> CACHE = new ClassCache<Metadata>() {
+      @Override Metadata create(Class<?> type) {
+        return new Metadata(type);
+      }
+    };
 
-  /** Cache information about the Message class and its mapping to proto wire format. */
-  MessageAdapter(Wire wire, Class<M> messageType) {
-    this.wire = wire;
-    this.messageType = messageType;
-    this.builderType = getBuilderType(messageType);
-
-    for (Field messageField : messageType.getDeclaredFields()) {
-      // Process fields annotated with '@ProtoField'
-      ProtoField annotation = messageField.getAnnotation(ProtoField.class);
-      if (annotation != null) {
-        int tag = annotation.tag();
-
-        String name = messageField.getName();
-        tagMap.put(name, tag);
-        Class<?> enumOrMessageType = null;
-        Datatype datatype = annotation.type();
-        if (datatype == Datatype.ENUM) {
-          enumOrMessageType = getEnumType(messageField);
-        } else if (datatype == Datatype.MESSAGE) {
-          enumOrMessageType = getMessageType(messageField);
+    final Class<?> builderType;
+    final String simpleName;
+    final Map<String, Integer> tagMap = new LinkedHashMap<String, Integer>();
+    final Map<Integer, FieldInfo> fieldInfoMap = new LinkedHashMap<Integer, FieldInfo>();
+
+    /** The fields of the message for lookup by tag, used when no extensions are registered. */
+    final TagTable fieldTable;
+
+    private Metadata(Class<?> messageType) {
+      this.simpleName = messageType.getSimpleName();
+      TypeIndex.MessageEntry entry = TypeIndex.registeredMessage(messageType);
+      if (entry != null) {
+        this.builderType = entry.builderType;
+        for (TypeIndex.FieldEntry field : entry.fields) {
+          Field messageField;
+          try {
+            messageField = messageType.getField(field.name);
+          } catch (NoSuchFieldException e) {
+            throw new AssertionError("No message field " + messageType.getName() + "."
+                + field.name);
+          }
+          addField(field.tag, field.name, field.datatype, field.label, field.elementType,
+              messageField);
+        }
+      } else {
+        this.builderType = getBuilderType(messageType);
+        for (Field messageField : messageType.getDeclaredFields()) {
+          // Process fields annotated with '@ProtoField'
+          ProtoField annotation = messageField.getAnnotation(ProtoField.class);
+          if (annotation != null) {
+            Class<?> enumOrMessageType = null;
+            Datatype datatype = annotation.type();
+            if (datatype == Datatype.ENUM) {
+              enumOrMessageType = getEnumType(messageField);
+            } else if (datatype == Datatype.MESSAGE) {
+              enumOrMessageType = getMessageType(messageField);
+            }
+            addField(annotation.tag(), messageField.getName(), datatype, annotation.label(),
+                enumOrMessageType, messageField);
+          }
         }
-        fieldInfoMap.put(tag, new FieldInfo(tag, name, datatype, annotation.label(),
-            enumOrMessageType, messageField, getBuilderMethod(name, messageField.getType())));
       }
+      this.fieldTable = new TagTable(fieldInfoMap.values());
     }
-  }
 
-  @SuppressWarnings("unchecked")
-  private Class<Builder<M>> getBuilderType(Class<M> messageType) {
-    try {
-      return (Class<Builder<M>>) Class.forName(messageType.getName() + "$Builder");
-    } catch (ClassNotFoundException e) {
-      throw new IllegalArgumentException("No builder class found for message type "
-          + messageType.getName());
+    private void addField(int tag, String name, Datatype datatype, Label label,
+        Class<?> enumOrMessageType, Field messageField) {
+      tagMap.put(name, tag);
+      fieldInfoMap.put(tag, new FieldInfo(tag, datatype, label, enumOrMessageType,
+          messageField, getBuilderField(name), getBuilderMethod(name, messageField.getType())));
     }
-  }
 
-  private Method getBuilderMethod(String name, Class<?> type) {
-    try {
-      return builderType.getMethod(name, type);
-    } catch (NoSuchMethodException e) {
-      throw new AssertionError("No builder method "
-          + builderType.getName() + "." + name + "(" + type.getName() + ")");
+    private static Class<?> getBuilderType(Class<?> messageType) {
+      try {
+        return Class.forName(messageType.getName() + "$Builder");
+      } catch (ClassNotFoundException e) {
+        throw new IllegalArgumentException("No builder class found for message type "
+            + messageType.getName());
+      }
     }
-  }
 
-  @SuppressWarnings("unchecked")
-  private Class<Message> getMessageType(Field field) {
-    Class<?> fieldType = field.getType();
-    if (Message.class.isAssignableFrom(fieldType)) {
-      return (Class<Message>) fieldType;
-    } else if (List.class.isAssignableFrom(fieldType)) {
-      // Retrieve the declare element type of the list
-      Type type = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
-      if (type instanceof Class<?> && Message.class.isAssignableFrom((Class<?>) type)) {
-        return (Class<Message>) type;
+    private Field getBuilderField(String name) {
+      try {
+        return builderType.getField(name);
+      } catch (NoSuchFieldException e) {
+        throw new AssertionError("No builder field " + builderType.getName() + "." + name);
+      }
+    }
+
+    private Method getBuilderMethod(String name, Class<?> type) {
+      try {
+        return builderType.getMethod(name, type);
+      } catch (NoSuchMethodException e) {
+        throw new AssertionError("No builder method "
+            + builderType.getName() + "." + name + "(" + type.getName() + ")");
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Message> getMessageType(Field field) {
+      Class<?> fieldType = field.getType();
+      if (Message.class.isAssignableFrom(fieldType)) {
+        return (Class<Message>) fieldType;
+      } else if (List.class.isAssignableFrom(fieldType) || fieldType == LazyMessage.class) {
+        // Retrieve the declared element type of the list or lazy field
+        Type type = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+        if (type instanceof Class<?> && Message.class.isAssignableFrom((Class<?>) type)) {
+          return (Class<Message>) type;
+        }
       }
+      return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Enum> getEnumType(Field field) {
+      Class<?> fieldType = field.getType();
+      if (Enum.class.isAssignableFrom(fieldType)) {
+        return (Class<Enum>) fieldType;
+      } else if (List.class.isAssignableFrom(fieldType)) {
+        // Retrieve the declare element type of the list
+        Type type = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+        if (type instanceof Class<?> && Enum.class.isAssignableFrom((Class<?>) type)) {
+          return (Class<Enum>) type;
+        }
+      }
+      return null;
     }
-    return null;
   }
 
+  private final Wire wire;
+  private final Class<M> messageType;
+  private final Class<Builder<M>> builderType;
+  private final Map<String, Integer> tagMap;
+  private final Map<Integer, FieldInfo> fieldInfoMap;
+
+  /** Held strongly so that the shared metadata outlives this adapter. */
+  private final Metadata metadata;
+
+  /**
+   * The fields of the message and its registered extensions, for lookup by tag when reading.
+   * Replaced when extensions are registered.
+   */
+  private volatile TagTable tagTable;
+
+  /**
+   * Cache information about the Message class and its mapping to proto wire format. The
+   * reflected fields are shared with other {@link Wire} instances; only the extensions are
+   * specific to {@code wire}.
+   */
   @SuppressWarnings("unchecked")
-  private Class<Enum> getEnumType(Field field) {
-    Class<?> fieldType = field.getType();
-    if (Enum.class.isAssignableFrom(fieldType)) {
-      return (Class<Enum>) fieldType;
-    } else if (List.class.isAssignableFrom(fieldType)) {
-      // Retrieve the declare element type of the list
-      Type type = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
-      if (type instanceof Class<?> && Enum.class.isAssignableFrom((Class<?>) type)) {
-        return (Class<Enum>) type;
-      }
+  MessageAdapter(Wire wire, Class<M> messageType) {
+    this.wire = wire;
+    this.messageType = messageType;
+    Metadata metadata = Metadata.CACHE.get(messageType);
+    this.builderType = (Class<Builder<M>>) metadata.builderType;
+    this.tagMap = metadata.tagMap;
+    this.fieldInfoMap = metadata.fieldInfoMap;
+    this.metadata = metadata;
+    refreshExtensions();
+  }
+
+  /** Rebuilds the tag table from the fields and the extensions currently registered. */
+  void refreshExtensions() {
+    Collection<Extension<?, ?>> extensions = wire.registry.getExtensions(messageType);
+    if (extensions.isEmpty()) {
+      tagTable = metadata.fieldTable;
+      return;
+    }
+    Map<Integer, FieldInfo> fieldsAndExtensions = new LinkedHashMap<Integer, FieldInfo>();
+    for (Extension<?, ?> extension : extensions) {
+      fieldsAndExtensions.put(extension.getTag(), new FieldInfo(extension));
     }
-    return null;
+    // A field takes precedence over an extension with the same tag.
+    fieldsAndExtensions.putAll(fieldInfoMap);
+    tagTable = new TagTable(fieldsAndExtensions.values());
   }
 
   // Writing
@@ -237,8 +355,14 @@ final class MessageAdapter<M extends Message> {
 
   private <T extends ExtendableMessage<?>> int getExtensionsSerializedSize(ExtensionMap<T> map) {
     int size = 0;
-    for (Extension<T, ?> extension : map.getExtensions()) {
-      Object value = map.get(extension);
+    for (int i = 0, count = map.size(); i < count; i++) {
+      UnknownFieldMap encoded = map.getEncoded(i);
+      if (encoded != null) {
+        size += encoded.getSerializedSize();
+        continue;
+      }
+      Extension<T, ?> extension = map.getExtension(i);
+      Object value = map.getValue(i);
       int tag = extension.getTag();
       Datatype datatype = extension.getDatatype();
       Label label = extension.getLabel();
@@ -277,6 +401,9 @@ final class MessageAdapter<M extends Message> {
 
   /** Uses reflection to write {@code message} to {@code output} in serialized form. */
   void write(M message, WireOutput output) throws IOException {
+    if (message.writeEncoded(output)) {
+      return;
+    }
     for (FieldInfo fieldInfo : getFields()) {
       Object value = getFieldValue(message, fieldInfo);
       if (value == null) {
@@ -308,8 +435,15 @@ final class MessageAdapter<M extends Message> {
 
   private <T extends ExtendableMessage<?>> void writeExtensions(WireOutput output,
       ExtensionMap<T> extensionMap) throws IOException {
-    for (Extension<T, ?> extension: extensionMap.getExtensions()) {
-      Object value = extensionMap.get(extension);
+    for (int i = 0, count = extensionMap.size(); i < count; i++) {
+      UnknownFieldMap encoded = extensionMap.getEncoded(i);
+      if (encoded != null) {
+        // Write back the bytes the extension was parsed from, decoded or not.
+        encoded.write(output);
+        continue;
+      }
+      Extension<T, ?> extension = extensionMap.getExtension(i);
+      Object value = extensionMap.getValue(i);
       int tag = extension.getTag();
       Datatype datatype = extension.getDatatype();
       Label label = extension.getLabel();
@@ -349,9 +483,9 @@ final class MessageAdapter<M extends Message> {
    * Serializes a given {@link Message} and returns the results as a byte array.
    */
   byte[] toByteArray(M message) {
-    byte[] result = new byte[getSerializedSize(message)];
+    byte[] result = new byte[message.getSerializedSize()];
     try {
-      write(message, WireOutput.newInstance(result));
+      write(message, WireOutput.newPresizedInstance(result));
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -359,34 +493,57 @@ final class MessageAdapter<M extends Message> {
   }
 
   /**
-   * Returns a human-readable version of the given {@link Message}.
+   * Serializes a given {@link Message} as a list of buffers suitable for a gathering write.
+   * Large {@code bytes} values are referenced rather than copied.
    */
-  String toString(M message) {
-    StringBuilder sb = new StringBuilder();
-    sb.append(messageType.getSimpleName());
-    sb.append("{");
+  ByteBuffer[] toByteBuffers(M message) {
+    WireOutput output = WireOutput.newGatheringInstance(message.getSerializedSize());
+    try {
+      write(message, output);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return output.toByteBuffers();
+  }
+
+  /**
+   * Appends a human-readable version of the given {@link Message} to {@code out}, formatting
+   * field values with {@code formatter}.
+   */
+  void format(M message, MessageFormatter formatter, MessageFormatter.Output out)
+      throws IOException {
+    out.append(metadata.simpleName);
+    out.append('{');
 
     String sep = "";
     for (FieldInfo fieldInfo : getFields()) {
+      if (out.isFull()) return;
       Object value = getFieldValue(message, fieldInfo);
       if (value == null) {
         continue;
       }
-      sb.append(sep);
+      out.append(sep);
       sep = ", ";
-      sb.append(fieldInfo.name);
-      sb.append("=");
-      sb.append(value);
+      out.append(fieldInfo.name);
+      out.append('=');
+      formatter.formatValue(value, out);
     }
     if (message instanceof ExtendableMessage<?>) {
-      ExtendableMessage<?> extendableMessage = (ExtendableMessage<?>) message;
-      sb.append(sep);
-      sb.append("{extensions=");
-      sb.append(extendableMessage.extensionsToString());
-      sb.append("}");
+      ExtensionMap<?> extensionMap = ((ExtendableMessage<?>) message).extensionMap;
+      out.append(sep);
+      out.append("{extensions={");
+      for (int i = 0, size = extensionMap == null ? 0 : extensionMap.size(); i < size; i++) {
+        if (out.isFull()) return;
+        if (i > 0) {
+          out.append(", ");
+        }
+        out.append(Integer.toString(extensionMap.getExtension(i).getTag()));
+        out.append('=');
+        formatter.formatValue(extensionMap.getValue(i), out);
+      }
+      out.append("}}");
     }
-    sb.append("}");
-    return sb.toString();
+    out.append('}');
   }
 
   /**
@@ -415,7 +572,9 @@ final class MessageAdapter<M extends Message> {
       case BYTES:
         int length = ((ByteString) value).size();
         return WireOutput.varint32Size(length) + length;
-      case MESSAGE: return getMessageSize((Message) value);
+      case MESSAGE:
+        return value instanceof LazyMessage
+            ? getLazyMessageSize((LazyMessage<?>) value) : getMessageSize((Message) value);
       case FIXED32: case SFIXED32: case FLOAT:
         return WireType.FIXED_32_SIZE;
       case FIXED64: case SFIXED64: case DOUBLE:
@@ -454,6 +613,14 @@ final class MessageAdapter<M extends Message> {
     return WireOutput.varint32Size(messageSize) + messageSize;
   }
 
+  private int getLazyMessageSize(LazyMessage<?> lazy) {
+    ByteString encoded = lazy.encoded();
+    if (encoded == null) {
+      return getMessageSize(lazy.get());
+    }
+    return WireOutput.varint32Size(encoded.size()) + encoded.size();
+  }
+
   private void writeValue(WireOutput output, int tag, Object value, Datatype datatype)
     throws IOException {
     output.writeTag(tag, datatype.wireType());
@@ -481,9 +648,15 @@ final class MessageAdapter<M extends Message> {
       case BYTES:
         ByteString byteString = (ByteString) value;
         output.writeVarint32(byteString.size());
-        output.writeRawBytes(byteString.toByteArray());
+        output.writeRawBytes(byteString);
+        break;
+      case MESSAGE:
+        if (value instanceof LazyMessage) {
+          writeLazyMessage((LazyMessage<?>) value, output);
+        } else {
+          writeMessage((Message) value, output);
+        }
         break;
-      case MESSAGE: writeMessage((Message) value, output); break;
       case FIXED32: case SFIXED32: output.writeFixed32((Integer) value); break;
       case FIXED64: case SFIXED64: output.writeFixed64((Long) value); break;
       case FLOAT: output.writeFixed32(Float.floatToIntBits((Float) value)); break;
@@ -499,6 +672,17 @@ final class MessageAdapter<M extends Message> {
     adapter.write(message, output);
   }
 
+  private void writeLazyMessage(LazyMessage<?> lazy, WireOutput output) throws IOException {
+    ByteString encoded = lazy.encoded();
+    if (encoded == null) {
+      writeMessage(lazy.get(), output);
+    } else {
+      // Write back the bytes the field was parsed from, decoded or not.
+      output.writeVarint32(encoded.size());
+      output.writeRawBytes(encoded);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private <E extends Enum> void writeEnum(E value, WireOutput output)
       throws IOException {
@@ -510,75 +694,255 @@ final class MessageAdapter<M extends Message> {
 
   /** Uses reflection to read an instance from {@code input}. */
   M read(WireInput input) throws IOException {
+    ReusableBuilders reusableBuilders = input.reusableBuilders;
+    if (reusableBuilders == null) {
+      Builder<M> builder = newBuilder();
+      readInto(input, builder, new Storage(), false);
+      return builder.build();
+    }
+
+    Builder<M> builder = reusableBuilders.take(messageType);
+    if (builder == null) {
+      builder = newBuilder();
+    } else {
+      builder.clear();
+    }
+    readInto(input, builder, reusableBuilders.storage(builder), false);
+    M message = builder.build();
+    reusableBuilders.release(messageType, builder);
+    return message;
+  }
+
+  /**
+   * Clears {@code builder}, reads a message from {@code input} into it and builds it. The
+   * builder's lists of repeated values, and the builders of nested messages, are reused by later
+   * calls for the same {@code builder}.
+   */
+  M readInto(WireInput input, Builder<M> builder) throws IOException {
+    builder.clear();
+    if (builder.reusableBuilders == null) {
+      builder.reusableBuilders = new ReusableBuilders();
+    }
+    ReusableBuilders saved = input.reusableBuilders;
+    input.reusableBuilders = builder.reusableBuilders;
     try {
-      Builder<M> builder = builderType.newInstance();
-      Storage storage = new Storage();
-
-      while (true) {
-        Extension<?, ?> extension = null;
-        int tagAndType = input.readTag();
-        int tag = tagAndType >> WireType.TAG_TYPE_BITS;
-        WireType wireType = WireType.valueOf(tagAndType);
-        if (tag == 0) {
-          // Set repeated fields
-          for (int storedTag : storage.getTags()) {
-            FieldInfo fieldInfo = fieldInfoMap.get(storedTag);
-            if (fieldInfo != null) {
-              setBuilderField(builder, storedTag, storage.get(storedTag));
-            } else {
-              setExtension((ExtendableBuilder<?>) builder, getExtension(storedTag),
-                  storage.get(storedTag));
-            }
-          }
-          return builder.build();
-        }
+      readInto(input, builder, builder.reusableBuilders.storage(builder), false);
+    } finally {
+      input.reusableBuilders = saved;
+    }
+    return builder.build();
+  }
 
-        Datatype datatype;
-        Label label;
-        FieldInfo fieldInfo = fieldInfoMap.get(tag);
-        if (fieldInfo != null) {
-          datatype = fieldInfo.datatype;
-          label = fieldInfo.label;
-        } else {
-          extension = getExtension(tag);
-          if (extension == null) {
-            readUnknownField(builder, input, tag, wireType);
+  /**
+   * Reads the fields of a message from {@code input} into {@code builder}. Repeated values are
+   * appended to those already set; other values replace them.
+   */
+  void mergeFrom(WireInput input, Builder<M> builder) throws IOException {
+    readInto(input, builder, new Storage(), true);
+  }
+
+  /**
+   * Reads fields from {@code input} into {@code builder}, collecting repeated values in
+   * {@code storage}. If {@code append} is true, repeated values are appended to the builder's
+   * current values. Otherwise the builder's fields must be clear, and it takes the lists of
+   * {@code storage} as its values, which are reused by later parses into the same builder;
+   * building copies them once into the message's immutable lists.
+   */
+  private void readInto(WireInput input, Builder<M> builder, Storage storage, boolean append)
+      throws IOException {
+    // Use the same extensions for the whole message, even if more are registered meanwhile.
+    TagTable tagTable = this.tagTable;
+
+    while (true) {
+      int tagAndType = input.readTag();
+      int tag = tagAndType >> WireType.TAG_TYPE_BITS;
+      WireType wireType = WireType.valueOf(tagAndType);
+      if (tag == 0) {
+        // Set repeated fields
+        for (int storedTag : storage.getTags()) {
+          List<Object> values = storage.get(storedTag);
+          if (values.isEmpty()) {
             continue;
           }
-          datatype = extension.getDatatype();
-          label = extension.getLabel();
-        }
-        Object value;
-
-        if (label.isPacked() && wireType == WireType.LENGTH_DELIMITED) {
-          // Decode packed format
-          int length = input.readVarint32();
-          long start = input.getPosition();
-          int oldLimit = input.pushLimit(length);
-          while (input.getPosition() < start + length) {
-            value = readValue(input, tag, datatype);
-            storage.add(tag, value);
-          }
-          input.popLimit(oldLimit);
-          if (input.getPosition() != start + length) {
-            throw new IOException("Packed data had wrong length!");
+          FieldInfo fieldInfo = fieldInfoMap.get(storedTag);
+          if (append) {
+            // The caller keeps this builder, so its lists are shared with what it builds.
+            values = new CopyOnWriteList<Object>(ImmutableList.<Object>copyOf(
+                appended(getBuilderField(builder, fieldInfo), values)));
           }
+          setBuilderField(builder, fieldInfo, values);
+        }
+        return;
+      }
+
+      FieldInfo fieldInfo = tagTable.get(tag);
+      if (fieldInfo == null) {
+        readUnknownField(builder, input, tag, wireType);
+        continue;
+      }
+      if (fieldInfo.extension != null) {
+        readEncodedExtension((ExtendableBuilder<?>) builder, fieldInfo.extension, input, tag,
+            wireType);
+        continue;
+      }
+      Datatype datatype = fieldInfo.datatype;
+      Label label = fieldInfo.label;
+
+      if (label.isPacked() && wireType == WireType.LENGTH_DELIMITED) {
+        // Decode packed format
+        int length = input.readVarint32();
+        long start = input.getPosition();
+        int oldLimit = input.pushLimit(length);
+        readPacked(input, tag, datatype, length, storage.list(tag));
+        input.popLimit(oldLimit);
+        if (input.getPosition() != start + length) {
+          throw new IOException("Packed data had wrong length!");
+        }
+      } else {
+        // Read a single value
+        Object value = fieldInfo.lazy
+            ? readLazyMessage(input, fieldInfo.messageType)
+            : readValue(input, tag, datatype);
+        if (label.isRepeated()) {
+          storage.add(tag, value);
         } else {
-          // Read a single value
-          value = readValue(input, tag, datatype);
-          if (label.isRepeated()) {
-            storage.add(tag, value);
-          } else if (extension != null) {
-            setExtension((ExtendableBuilder<?>) builder, extension, value);
-          } else {
-            setBuilderField(builder, tag, value);
-          }
+          setBuilderField(builder, fieldInfo, value);
         }
       }
+    }
+  }
+
+  private Object getBuilderField(Builder<M> builder, FieldInfo fieldInfo) {
+    try {
+      return fieldInfo.builderField.get(builder);
     } catch (IllegalAccessException e) {
-      throw new RuntimeException(e);
-    } catch (InstantiationException e) {
-      throw new RuntimeException(e);
+      throw new AssertionError(e);
+    }
+  }
+
+  /** Returns a new list of {@code current}, which may be null, followed by {@code values}. */
+  private static List<Object> appended(Object current, List<Object> values) {
+    List<Object> result = new ArrayList<Object>();
+    if (current != null) {
+      result.addAll((List<?>) current);
+    }
+    result.addAll(values);
+    return result;
+  }
+
+  /**
+   * Appends the encoded value of {@code extension} to {@code builder} without decoding it. The
+   * value is decoded by {@link #decodeExtension} if it is requested.
+   */
+  @SuppressWarnings("unchecked")
+  private void readEncodedExtension(ExtendableBuilder builder, Extension<?, ?> extension,
+      WireInput input, int tag, WireType wireType) throws IOException {
+    if (wireType == WireType.START_GROUP) {
+      input.skipGroup();
+      return;
+    } else if (wireType == WireType.END_GROUP) {
+      return;
+    }
+    if (builder.extensionMap == null) {
+      builder.extensionMap = new ExtensionMap();
+    }
+    UnknownFieldMap encoded = builder.extensionMap.encoded(extension, this);
+    switch (wireType) {
+      case VARINT: encoded.addVarint(tag, input.readVarint64()); break;
+      case FIXED32: encoded.addFixed32(tag, input.readFixed32()); break;
+      case FIXED64: encoded.addFixed64(tag, input.readFixed64()); break;
+      case LENGTH_DELIMITED: encoded.addLengthDelimited(tag, input, input.readVarint32()); break;
+      default: throw new RuntimeException("Unsupported wire type: " + wireType);
+    }
+  }
+
+  /** Decodes the value of {@code extension} from its encoded values. */
+  Object decodeExtension(Extension<?, ?> extension, byte[] encoded) throws IOException {
+    WireInput input = WireInput.newInstance(encoded);
+    int tag = extension.getTag();
+    Datatype datatype = extension.getDatatype();
+    List<Object> values = new ArrayList<Object>();
+    int tagAndType;
+    while ((tagAndType = input.readTag()) != 0) {
+      if (WireType.valueOf(tagAndType) == WireType.LENGTH_DELIMITED
+          && datatype.wireType() != WireType.LENGTH_DELIMITED) {
+        int length = input.readVarint32();
+        int oldLimit = input.pushLimit(length);
+        readPacked(input, tag, datatype, length, values);
+        input.popLimit(oldLimit);
+      } else {
+        values.add(readValue(input, tag, datatype));
+      }
+    }
+    if (extension.getLabel().isRepeated()) {
+      return values;
+    }
+    return values.get(values.size() - 1);
+  }
+
+  /**
+   * Decodes a run of {@code length} bytes of packed values into a primitive array, then appends
+   * them to {@code list}.
+   */
+  private void readPacked(WireInput input, int tag, Datatype datatype, int length,
+      List<Object> list) throws IOException {
+    switch (datatype) {
+      case INT32: case UINT32:
+        for (int value : input.readPackedVarint32(length)) {
+          list.add(value);
+        }
+        break;
+      case SINT32:
+        for (int value : input.readPackedVarint32(length)) {
+          list.add(WireInput.decodeZigZag32(value));
+        }
+        break;
+      case BOOL:
+        for (int value : input.readPackedVarint32(length)) {
+          list.add(value != 0);
+        }
+        break;
+      case ENUM:
+        EnumAdapter<? extends Enum> adapter = wire.enumAdapter(getEnumClass(tag));
+        for (int value : input.readPackedVarint32(length)) {
+          list.add(adapter.fromInt(value));
+        }
+        break;
+      case INT64: case UINT64:
+        for (long value : input.readPackedVarint64(length)) {
+          list.add(value);
+        }
+        break;
+      case SINT64:
+        for (long value : input.readPackedVarint64(length)) {
+          list.add(WireInput.decodeZigZag64(value));
+        }
+        break;
+      case FIXED32: case SFIXED32:
+        for (int value : input.readPackedFixed32(length)) {
+          list.add(value);
+        }
+        break;
+      case FLOAT:
+        for (int value : input.readPackedFixed32(length)) {
+          list.add(Float.intBitsToFloat(value));
+        }
+        break;
+      case FIXED64: case SFIXED64:
+        for (long value : input.readPackedFixed64(length)) {
+          list.add(value);
+        }
+        break;
+      case DOUBLE:
+        for (long value : input.readPackedFixed64(length)) {
+          list.add(Double.longBitsToDouble(value));
+        }
+        break;
+      default:
+        long end = input.getPosition() + length;
+        while (input.getPosition() < end) {
+          list.add(readValue(input, tag, datatype));
+        }
     }
   }
 
@@ -609,27 +973,29 @@ final class MessageAdapter<M extends Message> {
       throw new IOException("Wire recursion limit exceeded");
     }
     final int oldLimit = input.pushLimit(length);
+    byte[] array = input.retainBytes ? input.array() : null;
+    int start = input.arrayPosition();
     ++input.recursionDepth;
     MessageAdapter<? extends Message> adapter = wire.messageAdapter(getMessageClass(tag));
     Message message = adapter.read(input);
     input.checkLastTagWas(0);
     --input.recursionDepth;
     input.popLimit(oldLimit);
+    if (array != null) {
+      message.retainEncoded(array, start, length);
+    }
     return message;
   }
 
+  private <T extends Message> LazyMessage<T> readLazyMessage(WireInput input,
+      Class<T> messageType) throws IOException {
+    return LazyMessage.of(wire, messageType, input.readBytes());
+  }
+
   @SuppressWarnings("unchecked")
   private Class<Message> getMessageClass(int tag) {
-    FieldInfo fieldInfo = fieldInfoMap.get(tag);
-    Class<Message> messageClass = fieldInfo == null
-        ? null : (Class<Message>) fieldInfo.messageType;
-    if (messageClass == null) {
-      Extension<ExtendableMessage<?>, ?> extension = getExtension(tag);
-      if (extension != null) {
-        messageClass = (Class<Message>) extension.getMessageType();
-      }
-    }
-    return messageClass;
+    FieldInfo fieldInfo = tagTable.get(tag);
+    return fieldInfo == null ? null : (Class<Message>) fieldInfo.messageType;
   }
 
   private void readUnknownField(Builder builder, WireInput input, int tag, WireType type)
@@ -645,8 +1011,7 @@ final class MessageAdapter<M extends Message> {
         builder.addFixed64(tag, input.readFixed64());
         break;
       case LENGTH_DELIMITED:
-        int length = input.readVarint32();
-        builder.addLengthDelimited(tag, input.readBytes(length));
+        builder.ensureUnknownFieldMap().addLengthDelimited(tag, input, input.readVarint32());
         break;
       /* Skip any groups found in the input */
       case START_GROUP:
@@ -658,16 +1023,27 @@ final class MessageAdapter<M extends Message> {
     }
   }
 
-  private static class Storage {
+  /** Repeated values read for each tag. The lists are kept when cleared, so they can be reused. */
+  static final class Storage {
     private final Map<Integer, List<Object>> map = new LinkedHashMap<Integer, List<Object>>();
 
+    void clear() {
+      for (List<Object> list : map.values()) {
+        list.clear();
+      }
+    }
+
     void add(int tag, Object value) {
+      list(tag).add(value);
+    }
+
+    List<Object> list(int tag) {
       List<Object> list = map.get(tag);
       if (list == null) {
         list = new ArrayList<Object>();
         map.put(tag, list);
       }
-      list.add(value);
+      return list;
     }
 
     Set<Integer> getTags() {
@@ -679,13 +1055,6 @@ final class MessageAdapter<M extends Message> {
     }
   }
 
-  @SuppressWarnings("unchecked")
-  private Extension<ExtendableMessage<?>, ?> getExtension(int tag) {
-    ExtensionRegistry registry = wire.registry;
-    return registry == null
-        ? null : registry.getExtension((Class<ExtendableMessage<?>>) messageType, tag);
-  }
-
   @SuppressWarnings("unchecked")
   Extension<ExtendableMessage<?>, ?> getExtension(String name) {
     ExtensionRegistry registry = wire.registry;
@@ -693,21 +1062,40 @@ final class MessageAdapter<M extends Message> {
         ? null : registry.getExtension((Class<ExtendableMessage<?>>) messageType, name);
   }
 
-  @SuppressWarnings("unchecked")
-  private void setExtension(ExtendableMessage.ExtendableBuilder builder, Extension<?, ?> extension,
-      Object value) {
-    builder.setExtension(extension, value);
+  private Class<? extends Enum> getEnumClass(int tag) {
+    FieldInfo fieldInfo = tagTable.get(tag);
+    return fieldInfo == null ? null : fieldInfo.enumType;
   }
 
-  private Class<? extends Enum> getEnumClass(int tag) {
-    FieldInfo fieldInfo = fieldInfoMap.get(tag);
-    Class<? extends Enum> enumType = fieldInfo == null ? null : fieldInfo.enumType;
-    if (enumType == null) {
-      Extension<ExtendableMessage<?>, ?> extension = getExtension(tag);
-      if (extension != null) {
-        enumType = extension.getEnumType();
+  /** An open-addressed hash table of {@link FieldInfo}s keyed by unboxed tag. */
+  private static final class TagTable {
+    private final int[] tags;
+    private final FieldInfo[] values;
+    private final int mask;
+
+    TagTable(Collection<FieldInfo> fieldInfos) {
+      // At most half full, so that probes are short and always reach an empty slot.
+      int capacity = Integer.highestOneBit(Math.max(1, fieldInfos.size()) * 2) * 2;
+      this.tags = new int[capacity];
+      this.values = new FieldInfo[capacity];
+      this.mask = capacity - 1;
+      for (FieldInfo fieldInfo : fieldInfos) {
+        int i = fieldInfo.tag & mask;
+        while (values[i] != null) {
+          i = (i + 1) & mask;
+        }
+        tags[i] = fieldInfo.tag;
+        values[i] = fieldInfo;
+      }
+    }
+
+    FieldInfo get(int tag) {
+      for (int i = tag & mask; values[i] != null; i = (i + 1) & mask) {
+        if (tags[i] == tag) {
+          return values[i];
+        }
       }
+      return null;
     }
-    return enumType;
   }
 }
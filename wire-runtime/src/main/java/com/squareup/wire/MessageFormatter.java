@@ -0,0 +1,231 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes human-readable versions of messages to an {@link Appendable}, in the same form as
+ * {@link Message#toString()}. A formatter may limit the length of its output, and truncate long
+ * strings, {@code bytes} values and repeated fields. Truncated values end with {@code "..."}.
+ * Once the output reaches its limit, {@code "..."} is appended and nothing further is formatted,
+ * so logging a large message costs no more than its limit.
+ *
+ * <pre>   {@code
+ *   MessageFormatter formatter = new MessageFormatter.Builder()
+ *       .maxLength(1024)
+ *       .maxBytesLength(16)
+ *       .build();
+ *   formatter.format(message, logLine);
+ * }</pre>
+ *
+ * Formatters are immutable and may be shared between threads.
+ */
+public final class MessageFormatter {
+  /** Formats with no limits. Used by {@link Message#toString()}. */
+  static final MessageFormatter UNLIMITED = new Builder().build();
+
+  private static final String ELLIPSIS = "...";
+
+  private final int maxLength;
+  private final int maxStringLength;
+  private final int maxBytesLength;
+  private final int maxRepeatedCount;
+
+  private MessageFormatter(Builder builder) {
+    this.maxLength = builder.maxLength;
+    this.maxStringLength = builder.maxStringLength;
+    this.maxBytesLength = builder.maxBytesLength;
+    this.maxRepeatedCount = builder.maxRepeatedCount;
+  }
+
+  /** Appends a human-readable version of {@code message} to {@code out}. */
+  public void format(Message message, Appendable out) throws IOException {
+    formatMessage(message, new Output(out, maxLength));
+  }
+
+  /** Returns a human-readable version of {@code message}. */
+  public String toString(Message message) {
+    StringBuilder sb = new StringBuilder();
+    try {
+      format(message, sb);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return sb.toString();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void formatMessage(Message message, Output out) throws IOException {
+    Message.WIRE.messageAdapter((Class<Message>) message.getClass()).format(message, this, out);
+  }
+
+  /** Appends a field or extension value, truncating it if necessary. */
+  void formatValue(Object value, Output out) throws IOException {
+    if (value instanceof Message) {
+      formatMessage((Message) value, out);
+    } else if (value instanceof LazyMessage) {
+      formatMessage(((LazyMessage<?>) value).get(), out);
+    } else if (value instanceof String) {
+      formatString((String) value, out);
+    } else if (value instanceof ByteString) {
+      formatBytes((ByteString) value, out);
+    } else if (value instanceof List) {
+      formatList((List<?>) value, out);
+    } else {
+      out.append(String.valueOf(value));
+    }
+  }
+
+  private void formatString(String value, Output out) throws IOException {
+    if (value.length() <= maxStringLength) {
+      out.append(value);
+    } else {
+      out.append(value, 0, maxStringLength);
+      out.append(ELLIPSIS);
+    }
+  }
+
+  private void formatBytes(ByteString value, Output out) throws IOException {
+    byte[] data = value.data;
+    int count = Math.min(data.length, maxBytesLength);
+    // Don't encode bytes that would be cut off anyway. Each 3 bytes take 4 characters.
+    count = (int) Math.min(count, (out.remaining / 4 + 1) * 3L);
+    Stringer.encode(data, count, out);
+    if (count < data.length) {
+      out.append(ELLIPSIS);
+    }
+  }
+
+  private void formatList(List<?> values, Output out) throws IOException {
+    out.append('[');
+    Iterator<?> iterator = values.iterator();
+    for (int i = 0; iterator.hasNext(); i++) {
+      if (out.isFull()) return;
+      if (i > 0) {
+        out.append(", ");
+      }
+      if (i == maxRepeatedCount) {
+        out.append(ELLIPSIS);
+        break;
+      }
+      formatValue(iterator.next(), out);
+    }
+    out.append(']');
+  }
+
+  /**
+   * Builds a {@link MessageFormatter}. By default there are no limits. Lengths are measured in
+   * characters, except for {@code bytes} values which are measured in bytes before encoding.
+   */
+  public static final class Builder {
+    private int maxLength = Integer.MAX_VALUE;
+    private int maxStringLength = Integer.MAX_VALUE;
+    private int maxBytesLength = Integer.MAX_VALUE;
+    private int maxRepeatedCount = Integer.MAX_VALUE;
+
+    /** Stops formatting after {@code maxLength} characters, and then appends {@code "..."}. */
+    public Builder maxLength(int maxLength) {
+      this.maxLength = checkLimit(maxLength);
+      return this;
+    }
+
+    /** Truncates string values to {@code maxStringLength} characters. */
+    public Builder maxStringLength(int maxStringLength) {
+      this.maxStringLength = checkLimit(maxStringLength);
+      return this;
+    }
+
+    /** Truncates {@code bytes} values to their first {@code maxBytesLength} bytes. */
+    public Builder maxBytesLength(int maxBytesLength) {
+      this.maxBytesLength = checkLimit(maxBytesLength);
+      return this;
+    }
+
+    /** Truncates repeated fields to their first {@code maxRepeatedCount} values. */
+    public Builder maxRepeatedCount(int maxRepeatedCount) {
+      this.maxRepeatedCount = checkLimit(maxRepeatedCount);
+      return this;
+    }
+
+    private static int checkLimit(int limit) {
+      if (limit < 0) {
+        throw new IllegalArgumentException("limit < 0: " + limit);
+      }
+      return limit;
+    }
+
+    public MessageFormatter build() {
+      return new MessageFormatter(this);
+    }
+  }
+
+  /**
+   * An {@link Appendable} that passes at most a given number of characters to another. When
+   * more are appended, it appends {@code "..."} and then ignores everything else.
+   */
+  static final class Output implements Appendable {
+    private final Appendable out;
+    private int remaining;
+    private boolean full;
+
+    Output(Appendable out, int maxLength) {
+      this.out = out;
+      this.remaining = maxLength;
+    }
+
+    /** Returns true once characters have been dropped; nothing more will be written. */
+    boolean isFull() {
+      return full;
+    }
+
+    @Override public Output append(CharSequence csq) throws IOException {
+      return append(csq, 0, csq.length());
+    }
+
+    @Override public Output append(CharSequence csq, int start, int end) throws IOException {
+      if (full) return this;
+      int count = end - start;
+      if (count > remaining) {
+        out.append(csq, start, start + remaining);
+        overflow();
+      } else {
+        out.append(csq, start, end);
+        remaining -= count;
+      }
+      return this;
+    }
+
+    @Override public Output append(char c) throws IOException {
+      if (full) return this;
+      if (remaining == 0) {
+        overflow();
+      } else {
+        out.append(c);
+        remaining--;
+      }
+      return this;
+    }
+
+    private void overflow() throws IOException {
+      out.append(ELLIPSIS);
+      remaining = 0;
+      full = true;
+    }
+  }
+}
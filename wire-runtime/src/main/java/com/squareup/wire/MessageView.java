@@ -0,0 +1,360 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static com.squareup.wire.Message.Datatype;
+
+/**
+ * Superclass for read-only views of encoded messages, generated by the compiler's
+ * {@code --views} flag. A view wraps its bytes without copying them. On construction it scans
+ * them once to build a compact index from each field occurrence to its offset. Getters then
+ * decode values in place. Nested messages are views over a sub-range of the same bytes.
+ *
+ * <p>Views do not validate required fields. They ignore extensions, unknown fields and groups.
+ * As with parsing, the last occurrence of a non-repeated field wins.
+ */
+public abstract class MessageView {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String MALFORMED = "Malformed message";
+
+  private final byte[] data;
+  private final int end;
+
+  /** Pairs of (tag and wire type, offset of the value), in the order they were encountered. */
+  private int[] entries = new int[16];
+  private int entriesSize;
+
+  // The most recent repeated lookup, so that iterating over a field in order is linear.
+  private int cursorTag = -1;
+  private int cursorIndex;
+  private int cursorEntry;
+  private int cursorOffset;
+
+  /** Creates a view over {@code count} bytes of {@code data}, starting at {@code offset}. */
+  protected MessageView(byte[] data, int offset, int count) {
+    if ((offset | count) < 0 || offset > data.length - count) {
+      throw new IndexOutOfBoundsException();
+    }
+    this.data = data;
+    this.end = offset + count;
+    buildIndex(offset);
+  }
+
+  /**
+   * Creates a view over the remaining bytes of {@code buffer}. Buffers that are not backed by an
+   * accessible array are copied.
+   */
+  protected MessageView(ByteBuffer buffer) {
+    this(buffer.hasArray() ? buffer.array() : copyOf(buffer),
+        buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0, buffer.remaining());
+  }
+
+  private static byte[] copyOf(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private void buildIndex(int pos) {
+    while (pos < end) {
+      int tagAndType = (int) readVarint(pos);
+      pos = skipVarint(pos);
+      if ((tagAndType >>> WireType.TAG_TYPE_BITS) == 0) {
+        throw new IllegalArgumentException(MALFORMED);
+      }
+      WireType wireType = WireType.valueOf(tagAndType);
+      if (wireType != WireType.START_GROUP) {
+        if (entriesSize == entries.length) {
+          int[] newEntries = new int[entries.length * 2];
+          System.arraycopy(entries, 0, newEntries, 0, entriesSize);
+          entries = newEntries;
+        }
+        entries[entriesSize++] = tagAndType;
+        entries[entriesSize++] = pos;
+      }
+      pos = skipValue(tagAndType, pos);
+    }
+  }
+
+  private int skipValue(int tagAndType, int pos) {
+    switch (WireType.valueOf(tagAndType)) {
+      case VARINT: return skipVarint(pos);
+      case FIXED32: return checkEnd(pos + WireType.FIXED_32_SIZE);
+      case FIXED64: return checkEnd(pos + WireType.FIXED_64_SIZE);
+      case LENGTH_DELIMITED:
+        return contentOffset(pos) + contentLength(pos);
+      case START_GROUP:
+        int endGroup = (tagAndType & ~0x7) | WireType.END_GROUP.value();
+        while (true) {
+          int tag = (int) readVarint(pos);
+          pos = skipVarint(pos);
+          if (tag == endGroup) return pos;
+          pos = skipValue(tag, pos);
+        }
+      default:
+        throw new IllegalArgumentException(MALFORMED);
+    }
+  }
+
+  private int checkEnd(int pos) {
+    if (pos < 0 || pos > end) {
+      throw new IllegalArgumentException(MALFORMED);
+    }
+    return pos;
+  }
+
+  /** Returns the array backing this view. */
+  protected final byte[] array() {
+    return data;
+  }
+
+  /**
+   * Returns the offset of the last value of the field with {@code tag}, or -1 if it is absent.
+   * Values whose wire type is not that of {@code datatype} are ignored.
+   */
+  protected final int lastOffset(int tag, Datatype datatype) {
+    int tagAndType = WireOutput.makeTag(tag, datatype.wireType());
+    for (int i = entriesSize - 2; i >= 0; i -= 2) {
+      if (entries[i] == tagAndType) {
+        return entries[i + 1];
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the number of values of the repeated field with {@code tag}, packed or not. */
+  protected final int count(int tag, Datatype datatype) {
+    int count = 0;
+    for (int i = 0; i < entriesSize; i += 2) {
+      if (!matches(entries[i], tag, datatype)) continue;
+      int offset = entries[i + 1];
+      if (isPackedRun(entries[i], datatype)) {
+        int runEnd = runEnd(offset, datatype);
+        switch (datatype.wireType()) {
+          case FIXED32:
+            count += (runEnd - contentOffset(offset)) / WireType.FIXED_32_SIZE;
+            break;
+          case FIXED64:
+            count += (runEnd - contentOffset(offset)) / WireType.FIXED_64_SIZE;
+            break;
+          default:
+            for (int pos = contentOffset(offset); pos < runEnd; pos++) {
+              if (data[pos] >= 0) count++;
+            }
+        }
+      } else {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the offset of value {@code position} of the repeated field with {@code tag}.
+   *
+   * @throws IndexOutOfBoundsException if the field has {@code position} or fewer values.
+   */
+  protected final int offset(int tag, Datatype datatype, int position) {
+    if (position < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+    int steps;
+    if (tag == cursorTag && position >= cursorIndex) {
+      steps = position - cursorIndex;
+    } else {
+      cursorTag = -1;
+      if (!seekEntry(tag, 0, datatype)) {
+        throw new IndexOutOfBoundsException();
+      }
+      steps = position;
+    }
+    cursorTag = -1;
+    for (; steps > 0; steps--) {
+      if (isPackedRun(entries[cursorEntry], datatype)) {
+        int runEnd = runEnd(entries[cursorEntry + 1], datatype);
+        int next = skipPackedValue(cursorOffset, datatype);
+        if (next < runEnd) {
+          cursorOffset = next;
+          continue;
+        }
+      }
+      if (!seekEntry(tag, cursorEntry + 2, datatype)) {
+        throw new IndexOutOfBoundsException();
+      }
+    }
+    cursorTag = tag;
+    cursorIndex = position;
+    return cursorOffset;
+  }
+
+  /**
+   * Moves the cursor to the first value of the first entry for {@code tag}, starting at entry
+   * {@code from}. Empty packed runs are skipped. Returns false if there is no such entry.
+   */
+  private boolean seekEntry(int tag, int from, Datatype datatype) {
+    for (int i = from; i < entriesSize; i += 2) {
+      if (!matches(entries[i], tag, datatype)) continue;
+      int offset = entries[i + 1];
+      if (isPackedRun(entries[i], datatype)) {
+        if (readVarint32(offset) == 0) continue;
+        offset = contentOffset(offset);
+      }
+      cursorEntry = i;
+      cursorOffset = offset;
+      return true;
+    }
+    return false;
+  }
+
+  private int skipPackedValue(int pos, Datatype datatype) {
+    switch (datatype.wireType()) {
+      case FIXED32: return pos + WireType.FIXED_32_SIZE;
+      case FIXED64: return pos + WireType.FIXED_64_SIZE;
+      default: return skipVarint(pos);
+    }
+  }
+
+  /**
+   * Returns true if {@code tagAndType} is a value of the field with {@code tag}, either with the
+   * wire type of {@code datatype} or as a packed run.
+   */
+  private static boolean matches(int tagAndType, int tag, Datatype datatype) {
+    return (tagAndType >>> WireType.TAG_TYPE_BITS) == tag
+        && (WireType.valueOf(tagAndType) == datatype.wireType()
+            || isPackedRun(tagAndType, datatype));
+  }
+
+  /**
+   * Returns the end of the packed run at {@code offset}, checking that it holds a whole number of
+   * values of {@code datatype}.
+   */
+  private int runEnd(int offset, Datatype datatype) {
+    int start = contentOffset(offset);
+    int runEnd = start + contentLength(offset);
+    boolean whole;
+    switch (datatype.wireType()) {
+      case FIXED32: whole = (runEnd - start) % WireType.FIXED_32_SIZE == 0; break;
+      case FIXED64: whole = (runEnd - start) % WireType.FIXED_64_SIZE == 0; break;
+      default: whole = runEnd == start || data[runEnd - 1] >= 0;
+    }
+    if (!whole) {
+      throw new IllegalArgumentException(MALFORMED);
+    }
+    return runEnd;
+  }
+
+  private static boolean isPackedRun(int tagAndType, Datatype datatype) {
+    return WireType.valueOf(tagAndType) == WireType.LENGTH_DELIMITED
+        && datatype.wireType() != WireType.LENGTH_DELIMITED;
+  }
+
+  /** Returns the offset of the content of the length-delimited value at {@code offset}. */
+  protected final int contentOffset(int offset) {
+    return skipVarint(offset);
+  }
+
+  /**
+   * Returns the length of the length-delimited value at {@code offset}, checking that it lies
+   * within this view.
+   */
+  private int contentLength(int offset) {
+    // A negative length would move backwards, and so never reach the end.
+    int length = readVarint32(offset);
+    if (length < 0 || contentOffset(offset) > end - length) {
+      throw new IllegalArgumentException(MALFORMED);
+    }
+    return length;
+  }
+
+  protected final int readVarint32(int offset) {
+    return (int) readVarint(offset);
+  }
+
+  protected final long readVarint64(int offset) {
+    return readVarint(offset);
+  }
+
+  protected final int readSint32(int offset) {
+    return WireInput.decodeZigZag32(readVarint32(offset));
+  }
+
+  protected final long readSint64(int offset) {
+    return WireInput.decodeZigZag64(readVarint64(offset));
+  }
+
+  protected final boolean readBool(int offset) {
+    return readVarint(offset) != 0;
+  }
+
+  protected final <E extends Enum> E readEnum(int offset, Class<E> enumClass) {
+    return Message.enumFromInt(enumClass, readVarint32(offset));
+  }
+
+  protected final int readFixed32(int offset) {
+    if (offset < 0 || offset > end - WireType.FIXED_32_SIZE) {
+      throw new IllegalArgumentException(MALFORMED);
+    }
+    return (data[offset] & 0xff)
+        | ((data[offset + 1] & 0xff) << 8)
+        | ((data[offset + 2] & 0xff) << 16)
+        | ((data[offset + 3] & 0xff) << 24);
+  }
+
+  protected final long readFixed64(int offset) {
+    return (readFixed32(offset) & 0xffffffffL) | ((long) readFixed32(offset + 4) << 32);
+  }
+
+  protected final float readFloat(int offset) {
+    return Float.intBitsToFloat(readFixed32(offset));
+  }
+
+  protected final double readDouble(int offset) {
+    return Double.longBitsToDouble(readFixed64(offset));
+  }
+
+  protected final String readString(int offset) {
+    return new String(data, contentOffset(offset), contentLength(offset), UTF_8);
+  }
+
+  protected final ByteString readBytes(int offset) {
+    return ByteString.of(data, contentOffset(offset), contentLength(offset));
+  }
+
+  private long readVarint(int pos) {
+    long result = 0;
+    for (int shift = 0; shift < 64 && pos < end; shift += 7) {
+      byte b = data[pos++];
+      result |= (long) (b & 0x7f) << shift;
+      if (b >= 0) {
+        return result;
+      }
+    }
+    throw new IllegalArgumentException(MALFORMED);
+  }
+
+  private int skipVarint(int pos) {
+    int limit = Math.min(end, pos + 10);
+    while (pos < limit) {
+      if (data[pos++] >= 0) {
+        return pos;
+      }
+    }
+    throw new IllegalArgumentException(MALFORMED);
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Creates the adapters of a set of message types and of the types they reference. See
+ * {@link Wire#prewarm}.
+ */
+final class Prewarmer {
+  private final Wire wire;
+  private final Map<Class<?>, Long> timings = new ConcurrentHashMap<Class<?>, Long>();
+
+  /** Types that have been reached, so that each is prepared once. */
+  private final Map<Class<?>, Boolean> reached = new ConcurrentHashMap<Class<?>, Boolean>();
+
+  Prewarmer(Wire wire) {
+    this.wire = wire;
+  }
+
+  /** Prepares the types reachable from {@code roots} on the calling thread. */
+  Map<Class<?>, Long> run(List<Class<? extends Message>> roots) {
+    Map<Class<?>, Long> ordered = new LinkedHashMap<Class<?>, Long>();
+    Deque<Class<?>> queue = new ArrayDeque<Class<?>>();
+    enqueue(roots, queue);
+    while (!queue.isEmpty()) {
+      Class<?> type = queue.removeFirst();
+      List<Class<?>> referenced = new ArrayList<Class<?>>();
+      ordered.put(type, prepare(type, referenced));
+      enqueue(referenced, queue);
+    }
+    return Collections.unmodifiableMap(ordered);
+  }
+
+  /** Prepares the types reachable from {@code roots} on {@code executor}. */
+  Map<Class<?>, Long> run(Executor executor, List<Class<? extends Message>> roots)
+      throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(1);
+    final AtomicInteger pending = new AtomicInteger(1);
+    final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+    List<Class<?>> first = new ArrayList<Class<?>>();
+    enqueue(roots, first);
+    submitAll(executor, first, pending, done, failure);
+    // Balances the initial count, which kept the latch closed while the roots were submitted.
+    if (pending.decrementAndGet() == 0) {
+      done.countDown();
+    }
+    done.await();
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    return Collections.unmodifiableMap(new LinkedHashMap<Class<?>, Long>(timings));
+  }
+
+  private void submitAll(final Executor executor, List<Class<?>> types,
+      final AtomicInteger pending, final CountDownLatch done,
+      final AtomicReference<RuntimeException> failure) {
+    for (final Class<?> type : types) {
+      pending.incrementAndGet();
+      Runnable task = new Runnable() {
+        @Override public void run() {
+          try {
+            if (failure.get() == null) {
+              List<Class<?>> referenced = new ArrayList<Class<?>>();
+              timings.put(type, prepare(type, referenced));
+              List<Class<?>> unreached = new ArrayList<Class<?>>();
+              enqueue(referenced, unreached);
+              submitAll(executor, unreached, pending, done, failure);
+            }
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            if (pending.decrementAndGet() == 0) {
+              done.countDown();
+            }
+          }
+        }
+      };
+      try {
+        executor.execute(task);
+      } catch (RuntimeException e) {
+        pending.decrementAndGet();
+        throw e;
+      }
+    }
+  }
+
+  /** Adds each type in {@code types} that has not been reached yet to {@code queue}. */
+  private void enqueue(List<? extends Class<?>> types, Collection<Class<?>> queue) {
+    for (Class<?> type : types) {
+      if (reached.put(type, Boolean.TRUE) == null) {
+        queue.add(type);
+      }
+    }
+  }
+
+  /**
+   * Creates the adapters for {@code type} and adds the types it references to
+   * {@code referenced}. Returns the nanoseconds spent.
+   */
+  @SuppressWarnings("unchecked")
+  private long prepare(Class<?> type, List<Class<?>> referenced) {
+    long start = System.nanoTime();
+    if (Enum.class.isAssignableFrom(type)) {
+      Class<Enum> enumType = (Class<Enum>) type;
+      wire.enumAdapter(enumType);
+      // Messages convert enums to and from integers with the hidden Wire.
+      Message.WIRE.enumAdapter(enumType);
+      return System.nanoTime() - start;
+    }
+
+    Class<Message> messageType = (Class<Message>) type;
+    MessageAdapter<Message> adapter = wire.messageAdapter(messageType);
+    // Messages encode themselves and check their builders with the hidden Wire.
+    Message.WIRE.messageAdapter(messageType);
+    Message.WIRE.builderAdapter(adapter.getBuilderType());
+    long elapsed = System.nanoTime() - start;
+
+    for (MessageAdapter.FieldInfo fieldInfo : adapter.getFields()) {
+      addReferenced(fieldInfo.messageType, fieldInfo.enumType, referenced);
+    }
+    for (Extension<?, ?> extension : wire.registry.getExtensions(messageType)) {
+      addReferenced(extension.getMessageType(), extension.getEnumType(), referenced);
+    }
+    return elapsed;
+  }
+
+  private static void addReferenced(Class<? extends Message> messageType,
+      Class<? extends Enum> enumType, List<Class<?>> referenced) {
+    if (messageType != null) {
+      referenced.add(messageType);
+    } else if (enumType != null) {
+      referenced.add(enumType);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builders of nested messages and lists of repeated values that are reused across parses into
+ * the same caller-owned builder. Like that builder, this is confined to one thread at a time.
+ */
+final class ReusableBuilders {
+  /** Idle builders by message type. A builder is removed while a message is read into it. */
+  private final Map<Class<?>, Message.Builder<?>> builders =
+      new HashMap<Class<?>, Message.Builder<?>>();
+  private final Map<Message.Builder<?>, MessageAdapter.Storage> storages =
+      new HashMap<Message.Builder<?>, MessageAdapter.Storage>();
+
+  /** Removes and returns the idle builder for {@code messageType}, or null if there is none. */
+  @SuppressWarnings("unchecked")
+  <M extends Message> Message.Builder<M> take(Class<M> messageType) {
+    return (Message.Builder<M>) builders.remove(messageType);
+  }
+
+  /** Makes {@code builder} available again for messages of {@code messageType}. */
+  void release(Class<?> messageType, Message.Builder<?> builder) {
+    builders.put(messageType, builder);
+  }
+
+  /** Returns the cleared storage for repeated values read into {@code builder}. */
+  MessageAdapter.Storage storage(Message.Builder<?> builder) {
+    MessageAdapter.Storage storage = storages.get(builder);
+    if (storage == null) {
+      storage = new MessageAdapter.Storage();
+      storages.put(builder, storage);
+    } else {
+      storage.clear();
+    }
+    return storage;
+  }
+}
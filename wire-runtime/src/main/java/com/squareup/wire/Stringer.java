@@ -15,6 +15,7 @@
  */
 package com.squareup.wire;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 
 /**
@@ -54,6 +55,34 @@ final class Stringer {
     return new String(encoder.output, UTF_8);
   }
 
+  /**
+   * Appends the Base64 encoding of the first {@code count} bytes of {@code input} to
+   * {@code out}, without allocating.
+   */
+  static void encode(byte[] input, int count, Appendable out) throws IOException {
+    final byte[] alphabet = Encoder.ENCODE;
+    int p = 0;
+    for (; p + 3 <= count; p += 3) {
+      int v = ((input[p] & 0xff) << 16) | ((input[p + 1] & 0xff) << 8) | (input[p + 2] & 0xff);
+      out.append((char) alphabet[(v >> 18) & 0x3f]);
+      out.append((char) alphabet[(v >> 12) & 0x3f]);
+      out.append((char) alphabet[(v >> 6) & 0x3f]);
+      out.append((char) alphabet[v & 0x3f]);
+    }
+    if (count - p == 1) {
+      int v = (input[p] & 0xff) << 16;
+      out.append((char) alphabet[(v >> 18) & 0x3f]);
+      out.append((char) alphabet[(v >> 12) & 0x3f]);
+      out.append("==");
+    } else if (count - p == 2) {
+      int v = ((input[p] & 0xff) << 16) | ((input[p + 1] & 0xff) << 8);
+      out.append((char) alphabet[(v >> 18) & 0x3f]);
+      out.append((char) alphabet[(v >> 12) & 0x3f]);
+      out.append((char) alphabet[(v >> 6) & 0x3f]);
+      out.append('=');
+    }
+  }
+
   private static class Decoder {
     private static final int[] DECODE = {
         -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static com.squareup.wire.Message.Datatype;
+import static com.squareup.wire.Message.Label;
+
+/**
+ * A description of generated message and enum types, emitted by the compiler's
+ * {@code --index_class} flag. It lists each message's builder and fields and each enum's values
+ * as constants. Once an index is registered with {@link Wire#registerTypeIndex}, adapters for
+ * its types are built from it. Wire then does not need to look up builder classes by name, read
+ * annotations or resolve generic element types.
+ */
+public final class TypeIndex {
+
+  /**
+   * The registered index for each of the message, builder and enum types it describes. Both the
+   * types and the indexes are held weakly, as an index references its types: neither is retained
+   * once the class loader of the generated code is unreachable.
+   */
+  private static final Map<Class<?>, WeakReference<TypeIndex>> REGISTERED =
+      new WeakHashMap<Class<?>, WeakReference<TypeIndex>>();
+
+  static final class MessageEntry {
+    final Class<? extends Message> messageType;
+    final Class<? extends Message.Builder> builderType;
+    final List<FieldEntry> fields = new ArrayList<FieldEntry>();
+
+    MessageEntry(Class<? extends Message> messageType,
+        Class<? extends Message.Builder> builderType) {
+      this.messageType = messageType;
+      this.builderType = builderType;
+    }
+  }
+
+  static final class FieldEntry {
+    final int tag;
+    final String name;
+    final Datatype datatype;
+    final Label label;
+    /** The enum or message type of an enum or message field; null otherwise. */
+    final Class<?> elementType;
+
+    FieldEntry(int tag, String name, Datatype datatype, Label label, Class<?> elementType) {
+      this.tag = tag;
+      this.name = name;
+      this.datatype = datatype;
+      this.label = label;
+      this.elementType = elementType;
+    }
+  }
+
+  private final Map<Class<?>, MessageEntry> messages;
+  private final Map<Class<?>, MessageEntry> builders;
+  private final Map<Class<?>, int[]> enums;
+
+  private TypeIndex(Builder builder) {
+    this.messages = Collections.unmodifiableMap(
+        new LinkedHashMap<Class<?>, MessageEntry>(builder.messages));
+    Map<Class<?>, MessageEntry> builders = new LinkedHashMap<Class<?>, MessageEntry>();
+    for (MessageEntry entry : builder.messages.values()) {
+      builders.put(entry.builderType, entry);
+    }
+    this.builders = Collections.unmodifiableMap(builders);
+    this.enums = Collections.unmodifiableMap(new LinkedHashMap<Class<?>, int[]>(builder.enums));
+  }
+
+  /**
+   * Makes the entries of this index available to all {@link Wire} instances for as long as this
+   * index is reachable.
+   */
+  void register() {
+    WeakReference<TypeIndex> reference = new WeakReference<TypeIndex>(this);
+    synchronized (REGISTERED) {
+      for (MessageEntry entry : messages.values()) {
+        REGISTERED.put(entry.messageType, reference);
+        REGISTERED.put(entry.builderType, reference);
+      }
+      for (Class<?> enumType : enums.keySet()) {
+        REGISTERED.put(enumType, reference);
+      }
+    }
+  }
+
+  /** Returns the entry of this index for {@code messageType}, or null. */
+  MessageEntry getMessage(Class<?> messageType) {
+    return messages.get(messageType);
+  }
+
+  /** Returns the values of {@code enumType} in this index by ordinal, or null. */
+  int[] getEnum(Class<?> enumType) {
+    return enums.get(enumType);
+  }
+
+  /** Returns the registered index that describes {@code type}, or null. */
+  private static TypeIndex registered(Class<?> type) {
+    WeakReference<TypeIndex> reference;
+    synchronized (REGISTERED) {
+      reference = REGISTERED.get(type);
+    }
+    return reference == null ? null : reference.get();
+  }
+
+  /** Returns the registered entry for {@code messageType}, or null. */
+  static MessageEntry registeredMessage(Class<?> messageType) {
+    TypeIndex index = registered(messageType);
+    return index == null ? null : index.messages.get(messageType);
+  }
+
+  /** Returns the registered entry for the message built by {@code builderType}, or null. */
+  static MessageEntry registeredBuilder(Class<?> builderType) {
+    TypeIndex index = registered(builderType);
+    return index == null ? null : index.builders.get(builderType);
+  }
+
+  /** Returns the registered values of {@code enumType} by ordinal, or null. */
+  static int[] registeredEnum(Class<?> enumType) {
+    TypeIndex index = registered(enumType);
+    return index == null ? null : index.enums.get(enumType);
+  }
+
+  /**
+   * Builds a {@link TypeIndex}. Each call to {@link #field} adds a field to the message of the
+   * preceding call to {@link #message}.
+   */
+  public static final class Builder {
+    private final Map<Class<?>, MessageEntry> messages =
+        new LinkedHashMap<Class<?>, MessageEntry>();
+    private final Map<Class<?>, int[]> enums = new LinkedHashMap<Class<?>, int[]>();
+    private MessageEntry current;
+
+    /** Adds a message type, whose fields follow. */
+    public Builder message(Class<? extends Message> messageType,
+        Class<? extends Message.Builder> builderType) {
+      current = new MessageEntry(messageType, builderType);
+      messages.put(messageType, current);
+      return this;
+    }
+
+    /** Adds a scalar field to the current message. */
+    public Builder field(int tag, String name, Datatype datatype, Label label) {
+      return field(tag, name, datatype, label, null);
+    }
+
+    /** Adds an enum or message field, with its enum or message type, to the current message. */
+    public Builder field(int tag, String name, Datatype datatype, Label label,
+        Class<?> elementType) {
+      if (current == null) {
+        throw new IllegalStateException("No message for field " + name);
+      }
+      current.fields.add(new FieldEntry(tag, name, datatype, label, elementType));
+      return this;
+    }
+
+    /** Adds an enum type, with the value of each of its constants in declaration order. */
+    public Builder enumType(Class<? extends Enum> enumType, int... values) {
+      enums.put(enumType, values.clone());
+      return this;
+    }
+
+    public TypeIndex build() {
+      return new TypeIndex(this);
+    }
+  }
+}
@@ -17,10 +17,20 @@ package com.squareup.wire;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+/**
+ * Unknown fields, stored in their encoded form in a single array. Each field is a tag followed
+ * by its value. A small index records where each field starts, so that the fields can be
+ * written in tag order without being decoded. They are decoded into {@link FieldValue}s only
+ * when they are inspected.
+ *
+ * <p>Copies share the array. Only the map that created the array appends to it, and a copy only
+ * reads the prefix that existed when it was made. A copy reallocates before its first append.
+ */
 final class UnknownFieldMap {
 
   enum UnknownFieldType {
@@ -60,10 +70,6 @@ final class UnknownFieldMap {
       return new LengthDelimitedFieldValue(tag, value);
     }
 
-    public abstract int getSerializedSize();
-
-    public abstract void write(int tag, WireOutput output) throws IOException;
-
     public int getTag() {
       return tag;
     }
@@ -93,15 +99,6 @@ final class UnknownFieldMap {
       this.value = value;
     }
 
-    @Override public int getSerializedSize() {
-      return WireOutput.varint64Size(value);
-    }
-
-    @Override public void write(int tag, WireOutput output) throws IOException {
-      output.writeTag(tag, WireType.VARINT);
-      output.writeVarint64(value);
-    }
-
     @Override public Long getAsLong() {
       return value;
     }
@@ -115,15 +112,6 @@ final class UnknownFieldMap {
       this.value = value;
     }
 
-    @Override public int getSerializedSize() {
-      return WireType.FIXED_32_SIZE;
-    }
-
-    @Override public void write(int tag, WireOutput output) throws IOException {
-      output.writeTag(tag, WireType.FIXED32);
-      output.writeFixed32(value);
-    }
-
     @Override public Integer getAsInteger() {
       return value;
     }
@@ -137,15 +125,6 @@ final class UnknownFieldMap {
       this.value = value;
     }
 
-    @Override public int getSerializedSize() {
-      return WireType.FIXED_64_SIZE;
-    }
-
-    @Override public void write(int tag, WireOutput output) throws IOException {
-      output.writeTag(tag, WireType.FIXED64);
-      output.writeFixed64(value);
-    }
-
     @Override public Long getAsLong() {
       return value;
     }
@@ -159,100 +138,223 @@ final class UnknownFieldMap {
       this.value = value;
     }
 
-    @Override public int getSerializedSize() {
-      return WireOutput.varint32Size(value.size()) + value.size();
-    }
-
-    @Override public void write(int tag, WireOutput output) throws IOException {
-      output.writeTag(tag, WireType.LENGTH_DELIMITED);
-      output.writeVarint32(value.size());
-      output.writeRawBytes(value.toByteArray());
-    }
-
     @Override public ByteString getAsBytes() {
       return value;
     }
   }
 
-  Map<Integer, List<FieldValue>> fieldMap;
+  private static final int MAX_VARINT_SIZE = 10;
+
+  /** The encoded fields, in the order they were added. */
+  private byte[] data;
+  private int size;
+
+  /** Pairs of (tag and wire type, offset in {@code data}), one for each field. */
+  private int[] index;
+  private int count;
+
+  /** True if fields were added in tag order, so {@code data} can be written as is. */
+  private boolean sorted = true;
+
+  /** True if {@code data} and {@code index} belong to another map. */
+  private boolean shared;
+
+  /** True if all values for a tag must have the same wire type. */
+  private boolean checkWireTypes = true;
 
   UnknownFieldMap() {
   }
 
+  /**
+   * Returns an empty map that accepts values of different wire types for the same tag, as
+   * repeated fields may be sent both packed and unpacked.
+   */
+  static UnknownFieldMap withMixedWireTypes() {
+    UnknownFieldMap result = new UnknownFieldMap();
+    result.checkWireTypes = false;
+    return result;
+  }
+
   UnknownFieldMap(UnknownFieldMap other) {
-    if (other.fieldMap != null) {
-      ensureFieldMap().putAll(other.fieldMap);
-    }
+    this.data = other.data;
+    this.size = other.size;
+    this.index = other.index;
+    this.count = other.count;
+    this.sorted = other.sorted;
+    this.shared = true;
+    this.checkWireTypes = other.checkWireTypes;
   }
 
-  void addVarint(int tag, Long value) {
-    addElement(ensureFieldMap(), tag, value, WireType.VARINT);
+  void addVarint(int tag, long value) {
+    int offset = begin(tag, WireType.VARINT, MAX_VARINT_SIZE);
+    size = offset + WireOutput.writeVarint(value, data, offset);
   }
 
-  void addFixed32(int tag, Integer value) {
-    addElement(ensureFieldMap(), tag, value, WireType.FIXED32);
+  void addFixed32(int tag, int value) {
+    int offset = begin(tag, WireType.FIXED32, WireType.FIXED_32_SIZE);
+    writeLittleEndian(value, WireType.FIXED_32_SIZE, offset);
   }
 
-  void addFixed64(int tag, Long value) {
-    addElement(ensureFieldMap(), tag, value, WireType.FIXED64);
+  void addFixed64(int tag, long value) {
+    int offset = begin(tag, WireType.FIXED64, WireType.FIXED_64_SIZE);
+    writeLittleEndian(value, WireType.FIXED_64_SIZE, offset);
   }
 
   void addLengthDelimited(int tag, ByteString value) {
-    addElement(ensureFieldMap(), tag, value, WireType.LENGTH_DELIMITED);
+    int length = value.size();
+    int offset = beginLengthDelimited(tag, length, length);
+    System.arraycopy(value.data, 0, data, offset, length);
+    size = offset + length;
   }
 
-  private Map<Integer, List<FieldValue>> ensureFieldMap() {
-    if (fieldMap == null) {
-      fieldMap = new TreeMap<Integer, List<FieldValue>>();
+  /**
+   * Adds a length delimited value of {@code length} bytes, read directly from {@code input}. Room
+   * is made as the bytes are read, so that a corrupt length cannot exhaust memory.
+   */
+  void addLengthDelimited(int tag, WireInput input, int length) throws IOException {
+    int offset = beginLengthDelimited(tag, length, input.rawBytesToReserve(length));
+    size = offset;
+    int remaining = length;
+    while (remaining > 0) {
+      ensureCapacity(1);
+      int count = Math.min(remaining, data.length - size);
+      input.readRawBytes(data, size, count);
+      size += count;
+      remaining -= count;
     }
-    return fieldMap;
   }
 
-  private <T> void addElement(Map<Integer, List<FieldValue>> map, int tag, T value,
-      WireType wireType) {
-    List<FieldValue> values = map.get(tag);
-    if (values == null) {
-      values = new ArrayList<FieldValue>();
-      map.put(tag, values);
-    }
-    FieldValue fieldValue;
-    switch (wireType) {
-      case VARINT: fieldValue = FieldValue.varint(tag, (Long) value); break;
-      case FIXED32: fieldValue = FieldValue.fixed32(tag, (Integer) value); break;
-      case FIXED64: fieldValue = FieldValue.fixed64(tag, (Long) value); break;
-      case LENGTH_DELIMITED:
-        fieldValue = FieldValue.lengthDelimited(tag, (ByteString) value);
-        break;
-      default:
-        throw new IllegalArgumentException("Unsupported wireType = " + wireType);
-    }
-    if (values.size() > 0 && values.get(0).getWireType() != fieldValue.getWireType()) {
-      throw new IllegalStateException("Wire type differs from previous type for tag");
-    }
-    values.add(fieldValue);
+  /**
+   * Begins a length delimited field of {@code length} bytes, making room for {@code reserved} of
+   * them. Returns the offset at which to write the value.
+   */
+  private int beginLengthDelimited(int tag, int length, int reserved) {
+    int offset = begin(tag, WireType.LENGTH_DELIMITED, MAX_VARINT_SIZE + reserved);
+    return offset + WireOutput.writeVarint(length, data, offset);
   }
 
-  int getSerializedSize() {
-    int size = 0;
-    if (fieldMap != null) {
-      for (Map.Entry<Integer, List<FieldValue>> entry : fieldMap.entrySet()) {
-        size += WireOutput.varintTagSize(entry.getKey());
-        for (FieldValue value : entry.getValue()) {
-          size += value.getSerializedSize();
+  /**
+   * Records a field with {@code tag} and writes its tag, making room for up to
+   * {@code maxValueSize} bytes of value. Returns the offset at which to write the value.
+   */
+  private int begin(int tag, WireType wireType, int maxValueSize) {
+    if (checkWireTypes) {
+      checkWireType(tag, wireType);
+    }
+    ensureCapacity(MAX_VARINT_SIZE + maxValueSize);
+    int tagAndType = WireOutput.makeTag(tag, wireType);
+    if (count > 0 && tag < (index[2 * (count - 1)] >>> WireType.TAG_TYPE_BITS)) {
+      sorted = false;
+    }
+    index[2 * count] = tagAndType;
+    index[2 * count + 1] = size;
+    count++;
+    return size + WireOutput.writeVarint(tagAndType, data, size);
+  }
+
+  private void checkWireType(int tag, WireType wireType) {
+    for (int i = count - 1; i >= 0; i--) {
+      int tagAndType = index[2 * i];
+      if ((tagAndType >>> WireType.TAG_TYPE_BITS) == tag) {
+        if (WireType.valueOf(tagAndType) != wireType) {
+          throw new IllegalStateException("Wire type differs from previous type for tag");
         }
+        return;
+      }
+      // Fields added in tag order cannot have an earlier field with this tag.
+      if (sorted && (tagAndType >>> WireType.TAG_TYPE_BITS) < tag) {
+        return;
       }
     }
+  }
+
+  private void ensureCapacity(int bytesNeeded) {
+    if (shared) {
+      data = data == null ? null : Arrays.copyOf(data, Math.max(size + bytesNeeded, size * 2));
+      index = index == null ? null : Arrays.copyOf(index, Math.max(2 * count + 2, count * 4));
+      shared = false;
+    }
+    if (data == null) {
+      data = new byte[Math.max(64, bytesNeeded)];
+      index = new int[16];
+    }
+    if (data.length - size < bytesNeeded) {
+      data = Arrays.copyOf(data, Math.max(size + bytesNeeded, data.length * 2));
+    }
+    if (index.length < 2 * count + 2) {
+      index = Arrays.copyOf(index, index.length * 2);
+    }
+  }
+
+  private void writeLittleEndian(long value, int byteCount, int offset) {
+    for (int i = 0; i < byteCount; i++) {
+      data[offset + i] = (byte) (value >>> (8 * i));
+    }
+    size = offset + byteCount;
+  }
+
+  int getSerializedSize() {
     return size;
   }
 
   void write(WireOutput output) throws IOException {
-    if (fieldMap != null) {
-      for (Map.Entry<Integer, List<FieldValue>> entry : fieldMap.entrySet()) {
-        int tag = entry.getKey();
-        for (FieldValue value : entry.getValue()) {
-          value.write(tag, output);
+    if (sorted) {
+      output.writeRawBytes(data, 0, size);
+      return;
+    }
+    // Write fields ordered by tag, keeping fields with the same tag in the order they were added.
+    long[] order = new long[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = ((long) (index[2 * i] >>> WireType.TAG_TYPE_BITS) << 32) | i;
+    }
+    Arrays.sort(order);
+    for (long entry : order) {
+      int i = (int) entry;
+      int start = index[2 * i + 1];
+      int end = i + 1 < count ? index[2 * i + 3] : size;
+      output.writeRawBytes(data, start, end - start);
+    }
+  }
+
+  /** Returns the fields encoded as they would be written. */
+  byte[] toByteArray() {
+    byte[] result = new byte[size];
+    try {
+      write(WireOutput.newPresizedInstance(result));
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return result;
+  }
+
+  /** Decodes the fields into lists of values, keyed by tag in ascending order. */
+  Map<Integer, List<FieldValue>> toFieldMap() {
+    Map<Integer, List<FieldValue>> fieldMap = new TreeMap<Integer, List<FieldValue>>();
+    WireInput input = WireInput.newInstance(data == null ? new byte[0] : data, 0, size);
+    try {
+      for (int i = 0; i < count; i++) {
+        int tag = input.readTag() >>> WireType.TAG_TYPE_BITS;
+        FieldValue value;
+        switch (WireType.valueOf(index[2 * i])) {
+          case VARINT: value = FieldValue.varint(tag, input.readVarint64()); break;
+          case FIXED32: value = FieldValue.fixed32(tag, input.readFixed32()); break;
+          case FIXED64: value = FieldValue.fixed64(tag, input.readFixed64()); break;
+          case LENGTH_DELIMITED:
+            value = FieldValue.lengthDelimited(tag, input.readBytes(input.readVarint32()));
+            break;
+          default:
+            throw new AssertionError();
+        }
+        List<FieldValue> values = fieldMap.get(tag);
+        if (values == null) {
+          values = new ArrayList<FieldValue>();
+          fieldMap.put(tag, values);
         }
+        values.add(value);
       }
+    } catch (IOException e) {
+      throw new AssertionError(e);
     }
+    return fieldMap;
   }
 }
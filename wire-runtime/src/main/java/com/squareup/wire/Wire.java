@@ -18,10 +18,14 @@ package com.squareup.wire;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Encode and decode Wire protocol buffers.
@@ -37,6 +41,26 @@ public final class Wire {
   private final Map<Class<? extends Enum>, EnumAdapter<? extends Enum>> enumAdapters =
       new LinkedHashMap<Class<? extends Enum>, EnumAdapter<? extends Enum>>();
 
+  /** The message type built by each builder type. */
+  private static final ClassCache<Class<?>> MESSAGE_TYPES = new ClassCache<Class<?>>() {
+    @Override Class<?> create(Class<?> builderType) {
+      TypeIndex.MessageEntry entry = TypeIndex.registeredBuilder(builderType);
+      if (entry != null) {
+        return entry.messageType;
+      }
+      // Generated builders extend Message.Builder<M> or ExtendableBuilder<M>.
+      Type superclass = builderType.getGenericSuperclass();
+      if (superclass instanceof ParameterizedType) {
+        Type messageType = ((ParameterizedType) superclass).getActualTypeArguments()[0];
+        if (messageType instanceof Class<?>) {
+          return (Class<?>) messageType;
+        }
+      }
+      throw new IllegalArgumentException("No message type found for builder type "
+          + builderType.getName());
+    }
+  };
+
   // Visible to MessageAdapter
   final ExtensionRegistry registry;
 
@@ -56,58 +80,144 @@ public final class Wire {
    */
   public Wire(List<Class<?>> extensionClasses) {
     this.registry = new ExtensionRegistry();
+    registry.addAll(extensionsOf(extensionClasses));
+  }
+
+  /**
+   * Registers the extensions specified in {@code extensionClasses}, in addition to those this
+   * Wire was created with. This is safe to call while other threads are encoding and decoding
+   * messages. Messages already being decoded may not see the new extensions. Only the adapters
+   * of the extended message types are updated; other cached adapters are kept.
+   */
+  public void registerExtensions(Class<?>... extensionClasses) {
+    List<Extension<?, ?>> extensions = extensionsOf(Arrays.asList(extensionClasses));
+    registry.addAll(extensions);
+    synchronized (this) {
+      for (Extension<?, ?> extension : extensions) {
+        MessageAdapter<?> adapter = messageAdapters.get(extension.getExtendedType());
+        if (adapter != null) {
+          adapter.refreshExtensions();
+        }
+      }
+    }
+  }
+
+  /**
+   * Registers {@code index}, generated by the compiler's {@code --index_class} flag, with all
+   * Wire instances. Adapters for the types it describes are then built from its constants rather
+   * than by reflection. Call this at startup, before encoding or decoding messages of those types;
+   * adapters that already exist are not rebuilt.
+   *
+   * <p>The index is held weakly, so that registering it does not keep the generated classes or
+   * their class loader alive. The generated {@code TYPES} constant keeps it reachable for as long
+   * as its class is loaded.
+   */
+  public static void registerTypeIndex(TypeIndex index) {
+    index.register();
+  }
+
+  private static List<Extension<?, ?>> extensionsOf(List<Class<?>> extensionClasses) {
+    List<Extension<?, ?>> extensions = new ArrayList<Extension<?, ?>>();
     for (Class<?> extensionClass : extensionClasses) {
       for (Field field : extensionClass.getDeclaredFields()) {
         if (field.getType().equals(Extension.class)) {
           try {
-            Extension extension = (Extension) field.get(null);
-            registry.add(extension);
+            extensions.add((Extension<?, ?>) field.get(null));
           } catch (IllegalAccessException e) {
             throw new AssertionError(e);
           }
         }
       }
     }
+    return extensions;
   }
 
   /**
-   * Returns a message adapter for {@code messageType}.
+   * Returns a message adapter for {@code messageType}. Adapters are created outside of the lock,
+   * so that threads using different types do not wait for each other's reflection.
    */
   @SuppressWarnings("unchecked")
-  synchronized <M extends Message> MessageAdapter<M> messageAdapter(Class<M> messageType) {
-    MessageAdapter<M> adapter = (MessageAdapter<M>) messageAdapters.get(messageType);
-    if (adapter == null) {
-      adapter = new MessageAdapter<M>(this, messageType);
-      messageAdapters.put(messageType, adapter);
+  <M extends Message> MessageAdapter<M> messageAdapter(Class<M> messageType) {
+    MessageAdapter<M> adapter;
+    synchronized (this) {
+      adapter = (MessageAdapter<M>) messageAdapters.get(messageType);
+    }
+    if (adapter != null) {
+      return adapter;
+    }
+    MessageAdapter<M> created = new MessageAdapter<M>(this, messageType);
+    synchronized (this) {
+      adapter = (MessageAdapter<M>) messageAdapters.get(messageType);
+      if (adapter == null) {
+        adapter = created;
+        // Extensions may have been registered since the adapter was created.
+        adapter.refreshExtensions();
+        messageAdapters.put(messageType, adapter);
+      }
+      return adapter;
     }
-    return adapter;
   }
 
   /**
    * Returns a builder adapter for {@code builderType}.
    */
   @SuppressWarnings("unchecked")
-  synchronized <B extends Message.Builder> BuilderAdapter<B>
-      builderAdapter(Class<B> builderType) {
-    BuilderAdapter<B> adapter = (BuilderAdapter<B>) builderAdapters.get(builderType);
-    if (adapter == null) {
-      adapter = new BuilderAdapter<B>(builderType);
-      builderAdapters.put(builderType, adapter);
+  <B extends Message.Builder> BuilderAdapter<B> builderAdapter(Class<B> builderType) {
+    BuilderAdapter<B> adapter;
+    synchronized (this) {
+      adapter = (BuilderAdapter<B>) builderAdapters.get(builderType);
+    }
+    if (adapter != null) {
+      return adapter;
     }
-    return adapter;
+    BuilderAdapter<B> created = BuilderAdapter.of(builderType);
+    synchronized (this) {
+      builderAdapters.put(builderType, created);
+    }
+    return created;
   }
 
   /**
    * Returns an enum adapter for {@code enumClass}.
    */
   @SuppressWarnings("unchecked")
-  synchronized <E extends Enum> EnumAdapter<E> enumAdapter(Class<E> enumClass) {
-    EnumAdapter<E> adapter = (EnumAdapter<E>) enumAdapters.get(enumClass);
-    if (adapter == null) {
-      adapter = new EnumAdapter<E>(enumClass);
-      enumAdapters.put(enumClass, adapter);
+  <E extends Enum> EnumAdapter<E> enumAdapter(Class<E> enumClass) {
+    EnumAdapter<E> adapter;
+    synchronized (this) {
+      adapter = (EnumAdapter<E>) enumAdapters.get(enumClass);
+    }
+    if (adapter != null) {
+      return adapter;
     }
-    return adapter;
+    EnumAdapter<E> created = EnumAdapter.of(enumClass);
+    synchronized (this) {
+      enumAdapters.put(enumClass, created);
+    }
+    return created;
+  }
+
+  /**
+   * Creates the adapters for {@code messageTypes} and for all the message and enum types they
+   * reference, including through the extensions registered with this Wire. Without this, the
+   * reflection for each type is done the first time a message of that type is encoded or
+   * decoded. Call this at startup to move that cost off the first requests.
+   *
+   * @return the nanoseconds spent preparing each type, in the order the types were reached.
+   */
+  public Map<Class<?>, Long> prewarm(Class<? extends Message>... messageTypes) {
+    return new Prewarmer(this).run(Arrays.asList(messageTypes));
+  }
+
+  /**
+   * Like {@link #prewarm(Class[])}, but prepares types concurrently on {@code executor}. This
+   * blocks until every type is prepared.
+   *
+   * @return the nanoseconds spent preparing each type.
+   * @throws RuntimeException the first exception thrown while preparing a type.
+   */
+  public Map<Class<?>, Long> prewarm(Executor executor, Class<? extends Message>... messageTypes)
+      throws InterruptedException {
+    return new Prewarmer(this).run(executor, Arrays.asList(messageTypes));
   }
 
   /**
@@ -135,6 +245,78 @@ public final class Wire {
     return parseFrom(WireInput.newInstance(input), messageClass);
   }
 
+  /**
+   * Reads a message of type {@code messageClass} from {@code bytes} and returns it. The message
+   * and its nested messages retain the range of {@code bytes} they were read from; serializing
+   * them copies those bytes rather than encoding them again. Messages created with a builder,
+   * including from a retained message, do not retain bytes.
+   *
+   * <p>{@code bytes} is referenced, not copied, and must not be modified afterwards. It is kept
+   * reachable for as long as any retaining message is.
+   */
+  public <M extends Message> M parseFromRetainingBytes(byte[] bytes, Class<M> messageClass)
+      throws IOException {
+    return parseFromRetainingBytes(bytes, 0, bytes.length, messageClass);
+  }
+
+  /**
+   * Reads a message of type {@code messageClass} from the given range of {@code bytes} and
+   * returns it, retaining that range. See {@link #parseFromRetainingBytes(byte[], Class)}.
+   */
+  public <M extends Message> M parseFromRetainingBytes(byte[] bytes, int offset, int count,
+      Class<M> messageClass) throws IOException {
+    WireInput input = WireInput.newInstance(bytes, offset, count);
+    input.retainBytes = true;
+    M message = parseFrom(input, messageClass);
+    message.retainEncoded(bytes, offset, count);
+    return message;
+  }
+
+  /**
+   * Clears {@code builder}, reads a message from {@code bytes} into it and returns the built
+   * message. Parsing repeatedly into the same builder reuses the builders of nested messages and
+   * the lists that hold repeated values, rather than allocating them for every message.
+   *
+   * <p>The builder must not be used by other threads meanwhile. Lists that parsing sets on the
+   * builder are cleared by the next call; messages built from them are not affected.
+   */
+  public <M extends Message> M parseFrom(byte[] bytes, Message.Builder<M> builder)
+      throws IOException {
+    return parseFrom(bytes, 0, bytes.length, builder);
+  }
+
+  /**
+   * Clears {@code builder}, reads a message from the given range of {@code bytes} into it and
+   * returns the built message. See {@link #parseFrom(byte[], Message.Builder)}.
+   */
+  public <M extends Message> M parseFrom(byte[] bytes, int offset, int count,
+      Message.Builder<M> builder) throws IOException {
+    return messageAdapter(builder).readInto(WireInput.newInstance(bytes, offset, count), builder);
+  }
+
+  /**
+   * Reads the fields of a message from {@code bytes} into {@code builder}. Repeated values are
+   * appended to those already set; other values replace them.
+   */
+  public <M extends Message> void mergeFrom(byte[] bytes, Message.Builder<M> builder)
+      throws IOException {
+    mergeFrom(WireInput.newInstance(bytes), builder);
+  }
+
+  /**
+   * Reads the fields of a message from {@code input} into {@code builder}. Repeated values are
+   * appended to those already set; other values replace them.
+   */
+  <M extends Message> void mergeFrom(WireInput input, Message.Builder<M> builder)
+      throws IOException {
+    messageAdapter(builder).mergeFrom(input, builder);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <M extends Message> MessageAdapter<M> messageAdapter(Message.Builder<M> builder) {
+    return messageAdapter((Class<M>) MESSAGE_TYPES.get(builder.getClass()));
+  }
+
   /**
    * Reads a message of type {@code messageClass} from {@code input} and returns it.
    */
@@ -36,6 +36,7 @@ package com.squareup.wire;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * Reads and decodes protocol message fields.
@@ -151,6 +152,48 @@ final class WireInput {
    * upper bits.
    */
   public int readVarint32() throws IOException {
+    if (bytesRemaining() < MAX_VARINT_SIZE) {
+      return readVarint32Slow();
+    }
+    // Fast path: the longest possible varint is buffered, so read it without refill checks.
+    byte[] buffer = this.buffer;
+    int pos = this.pos;
+    byte tmp = buffer[pos++];
+    if (tmp >= 0) {
+      this.pos = pos;
+      return tmp;
+    }
+    int result = tmp & 0x7f;
+    if ((tmp = buffer[pos++]) >= 0) {
+      result |= tmp << 7;
+    } else {
+      result |= (tmp & 0x7f) << 7;
+      if ((tmp = buffer[pos++]) >= 0) {
+        result |= tmp << 14;
+      } else {
+        result |= (tmp & 0x7f) << 14;
+        if ((tmp = buffer[pos++]) >= 0) {
+          result |= tmp << 21;
+        } else {
+          result |= (tmp & 0x7f) << 21;
+          result |= (tmp = buffer[pos++]) << 28;
+          if (tmp < 0) {
+            // Discard upper 32 bits.
+            int end = pos + 5;
+            while (buffer[pos++] < 0) {
+              if (pos == end) {
+                throw new IOException(ENCOUNTERED_A_MALFORMED_VARINT);
+              }
+            }
+          }
+        }
+      }
+    }
+    this.pos = pos;
+    return result;
+  }
+
+  private int readVarint32Slow() throws IOException {
     byte tmp = readRawByte();
     if (tmp >= 0) {
       return tmp;
@@ -186,6 +229,25 @@ final class WireInput {
 
   /** Read a raw Varint from the stream. */
   public long readVarint64() throws IOException {
+    if (bytesRemaining() < MAX_VARINT_SIZE) {
+      return readVarint64Slow();
+    }
+    // Fast path: the longest possible varint is buffered, so read it without refill checks.
+    byte[] buffer = this.buffer;
+    int pos = this.pos;
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer[pos++];
+      result |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        this.pos = pos;
+        return result;
+      }
+    }
+    throw new IOException(ENCOUNTERED_A_MALFORMED_VARINT);
+  }
+
+  private long readVarint64Slow() throws IOException {
     int shift = 0;
     long result = 0;
     while (shift < 64) {
@@ -201,6 +263,11 @@ final class WireInput {
 
   /** Read a 32-bit little-endian integer from the stream. */
   public int readFixed32() throws IOException {
+    if (bytesRemaining() >= 4) {
+      int result = getIntLittleEndian(buffer, pos);
+      pos += 4;
+      return result;
+    }
     byte b1 = readRawByte();
     byte b2 = readRawByte();
     byte b3 = readRawByte();
@@ -213,6 +280,12 @@ final class WireInput {
 
   /** Read a 64-bit little-endian integer from the stream. */
   public long readFixed64() throws IOException {
+    if (bytesRemaining() >= 8) {
+      long lo = getIntLittleEndian(buffer, pos);
+      long hi = getIntLittleEndian(buffer, pos + 4);
+      pos += 8;
+      return (lo & 0xffffffffL) | (hi << 32);
+    }
     byte b1 = readRawByte();
     byte b2 = readRawByte();
     byte b3 = readRawByte();
@@ -231,6 +304,166 @@ final class WireInput {
            | (((long) b8 & 0xff) << 56);
   }
 
+  /**
+   * Reads {@code length} bytes of packed varints, discarding the upper bits of each value as
+   * {@link #readVarint32} does.
+   */
+  public int[] readPackedVarint32(int length) throws IOException {
+    // Every varint is at least one byte long.
+    int[] values = new int[packedCapacity(length, 1)];
+    int count = 0;
+    long end = getPosition() + length;
+    if (bytesRemaining() >= length) {
+      // Fast path: the whole run is buffered. Copy eight single-byte varints at a time.
+      byte[] buffer = this.buffer;
+      int wordEnd = pos + length - 8;
+      while (pos <= wordEnd) {
+        int p = pos;
+        if ((buffer[p] | buffer[p + 1] | buffer[p + 2] | buffer[p + 3]
+            | buffer[p + 4] | buffer[p + 5] | buffer[p + 6] | buffer[p + 7]) >= 0) {
+          for (int i = 0; i < 8; i++) {
+            values[count++] = buffer[p + i];
+          }
+          pos = p + 8;
+        } else {
+          values[count++] = readVarint32();
+        }
+      }
+    }
+    while (getPosition() < end) {
+      if (count == values.length) {
+        values = Arrays.copyOf(values, grownCapacity(count, length));
+      }
+      values[count++] = readVarint32();
+    }
+    return count == values.length ? values : Arrays.copyOf(values, count);
+  }
+
+  /** Reads {@code length} bytes of packed varints. */
+  public long[] readPackedVarint64(int length) throws IOException {
+    // Every varint is at least one byte long.
+    long[] values = new long[packedCapacity(length, 1)];
+    int count = 0;
+    long end = getPosition() + length;
+    if (bytesRemaining() >= length) {
+      // Fast path: the whole run is buffered. Copy eight single-byte varints at a time.
+      byte[] buffer = this.buffer;
+      int wordEnd = pos + length - 8;
+      while (pos <= wordEnd) {
+        int p = pos;
+        if ((buffer[p] | buffer[p + 1] | buffer[p + 2] | buffer[p + 3]
+            | buffer[p + 4] | buffer[p + 5] | buffer[p + 6] | buffer[p + 7]) >= 0) {
+          for (int i = 0; i < 8; i++) {
+            values[count++] = buffer[p + i];
+          }
+          pos = p + 8;
+        } else {
+          values[count++] = readVarint64();
+        }
+      }
+    }
+    while (getPosition() < end) {
+      if (count == values.length) {
+        values = Arrays.copyOf(values, grownCapacity(count, length));
+      }
+      values[count++] = readVarint64();
+    }
+    return count == values.length ? values : Arrays.copyOf(values, count);
+  }
+
+  /** Reads {@code length} bytes of packed 32-bit little-endian integers. */
+  public int[] readPackedFixed32(int length) throws IOException {
+    int count = length / 4;
+    int[] values = new int[packedCapacity(length, 4)];
+    if (bytesRemaining() >= length) {
+      byte[] buffer = this.buffer;
+      for (int i = 0, p = pos; i < count; i++, p += 4) {
+        values[i] = getIntLittleEndian(buffer, p);
+      }
+      pos += count * 4;
+    } else {
+      for (int i = 0; i < count; i++) {
+        if (i == values.length) {
+          values = Arrays.copyOf(values, grownCapacity(i, count));
+        }
+        values[i] = readFixed32();
+      }
+    }
+    return values;
+  }
+
+  /** Reads {@code length} bytes of packed 64-bit little-endian integers. */
+  public long[] readPackedFixed64(int length) throws IOException {
+    int count = length / 8;
+    long[] values = new long[packedCapacity(length, 8)];
+    if (bytesRemaining() >= length) {
+      byte[] buffer = this.buffer;
+      for (int i = 0, p = pos; i < count; i++, p += 8) {
+        long lo = getIntLittleEndian(buffer, p);
+        long hi = getIntLittleEndian(buffer, p + 4);
+        values[i] = (lo & 0xffffffffL) | (hi << 32);
+      }
+      pos += count * 8;
+    } else {
+      for (int i = 0; i < count; i++) {
+        if (i == values.length) {
+          values = Arrays.copyOf(values, grownCapacity(i, count));
+        }
+        values[i] = readFixed64();
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Returns the initial capacity of the array for a packed run of {@code length} bytes whose
+   * values are at least {@code valueSize} bytes long. Unless the whole run is buffered, the
+   * length has not been checked against the input, so the array starts small and grows as values
+   * are read. A corrupt length then fails with an {@link EOFException} instead of exhausting
+   * memory.
+   */
+  private int packedCapacity(int length, int valueSize) throws IOException {
+    if (length < 0) {
+      throw new IOException(ENCOUNTERED_A_NEGATIVE_SIZE);
+    }
+    int maxCount = length / valueSize;
+    if (bytesRemaining() >= length) {
+      return maxCount;
+    }
+    return Math.min(maxCount, Math.max(bytesRemaining(), BUFFER_SIZE) / valueSize);
+  }
+
+  /**
+   * Returns the number of bytes to reserve up front for a run of {@code size} raw bytes. As with
+   * {@link #packedCapacity}, a length that has not been checked against the input is only
+   * trusted up to what is buffered, so a corrupt length fails with an {@link EOFException} as the
+   * bytes are read instead of exhausting memory.
+   *
+   * @throws IOException if {@code size} is negative, or exceeds the current limit or the end of
+   *     an array input.
+   */
+  int rawBytesToReserve(int size) throws IOException {
+    if (size < 0) {
+      throw new IOException(ENCOUNTERED_A_NEGATIVE_SIZE);
+    }
+    if (getPosition() + size > currentLimit || (input == null && bytesRemaining() < size)) {
+      throw new EOFException(INPUT_ENDED_UNEXPECTEDLY);
+    }
+    return Math.min(size, Math.max(bytesRemaining(), BUFFER_SIZE));
+  }
+
+  /** Returns the capacity to grow a packed array of {@code capacity} values to. */
+  private static int grownCapacity(int capacity, int maxCount) {
+    return (int) Math.min(maxCount, Math.max(16L, 2L * capacity));
+  }
+
+  private static int getIntLittleEndian(byte[] buffer, int pos) {
+    return   (buffer[pos] & 0xff)
+          | ((buffer[pos + 1] & 0xff) <<  8)
+          | ((buffer[pos + 2] & 0xff) << 16)
+          | ((buffer[pos + 3] & 0xff) << 24);
+  }
+
   /**
    * Decode a ZigZag-encoded 32-bit value.  ZigZag encodes signed integers
    * into values that can be efficiently encoded with varint.  (Otherwise,
@@ -263,6 +496,9 @@ final class WireInput {
 
   private static final int BUFFER_SIZE = 1024;
 
+  /** The maximum number of bytes in an encoded varint. */
+  private static final int MAX_VARINT_SIZE = 10;
+
   private final InputStream input;
 
   /**
@@ -301,6 +537,12 @@ final class WireInput {
   public static final int RECURSION_LIMIT = 64;
   public int recursionDepth;
 
+  /** True if parsed messages should retain the slice of the input array they were read from. */
+  boolean retainBytes;
+
+  /** Non-null if nested messages should be read into reused builders. */
+  ReusableBuilders reusableBuilders;
+
   private WireInput(InputStream input) {
     // Read the input stream as needed
     this.input = input;
@@ -412,6 +654,16 @@ final class WireInput {
     return bufferOffset + pos;
   }
 
+  /** Returns the array this input reads from, or null if it reads from a stream. */
+  byte[] array() {
+    return input == null ? buffer : null;
+  }
+
+  /** Returns the index in {@link #array} of the next byte to be read. */
+  int arrayPosition() {
+    return pos;
+  }
+
   /**
    * Read one byte from the input.
    *
@@ -436,20 +688,36 @@ final class WireInput {
     }
 
     byte[] bytes = new byte[size];
-    int offset = 0;
-    while (offset < size) {
-      refillBuffer(size - offset);
+    readRawBytes(bytes, 0, size);
+    return bytes;
+  }
+
+  /**
+   * Reads {@code size} raw bytes from the input into {@code bytes}, starting at {@code offset}.
+   *
+   * @throws IOException The end of the stream or the current limit was reached.
+   */
+  void readRawBytes(byte[] bytes, int offset, int size) throws IOException {
+    if (size < 0) {
+      throw new IOException(ENCOUNTERED_A_NEGATIVE_SIZE);
+    }
+    if (offset < 0 || offset > bytes.length - size) {
+      throw new IndexOutOfBoundsException();
+    }
+    int end = offset + size;
+    while (offset < end) {
+      refillBuffer(end - offset);
       if (bytesRemaining() == 0) {
         throw new EOFException(INPUT_ENDED_UNEXPECTEDLY);
       }
-      int count = Math.min(size - offset, bytesRemaining());
+      int count = Math.min(end - offset, bytesRemaining());
       System.arraycopy(buffer, pos, bytes, offset, count);
       pos += count;
       offset += count;
     }
-    return bytes;
   }
 
+
   public void skipGroup() throws IOException {
     while (true) {
       int tag = readTag();
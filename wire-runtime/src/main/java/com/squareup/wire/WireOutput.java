@@ -50,6 +50,9 @@ package com.squareup.wire;
 // OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Utilities for encoding and writing protocol message fields.
@@ -152,14 +155,48 @@ public final class WireOutput {
     return (fieldNumber << WireType.TAG_TYPE_BITS) | wireType.value();
   }
 
-  private final byte[] buffer;
-  private final int limit;
+  /**
+   * Byte strings at least this large are referenced rather than copied when gathering segments.
+   * Smaller values are cheaper to copy than to write as a buffer of their own.
+   */
+  static final int GATHER_THRESHOLD = 1024;
+
+  private static final int SEGMENT_SIZE = 8192;
+
+  /** The largest encoding of a 32-bit varint, in bytes. */
+  private static final int MAX_VARINT32_SIZE = 5;
+  /** The largest encoding of a 64-bit varint, in bytes. */
+  private static final int MAX_VARINT64_SIZE = 10;
+
+  private byte[] buffer;
+  private int limit;
   private int position;
 
-  private WireOutput(byte[] buffer, int offset, int length) {
+  /** Completed segments, or null if writing to a single flat array. */
+  private final List<ByteBuffer> segments;
+  /** The start of the segment currently being written to {@code buffer}. */
+  private int segmentStart;
+
+  /**
+   * True if {@code buffer} was sized by {@link MessageAdapter#getSerializedSize}, so writes
+   * skip the capacity checks. The VM's array bounds checks still apply.
+   */
+  private final boolean presized;
+
+  private WireOutput(byte[] buffer, int offset, int length, boolean presized) {
     this.buffer = buffer;
     position = offset;
     limit = offset + length;
+    segments = null;
+    this.presized = presized;
+  }
+
+  private WireOutput(int segmentSize) {
+    buffer = new byte[segmentSize];
+    position = 0;
+    limit = segmentSize;
+    segments = new ArrayList<ByteBuffer>();
+    presized = false;
   }
 
   /**
@@ -179,7 +216,62 @@ public final class WireOutput {
    * array is faster than writing to an {@code OutputStream}.
    */
   static WireOutput newInstance(byte[] flatArray, int offset, int length) {
-    return new WireOutput(flatArray, offset, length);
+    return new WireOutput(flatArray, offset, length, false);
+  }
+
+  /**
+   * Create a new {@code WireOutput} that writes to {@code exactArray}, whose length must be the
+   * serialized size computed by {@link MessageAdapter#getSerializedSize}. Since the size is known
+   * to be exact, writes are not checked against the array's limit.
+   */
+  static WireOutput newPresizedInstance(byte[] exactArray) {
+    return new WireOutput(exactArray, 0, exactArray.length, true);
+  }
+
+  /**
+   * Create a new {@code WireOutput} that writes to a list of segments suitable for a
+   * {@link java.nio.channels.GatheringByteChannel}. Byte strings of at least
+   * {@link #GATHER_THRESHOLD} bytes become segments of their own and are never copied. The
+   * {@code expectedSize} is a hint used to size the first segment.
+   */
+  static WireOutput newGatheringInstance(int expectedSize) {
+    return new WireOutput(Math.max(1, Math.min(expectedSize, SEGMENT_SIZE)));
+  }
+
+  /**
+   * Returns the segments written to this gathering output. No further writes may be made
+   * after this call.
+   */
+  ByteBuffer[] toByteBuffers() {
+    if (segments == null) {
+      throw new IllegalStateException("Not a gathering output");
+    }
+    flushSegment();
+    return segments.toArray(new ByteBuffer[segments.size()]);
+  }
+
+  /** Adds the bytes written since the last flush as a segment of their own. */
+  private void flushSegment() {
+    if (position > segmentStart) {
+      segments.add(ByteBuffer.wrap(buffer, segmentStart, position - segmentStart).slice());
+    }
+    segmentStart = position;
+  }
+
+  /**
+   * Makes room for more bytes by starting a new segment, or throws if writing to a single
+   * flat array.
+   */
+  private void nextSegment() throws IOException {
+    if (segments == null) {
+      // We're writing to a single buffer.
+      throw new IOException("Out of space: position=" + position + ", limit=" + limit);
+    }
+    flushSegment();
+    buffer = new byte[SEGMENT_SIZE];
+    position = 0;
+    segmentStart = 0;
+    limit = SEGMENT_SIZE;
   }
 
   /** Compute the number of bytes that would be needed to encode a tag. */
@@ -216,9 +308,8 @@ public final class WireOutput {
 
   /** Write a single byte. */
   void writeRawByte(byte value) throws IOException {
-    if (position == limit) {
-      // We're writing to a single buffer.
-      throw new IOException("Out of space: position=" + position + ", limit=" + limit);
+    if (position == limit && !presized) {
+      nextSegment();
     }
     buffer[position++] = value;
   }
@@ -235,13 +326,34 @@ public final class WireOutput {
 
   /** Write part of an array of bytes. */
   void writeRawBytes(byte[] value, int offset, int length) throws IOException {
-    if (limit - position >= length) {
-      // We have room in the current buffer.
-      System.arraycopy(value, offset, buffer, position, length);
-      position += length;
+    while (limit - position < length && !presized) {
+      // Fill the current segment and continue in the next one.
+      int count = limit - position;
+      if (segments == null) {
+        // We're writing to a single buffer.
+        throw new IOException("Out of space: position=" + position + ", limit=" + limit);
+      }
+      System.arraycopy(value, offset, buffer, position, count);
+      position += count;
+      offset += count;
+      length -= count;
+      nextSegment();
+    }
+    // We have room in the current buffer.
+    System.arraycopy(value, offset, buffer, position, length);
+    position += length;
+  }
+
+  /**
+   * Write the contents of a byte string. When gathering segments, large byte strings are
+   * referenced directly instead of being copied.
+   */
+  void writeRawBytes(ByteString value) throws IOException {
+    if (segments != null && value.size() >= GATHER_THRESHOLD) {
+      flushSegment();
+      segments.add(value.asByteBuffer());
     } else {
-      // We're writing to a single buffer.
-      throw new IOException("Out of space: position=" + position + ", limit=" + limit);
+      writeRawBytes(value.data, 0, value.data.length);
     }
   }
 
@@ -265,52 +377,122 @@ public final class WireOutput {
    * unsigned, so it won't be sign-extended if negative.
    */
   void writeVarint32(int value) throws IOException {
-    while (true) {
+    if (!presized && limit - position < MAX_VARINT32_SIZE) {
+      // Near the end of a segment or flat array: write byte at a time with checks.
+      while ((value & ~0x7F) != 0) {
+        writeRawByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      writeRawByte(value);
+      return;
+    }
+
+    byte[] buffer = this.buffer;
+    int position = this.position;
+    if ((value & ~0x7F) == 0) {
+      buffer[position++] = (byte) value;
+    } else {
+      buffer[position++] = (byte) (value | 0x80);
+      value >>>= 7;
       if ((value & ~0x7F) == 0) {
-        writeRawByte(value);
-        return;
+        buffer[position++] = (byte) value;
       } else {
-        writeRawByte((value & 0x7F) | 0x80);
+        buffer[position++] = (byte) (value | 0x80);
         value >>>= 7;
+        if ((value & ~0x7F) == 0) {
+          buffer[position++] = (byte) value;
+        } else {
+          buffer[position++] = (byte) (value | 0x80);
+          value >>>= 7;
+          if ((value & ~0x7F) == 0) {
+            buffer[position++] = (byte) value;
+          } else {
+            buffer[position++] = (byte) (value | 0x80);
+            buffer[position++] = (byte) (value >>> 7);
+          }
+        }
       }
     }
+    this.position = position;
   }
 
   /** Encode and write a varint. */
   void writeVarint64(long value) throws IOException {
-    while (true) {
-      if ((value & ~0x7FL) == 0) {
-        writeRawByte((int) value);
-        return;
-      } else {
+    if (!presized && limit - position < MAX_VARINT64_SIZE) {
+      // Near the end of a segment or flat array: write byte at a time with checks.
+      while ((value & ~0x7FL) != 0) {
         writeRawByte(((int) value & 0x7F) | 0x80);
         value >>>= 7;
       }
+      writeRawByte((int) value);
+      return;
+    }
+
+    byte[] buffer = this.buffer;
+    int position = this.position;
+    while ((value & ~0x7FL) != 0) {
+      buffer[position++] = (byte) (value | 0x80);
+      value >>>= 7;
     }
+    buffer[position++] = (byte) value;
+    this.position = position;
   }
 
   /** Write a little-endian 32-bit integer. */
   void writeFixed32(int value) throws IOException {
+    if (!presized && limit - position < WireType.FIXED_32_SIZE) {
+      // CHECKSTYLE.OFF: ParenPad
+      writeRawByte((value      ) & 0xFF);
+      writeRawByte((value >>  8) & 0xFF);
+      writeRawByte((value >> 16) & 0xFF);
+      writeRawByte((value >> 24) & 0xFF);
+      // CHECKSTYLE.ON: ParenPad
+      return;
+    }
+
+    byte[] buffer = this.buffer;
+    int position = this.position;
     // CHECKSTYLE.OFF: ParenPad
-    writeRawByte((value      ) & 0xFF);
-    writeRawByte((value >>  8) & 0xFF);
-    writeRawByte((value >> 16) & 0xFF);
-    writeRawByte((value >> 24) & 0xFF);
+    buffer[position    ] = (byte) (value       );
+    buffer[position + 1] = (byte) (value >>>  8);
+    buffer[position + 2] = (byte) (value >>> 16);
+    buffer[position + 3] = (byte) (value >>> 24);
     // CHECKSTYLE.ON: ParenPad
+    this.position = position + WireType.FIXED_32_SIZE;
   }
 
   /** Write a little-endian 64-bit integer. */
   void writeFixed64(long value) throws IOException {
+    if (!presized && limit - position < WireType.FIXED_64_SIZE) {
+      // CHECKSTYLE.OFF: ParenPad
+      writeRawByte((int) (value      ) & 0xFF);
+      writeRawByte((int) (value >>  8) & 0xFF);
+      writeRawByte((int) (value >> 16) & 0xFF);
+      writeRawByte((int) (value >> 24) & 0xFF);
+      writeRawByte((int) (value >> 32) & 0xFF);
+      writeRawByte((int) (value >> 40) & 0xFF);
+      writeRawByte((int) (value >> 48) & 0xFF);
+      writeRawByte((int) (value >> 56) & 0xFF);
+      // CHECKSTYLE.ON: ParenPad
+      return;
+    }
+
+    byte[] buffer = this.buffer;
+    int position = this.position;
+    // Split into two ints so the shifts stay in 32-bit registers.
+    int lo = (int) value;
+    int hi = (int) (value >>> 32);
     // CHECKSTYLE.OFF: ParenPad
-    writeRawByte((int) (value      ) & 0xFF);
-    writeRawByte((int) (value >>  8) & 0xFF);
-    writeRawByte((int) (value >> 16) & 0xFF);
-    writeRawByte((int) (value >> 24) & 0xFF);
-    writeRawByte((int) (value >> 32) & 0xFF);
-    writeRawByte((int) (value >> 40) & 0xFF);
-    writeRawByte((int) (value >> 48) & 0xFF);
-    writeRawByte((int) (value >> 56) & 0xFF);
+    buffer[position    ] = (byte) (lo       );
+    buffer[position + 1] = (byte) (lo >>>  8);
+    buffer[position + 2] = (byte) (lo >>> 16);
+    buffer[position + 3] = (byte) (lo >>> 24);
+    buffer[position + 4] = (byte) (hi       );
+    buffer[position + 5] = (byte) (hi >>>  8);
+    buffer[position + 6] = (byte) (hi >>> 16);
+    buffer[position + 7] = (byte) (hi >>> 24);
     // CHECKSTYLE.ON: ParenPad
+    this.position = position + WireType.FIXED_64_SIZE;
   }
 
   /**
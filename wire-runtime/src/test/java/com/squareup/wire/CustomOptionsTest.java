@@ -15,8 +15,10 @@
  */
 package com.squareup.wire;
 
+import com.google.protobuf.MessageOptions;
 import com.squareup.wire.protos.custom_options.Ext_custom_options;
 import com.squareup.wire.protos.custom_options.FooBar;
+import com.squareup.wire.protos.custom_options.MessageWithNestedOptions;
 import com.squareup.wire.protos.custom_options.MessageWithOptions;
 import com.squareup.wire.protos.foreign.Ext_foreign;
 import com.squareup.wire.protos.foreign.ForeignMessage;
@@ -33,8 +35,8 @@ public class CustomOptionsTest {
 
   @Test
   public void testMessageOptions() {
-    FooBar option_one =
-        MessageWithOptions.MESSAGE_OPTIONS.getExtension(Ext_custom_options.my_message_option_one);
+    MessageOptions options = MessageWithOptions.Options.MESSAGE_OPTIONS;
+    FooBar option_one = options.getExtension(Ext_custom_options.my_message_option_one);
     Assert.assertEquals(new Integer(1234), option_one.foo);
     Assert.assertEquals("5678", option_one.bar);
     FooBar.Nested baz1 = option_one.baz;
@@ -48,12 +50,10 @@ public class CustomOptionsTest {
     Assert.assertEquals(321, option_one.fred.get(1), 0.0000001);
     Assert.assertEquals(456.0, option_one.daisy, 0.0000001);
 
-    double option_two =
-        MessageWithOptions.MESSAGE_OPTIONS.getExtension(Ext_custom_options.my_message_option_two);
+    double option_two = options.getExtension(Ext_custom_options.my_message_option_two);
     Assert.assertEquals(91011.0F, option_two, 0.0000001);
 
-    FooBar option_three =
-        MessageWithOptions.MESSAGE_OPTIONS.getExtension(Ext_custom_options.my_message_option_three);
+    FooBar option_three = options.getExtension(Ext_custom_options.my_message_option_three);
     Assert.assertEquals(new Integer(11), option_three.foo);
     Assert.assertEquals("22", option_three.bar);
     FooBar.Nested baz3 = option_three.baz;
@@ -65,19 +65,37 @@ public class CustomOptionsTest {
     Assert.assertEquals(1, option_three.nested.size());
     Assert.assertEquals(new Integer(33), option_three.nested.get(0).foo);
 
-    ForeignMessage foreign_option =
-      MessageWithOptions.MESSAGE_OPTIONS.getExtension(Ext_foreign.foreign_message_option);
+    ForeignMessage foreign_option = options.getExtension(Ext_foreign.foreign_message_option);
     Assert.assertEquals(new Integer(9876), foreign_option.i);
 
     FooBar.FooBarBazEnum option_four =
-        MessageWithOptions.MESSAGE_OPTIONS.getExtension(Ext_custom_options.my_message_option_four);
+        options.getExtension(Ext_custom_options.my_message_option_four);
     Assert.assertEquals(FOO, option_four);
 
-    FooBar option_five =
-        MessageWithOptions.MESSAGE_OPTIONS.getExtension(Ext_custom_options.my_message_option_five);
+    FooBar option_five = options.getExtension(Ext_custom_options.my_message_option_five);
     Assert.assertEquals(BAZ, option_five.getExtension(Ext_custom_options.ext));
     Assert.assertEquals(Arrays.asList(FOO, BAZ),
         option_five.getExtension(Ext_custom_options.rep));
 
   }
+
+  @Test
+  public void testFieldOptions() {
+    Assert.assertEquals(Integer.valueOf(17),
+        FooBar.Options.FIELD_OPTIONS_FOO.getExtension(Ext_custom_options.my_field_option_one));
+    FooBar option_four =
+        FooBar.Options.FIELD_OPTIONS_FRED.getExtension(Ext_custom_options.my_field_option_four);
+    Assert.assertEquals(Arrays.asList(444.0F, 555.0F), option_four.fred);
+  }
+
+  @Test
+  public void testOptionsClassRenamedForNestedOptionsMessage() {
+    Assert.assertEquals(Float.valueOf(1.5F), MessageWithNestedOptions.Options_.MESSAGE_OPTIONS
+        .getExtension(Ext_custom_options.my_message_option_two));
+    Assert.assertEquals(Integer.valueOf(2), MessageWithNestedOptions.Options_.FIELD_OPTIONS_OPTIONS
+        .getExtension(Ext_custom_options.my_field_option_one));
+    Assert.assertEquals(Integer.valueOf(3), new MessageWithNestedOptions.Builder()
+        .options(new MessageWithNestedOptions.Options.Builder().value(3).build())
+        .build().options.value);
+  }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import com.squareup.wire.protos.simple.SimpleMessage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ImmutableListTest {
+
+  private final SimpleMessage message = new SimpleMessage.Builder()
+      .required_int32(1)
+      .repeated_double(Arrays.asList(1.0, 2.0, 3.0))
+      .build();
+
+  @Test
+  public void unmodifiedBuilderSharesList() {
+    SimpleMessage rebuilt = new SimpleMessage.Builder(message).required_int32(2).build();
+    assertSame(message.repeated_double, rebuilt.repeated_double);
+  }
+
+  @Test
+  public void modifiedBuilderCopiesList() {
+    SimpleMessage.Builder builder = new SimpleMessage.Builder(message);
+    builder.repeated_double.add(4.0);
+    builder.repeated_double.remove(0);
+    SimpleMessage rebuilt = builder.build();
+    assertEquals(Arrays.asList(2.0, 3.0, 4.0), rebuilt.repeated_double);
+    assertEquals(Arrays.asList(1.0, 2.0, 3.0), message.repeated_double);
+
+    // The built message does not see later changes to the builder.
+    builder.repeated_double.clear();
+    assertEquals(Arrays.asList(2.0, 3.0, 4.0), rebuilt.repeated_double);
+  }
+
+  @Test
+  public void parsedListIsHandedOff() throws IOException {
+    SimpleMessage.Builder builder = new SimpleMessage.Builder();
+    builder.mergeFrom(message.toByteArray());
+    SimpleMessage parsed = builder.build();
+    assertEquals(message, parsed);
+    assertSame(parsed.repeated_double, builder.build().repeated_double);
+
+    builder.repeated_double.set(0, 5.0);
+    assertEquals(Arrays.asList(5.0, 2.0, 3.0), builder.build().repeated_double);
+    assertEquals(Arrays.asList(1.0, 2.0, 3.0), parsed.repeated_double);
+  }
+
+  @Test
+  public void messageListsAreImmutable() {
+    List<Double> values = message.repeated_double;
+    assertNotSame(values, new SimpleMessage.Builder(message).repeated_double);
+    try {
+      values.add(4.0);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      values.set(0, 4.0);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import com.squareup.wire.protos.lazy.Envelope;
+import com.squareup.wire.protos.lazy.Header;
+import com.squareup.wire.protos.lazy.Payload;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LazyMessageTest {
+
+  private final Wire wire = new Wire();
+
+  @Test
+  public void roundTrip() throws IOException {
+    Payload payload = new Payload.Builder()
+        .lines(Arrays.asList("a", "b"))
+        .header(new Header.Builder().id("inner").build())
+        .build();
+    Envelope envelope = new Envelope.Builder()
+        .header(new Header.Builder().id("outer").build())
+        .payload(LazyMessage.of(payload))
+        .build();
+
+    Envelope parsed = wire.parseFrom(envelope.toByteArray(), Envelope.class);
+    assertEquals("outer", parsed.header.id);
+    assertFalse(parsed.payload.isDecoded());
+    assertEquals(payload, parsed.payload.get());
+    assertTrue(parsed.payload.isDecoded());
+    assertEquals(envelope, parsed);
+    assertEquals(envelope.hashCode(), parsed.hashCode());
+    assertEquals(envelope.toString(), parsed.toString());
+  }
+
+  @Test
+  public void untouchedFieldIsWrittenVerbatim() throws IOException {
+    // Encode the payload's fields out of tag order, which Wire itself would never emit.
+    ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+    payloadBytes.write(new Payload.Builder()
+        .header(new Header.Builder().id("inner").build()).build().toByteArray());
+    payloadBytes.write(new Payload.Builder()
+        .lines(Arrays.asList("line")).build().toByteArray());
+
+    ByteArrayOutputStream envelopeBytes = new ByteArrayOutputStream();
+    envelopeBytes.write(new Envelope.Builder()
+        .header(new Header.Builder().id("outer").build()).build().toByteArray());
+    envelopeBytes.write((2 << WireType.TAG_TYPE_BITS) | WireType.LENGTH_DELIMITED.value());
+    envelopeBytes.write(payloadBytes.size());
+    payloadBytes.writeTo(envelopeBytes);
+    byte[] bytes = envelopeBytes.toByteArray();
+
+    Envelope parsed = wire.parseFrom(bytes, Envelope.class);
+    assertArrayEquals(bytes, parsed.toByteArray());
+    assertFalse(parsed.payload.isDecoded());
+
+    // Decoding the value does not change what is written.
+    assertEquals(Arrays.asList("line"), parsed.payload.get().lines);
+    assertArrayEquals(bytes, parsed.toByteArray());
+
+    // A rebuilt field is encoded from the message.
+    Envelope rebuilt = new Envelope.Builder(parsed)
+        .payload(LazyMessage.of(parsed.payload.get()))
+        .build();
+    assertEquals(parsed, rebuilt);
+    assertFalse(Arrays.equals(bytes, rebuilt.toByteArray()));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void malformedFieldFailsOnAccess() throws IOException {
+    byte[] bytes = new Envelope.Builder()
+        .header(new Header.Builder().build())
+        .payload(LazyMessage.of(new Payload.Builder().build()))
+        .build()
+        .toByteArray();
+    // Replace the empty payload with a single truncated varint.
+    bytes = Arrays.copyOf(bytes, bytes.length + 1);
+    bytes[bytes.length - 2] = 1;
+    bytes[bytes.length - 1] = (byte) 0x80;
+
+    Envelope parsed = wire.parseFrom(bytes, Envelope.class);
+    parsed.payload.get();
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import com.squareup.wire.protos.edgecases.OneBytesField;
+import com.squareup.wire.protos.person.Person;
+import com.squareup.wire.protos.person.Person.PhoneNumber;
+import com.squareup.wire.protos.person.Person.PhoneType;
+import com.squareup.wire.protos.simple.Ext_simple_message;
+import com.squareup.wire.protos.simple.ExternalMessage;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MessageFormatterTest {
+
+  private final Person person = new Person.Builder()
+      .name("Omar Little")
+      .id(1)
+      .phone(Arrays.asList(
+          new PhoneNumber.Builder().number("1").type(PhoneType.HOME).build(),
+          new PhoneNumber.Builder().number("2").build(),
+          new PhoneNumber.Builder().number("3").build()))
+      .build();
+
+  @Test
+  public void unlimited() {
+    assertEquals("Person{name=Omar Little, id=1, phone=[PhoneNumber{number=1, type=HOME}, "
+        + "PhoneNumber{number=2}, PhoneNumber{number=3}]}", person.toString());
+    ExternalMessage message = new ExternalMessage.Builder()
+        .f(1.5f)
+        .setExtension(Ext_simple_message.fooext, Arrays.asList(1, 2))
+        .setExtension(Ext_simple_message.barext, 3)
+        .build();
+    assertEquals("ExternalMessage{f=1.5, {extensions={125=[1, 2], 126=3}}}", message.toString());
+    assertEquals("ExternalMessage{{extensions={}}}",
+        new ExternalMessage.Builder().build().toString());
+  }
+
+  @Test
+  public void truncatesValues() {
+    MessageFormatter formatter = new MessageFormatter.Builder()
+        .maxStringLength(4)
+        .maxRepeatedCount(1)
+        .build();
+    assertEquals("Person{name=Omar..., id=1, phone=[PhoneNumber{number=1, type=HOME}, ...]}",
+        formatter.toString(person));
+
+    OneBytesField bytes = new OneBytesField.Builder()
+        .opt_bytes(ByteString.of(new byte[] { 0, 1, 2, 15, 16, 17, 127 }))
+        .build();
+    assertEquals("OneBytesField{opt_bytes=AAECDxARfw==}", bytes.toString());
+    assertEquals("OneBytesField{opt_bytes=AAEC...}",
+        new MessageFormatter.Builder().maxBytesLength(3).build().toString(bytes));
+    assertEquals("OneBytesField{opt_bytes=AAECDw==...}",
+        new MessageFormatter.Builder().maxBytesLength(4).build().toString(bytes));
+  }
+
+  @Test
+  public void limitsLength() throws IOException {
+    String full = person.toString();
+    for (int maxLength = 0; maxLength <= full.length(); maxLength++) {
+      StringBuilder out = new StringBuilder("> ");
+      new MessageFormatter.Builder().maxLength(maxLength).build().format(person, out);
+      String expected = maxLength == full.length()
+          ? full
+          : full.substring(0, maxLength) + "...";
+      assertEquals("> " + expected, out.toString());
+    }
+  }
+
+  @Test
+  public void limitsLengthOfLargeBytes() {
+    OneBytesField bytes = new OneBytesField.Builder()
+        .opt_bytes(ByteString.of(new byte[1024 * 1024]))
+        .build();
+    assertEquals("OneBytesField{opt_bytes=AAAAAAAA...",
+        new MessageFormatter.Builder().maxLength(32).build().toString(bytes));
+  }
+}
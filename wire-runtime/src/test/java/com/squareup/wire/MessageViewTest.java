@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import com.squareup.wire.protos.alltypes.AllTypes;
+import com.squareup.wire.protos.alltypes.AllTypesView;
+import com.squareup.wire.protos.person.Person;
+import com.squareup.wire.protos.person.Person.PhoneNumber;
+import com.squareup.wire.protos.person.Person.PhoneType;
+import com.squareup.wire.protos.person.PersonView;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class MessageViewTest {
+
+  @Test
+  public void personView() {
+    Person person = new Person.Builder()
+        .name("Omar")
+        .id(1234)
+        .phone(Arrays.asList(
+            new PhoneNumber.Builder().number("410-555-0909").type(PhoneType.MOBILE).build(),
+            new PhoneNumber.Builder().number("410-555-1212").build()))
+        .build();
+    PersonView view = new PersonView(person.toByteArray());
+
+    assertEquals("Omar", view.name());
+    assertEquals(1234, view.id());
+    assertFalse(view.has_email());
+    assertEquals(Person.DEFAULT_EMAIL, view.email());
+    assertEquals(2, view.phone_count());
+    assertEquals("410-555-0909", view.phone(0).number());
+    assertEquals(PhoneType.MOBILE, view.phone(0).type());
+    assertEquals("410-555-1212", view.phone(1).number());
+    assertFalse(view.phone(1).has_type());
+    assertEquals(PhoneNumber.DEFAULT_TYPE, view.phone(1).type());
+  }
+
+  @Test
+  public void lastValueWins() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(new Person.Builder().name("first").id(1).build().toByteArray());
+    out.write(new Person.Builder().name("second").id(2).build().toByteArray());
+    PersonView view = new PersonView(out.toByteArray());
+    assertEquals("second", view.name());
+    assertEquals(2, view.id());
+  }
+
+  @Test
+  public void packedRunsAreConcatenated() {
+    // pack_int32 (tag 301) as an empty run, a run of [1, 300], an unpacked 7, and a run of [2].
+    byte[] data = {
+        (byte) 0xea, 0x12, 0x00,
+        (byte) 0xea, 0x12, 0x03, 0x01, (byte) 0xac, 0x02,
+        (byte) 0xe8, 0x12, 0x07,
+        (byte) 0xea, 0x12, 0x01, 0x02,
+    };
+    AllTypesView view = new AllTypesView(data);
+    assertEquals(4, view.pack_int32_count());
+    assertEquals(1, view.pack_int32(0));
+    assertEquals(300, view.pack_int32(1));
+    assertEquals(7, view.pack_int32(2));
+    assertEquals(2, view.pack_int32(3));
+    // Random access after sequential access.
+    assertEquals(300, view.pack_int32(1));
+    assertEquals(0, view.rep_int32_count());
+    assertNull(view.opt_nested_message());
+    assertFalse(view.has_opt_nested_message());
+  }
+
+  @Test
+  public void malformed() {
+    try {
+      // A length-delimited field that claims more bytes than remain.
+      new PersonView(new byte[] { 0x0a, 0x05, 'a' });
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      // A length-delimited field with a negative length.
+      new PersonView(new byte[] { 0x0a, (byte) 0xfa, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f });
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      // A truncated varint.
+      new PersonView(new byte[] { 0x10, (byte) 0x80 });
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void wrongWireTypesAreIgnored() {
+    // name (tag 1, a string) as the varint 3, followed by bytes outside the view.
+    byte[] data = { 0x08, 0x03, 'a', 'b', 'c' };
+    PersonView person = new PersonView(data, 0, 2);
+    assertFalse(person.has_name());
+    assertEquals(Person.DEFAULT_NAME, person.name());
+
+    // opt_fixed32 (tag 4), opt_fixed64 (tag 9) and rep_fixed32 (tag 204) as 1-byte varints.
+    AllTypesView view = new AllTypesView(new byte[] {
+        0x20, 0x01,
+        0x48, 0x01,
+        (byte) 0xe0, 0x0c, 0x01,
+    });
+    assertFalse(view.has_opt_fixed32());
+    assertEquals(AllTypes.DEFAULT_OPT_FIXED32.intValue(), view.opt_fixed32());
+    assertFalse(view.has_opt_fixed64());
+    assertEquals(0, view.rep_fixed32_count());
+  }
+
+  @Test
+  public void malformedPackedRuns() {
+    // pack_fixed32 (tag 304) as a run of 5 bytes.
+    AllTypesView fixed = new AllTypesView(new byte[] {
+        (byte) 0x82, 0x13, 0x05, 0x01, 0x02, 0x03, 0x04, 0x05
+    });
+    try {
+      fixed.pack_fixed32_count();
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    // pack_int32 (tag 301) as a run whose last varint continues into opt_int32 (tag 1).
+    AllTypesView varint = new AllTypesView(new byte[] {
+        (byte) 0xea, 0x12, 0x02, 0x01, (byte) 0x80, 0x08, 0x01
+    });
+    try {
+      varint.pack_int32(1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import com.squareup.wire.protos.person.Person;
+import com.squareup.wire.protos.person.Person.PhoneNumber;
+import com.squareup.wire.protos.person.Person.PhoneType;
+import com.squareup.wire.protos.simple.Ext_simple_message;
+import com.squareup.wire.protos.simple.ExternalMessage;
+import com.squareup.wire.protos.simple.SimpleMessage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ParseIntoBuilderTest {
+
+  private final Wire wire = new Wire();
+
+  private static Person person(String name, String... numbers) {
+    PhoneNumber[] phones = new PhoneNumber[numbers.length];
+    for (int i = 0; i < numbers.length; i++) {
+      phones[i] = new PhoneNumber.Builder().number(numbers[i]).type(PhoneType.WORK).build();
+    }
+    return new Person.Builder().name(name).id(1).phone(Arrays.asList(phones)).build();
+  }
+
+  @Test
+  public void parseRepeatedlyIntoOneBuilder() throws IOException {
+    Person first = person("first", "1", "2", "3");
+    Person second = person("second", "4");
+    Person third = new Person.Builder().name("third").id(3).build();
+
+    Person.Builder builder = new Person.Builder();
+    Person parsedFirst = wire.parseFrom(first.toByteArray(), builder);
+    assertEquals(first, parsedFirst);
+    assertEquals(second, wire.parseFrom(second.toByteArray(), builder));
+    assertEquals(third, wire.parseFrom(third.toByteArray(), builder));
+    // Messages built earlier are not affected by reuse.
+    assertEquals(first, parsedFirst);
+    assertEquals(Collections.<PhoneNumber>emptyList(), builder.build().phone);
+  }
+
+  @Test
+  public void parseRepeatedlyReusesLists() throws IOException {
+    Person first = person("first", "1", "2");
+    Person second = person("second", "3");
+
+    Person.Builder builder = new Person.Builder();
+    Person parsedFirst = wire.parseFrom(first.toByteArray(), builder);
+    List<PhoneNumber> phones = builder.phone;
+    Person parsedSecond = wire.parseFrom(second.toByteArray(), builder);
+    assertSame(phones, builder.phone);
+    assertEquals(first, parsedFirst);
+    assertEquals(second, parsedSecond);
+  }
+
+  @Test
+  public void mergeFromAppendsRepeatedAndReplacesOthers() throws IOException {
+    Person.Builder builder = new Person.Builder(person("first", "1"));
+    builder.mergeFrom(person("second", "2", "3").toByteArray());
+    assertEquals(person("second", "1", "2", "3"), builder.build());
+
+    wire.mergeFrom(new Person.Builder().name("third").id(1).build().toByteArray(), builder);
+    assertEquals(person("third", "1", "2", "3"), builder.build());
+  }
+
+  @Test
+  public void mergeFromDoesNotChangeMessageExtensions() throws IOException {
+    Wire wire = new Wire(Ext_simple_message.class);
+    byte[] bytes = new ExternalMessage.Builder()
+        .setExtension(Ext_simple_message.fooext, Arrays.asList(1, 2))
+        .build()
+        .toByteArray();
+    byte[] moreBytes = new ExternalMessage.Builder()
+        .setExtension(Ext_simple_message.fooext, Arrays.asList(3))
+        .build()
+        .toByteArray();
+
+    // Merging into a builder copied from a parsed message.
+    ExternalMessage message = wire.parseFrom(bytes, ExternalMessage.class);
+    ExternalMessage.Builder builder = new ExternalMessage.Builder(message);
+    wire.mergeFrom(moreBytes, builder);
+    assertEquals(Arrays.asList(1, 2, 3), builder.build().getExtension(Ext_simple_message.fooext));
+    assertEquals(Arrays.asList(1, 2), message.getExtension(Ext_simple_message.fooext));
+    assertArrayEquals(bytes, message.toByteArray());
+
+    // Merging into a builder that has already built a message.
+    builder = new ExternalMessage.Builder();
+    wire.mergeFrom(bytes, builder);
+    ExternalMessage built = builder.build();
+    wire.mergeFrom(moreBytes, builder);
+    assertEquals(Arrays.asList(1, 2), built.getExtension(Ext_simple_message.fooext));
+    assertArrayEquals(bytes, built.toByteArray());
+  }
+
+  @Test
+  public void clear() throws IOException {
+    SimpleMessage.Builder builder = new SimpleMessage.Builder()
+        .optional_int32(1)
+        .required_int32(2)
+        .repeated_double(Arrays.asList(3.0));
+    builder.addVarint(100, 4);
+    builder.clear();
+    assertNull(builder.optional_int32);
+    assertNull(builder.required_int32);
+    assertNull(builder.repeated_double);
+    assertEquals(new SimpleMessage.Builder().required_int32(5).build(),
+        builder.required_int32(5).build());
+  }
+}
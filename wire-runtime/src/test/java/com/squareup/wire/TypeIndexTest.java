@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import com.squareup.wire.protos.ProtoIndex;
+import com.squareup.wire.protos.foreign.ForeignEnum;
+import com.squareup.wire.protos.foreign.ForeignMessage;
+import com.squareup.wire.protos.roots.G;
+import com.squareup.wire.protos.simple.ExternalMessage;
+import com.squareup.wire.protos.simple.SimpleMessage;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TypeIndexTest {
+
+  @Test
+  public void messagesMatchAnnotations() {
+    for (Class<?> type : Arrays.asList(SimpleMessage.class, SimpleMessage.NestedMessage.class,
+        ExternalMessage.class, ForeignMessage.class)) {
+      TypeIndex.MessageEntry entry = ProtoIndex.TYPES.getMessage(type);
+      assertNotNull(type.getName(), entry);
+      assertSame(type, entry.messageType);
+      assertEquals(type.getName() + "$Builder", entry.builderType.getName());
+
+      List<String> expected = new ArrayList<String>();
+      for (Field field : type.getDeclaredFields()) {
+        ProtoField annotation = field.getAnnotation(ProtoField.class);
+        if (annotation != null) {
+          expected.add(annotation.tag() + " " + field.getName() + " " + annotation.type() + " "
+              + annotation.label());
+        }
+      }
+      List<String> actual = new ArrayList<String>();
+      for (TypeIndex.FieldEntry field : entry.fields) {
+        actual.add(field.tag + " " + field.name + " " + field.datatype + " " + field.label);
+      }
+      assertEquals(expected, actual);
+    }
+    assertSame(SimpleMessage.NestedEnum.class, ProtoIndex.TYPES.getMessage(SimpleMessage.class)
+        .fields.get(3).elementType);
+  }
+
+  @Test
+  public void enumsMatchAnnotations() throws NoSuchFieldException {
+    for (Class<? extends Enum> type : Arrays.asList(SimpleMessage.NestedEnum.class,
+        ForeignEnum.class)) {
+      int[] values = ProtoIndex.TYPES.getEnum(type);
+      Enum[] constants = type.getEnumConstants();
+      assertEquals(constants.length, values.length);
+      for (int i = 0; i < constants.length; i++) {
+        ProtoEnum annotation = type.getField(constants[i].name()).getAnnotation(ProtoEnum.class);
+        assertEquals(annotation.value(), values[i]);
+      }
+    }
+  }
+
+  @Test
+  public void registeredIndexRoundTrip() throws Exception {
+    Wire.registerTypeIndex(ProtoIndex.TYPES);
+    SimpleMessage message = new SimpleMessage.Builder()
+        .required_int32(1)
+        .optional_nested_msg(new SimpleMessage.NestedMessage.Builder().bb(2).build())
+        .default_nested_enum(SimpleMessage.NestedEnum.BAZ)
+        .default_foreign_enum(ForeignEnum.BAX)
+        .repeated_double(Arrays.asList(1.0, 2.0))
+        .build();
+    assertEquals(message, new Wire().parseFrom(message.toByteArray(), SimpleMessage.class));
+    try {
+      new SimpleMessage.Builder().build();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void unreachableIndexIsUnregistered() throws InterruptedException {
+    TypeIndex index = new TypeIndex.Builder().enumType(G.class, 1, 2).build();
+    Wire.registerTypeIndex(index);
+    assertNotNull(TypeIndex.registeredEnum(G.class));
+
+    WeakReference<TypeIndex> reference = new WeakReference<TypeIndex>(index);
+    index = null;
+    for (int i = 0; i < 100 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(reference.get());
+    assertNull(TypeIndex.registeredEnum(G.class));
+  }
+
+  @Test
+  public void mismatchedEnumIndexFallsBackToAnnotations() {
+    // The index lists one value, but G has two constants.
+    TypeIndex index = new TypeIndex.Builder().enumType(G.class, 7).build();
+    Wire.registerTypeIndex(index);
+    EnumAdapter<G> adapter = EnumAdapter.of(G.class);
+    assertEquals(1, adapter.toInt(G.FOO));
+    assertEquals(2, adapter.toInt(G.BAR));
+    assertSame(G.BAR, adapter.fromInt(2));
+    assertEquals(1, index.getEnum(G.class).length);
+  }
+}
@@ -18,10 +18,13 @@ package com.squareup.wire;
 import com.squareup.wire.protos.unknownfields.VersionOne;
 import com.squareup.wire.protos.unknownfields.VersionTwo;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
 
 public class UnknownFieldsTest {
 
@@ -78,4 +81,79 @@ public class UnknownFieldsTest {
     assertEquals(new Integer(67890), v2C.v2_f32);
     assertEquals(new Long(98765L), v2C.v2_f64);
   }
+
+  @Test
+  public void testFieldsAddedOutOfOrder() throws IOException {
+    VersionOne.Builder builder = new VersionOne.Builder().i(111);
+    builder.addLengthDelimited(3, ByteString.of("MjIy")); // "222"
+    builder.addVarint(2, 12345);
+    builder.addFixed64(5, 98765L);
+    builder.addFixed32(4, 67890);
+    builder.addVarint(2, 54321);
+    VersionOne v1 = builder.build();
+
+    // Unknown fields are written in tag order, like known fields.
+    byte[] expected = new VersionTwo.Builder()
+        .i(111)
+        .v2_i(12345)
+        .build()
+        .toByteArray();
+    VersionTwo v2 = wire.parseFrom(v1.toByteArray(), VersionTwo.class);
+    assertEquals(new Integer(54321), v2.v2_i);
+    assertEquals("222", v2.v2_s);
+    assertEquals(new Integer(67890), v2.v2_f32);
+    assertEquals(new Long(98765L), v2.v2_f64);
+    assertEquals(ByteString.of(expected),
+        ByteString.of(v1.toByteArray(), 0, expected.length));
+    assertEquals(v1.toByteArray().length, v1.getSerializedSize());
+
+    assertEquals("[[2:12345, 2:54321], [3:MjIy], [4:67890], [5:98765]]",
+        describe(v1));
+  }
+
+  @Test
+  public void testBuildersDoNotShareAppends() throws IOException {
+    VersionOne.Builder builder = new VersionOne.Builder().i(111);
+    builder.addVarint(2, 1);
+    VersionOne first = builder.build();
+    builder.addVarint(2, 2);
+    VersionOne second = builder.build();
+
+    VersionOne.Builder a = new VersionOne.Builder(first);
+    VersionOne.Builder b = new VersionOne.Builder(first);
+    a.addVarint(3, 3);
+    b.addFixed32(4, 4);
+
+    assertEquals("[[2:1]]", describe(first));
+    assertEquals("[[2:1, 2:2]]", describe(second));
+    assertEquals("[[2:1], [3:3]]", describe(a.build()));
+    assertEquals("[[2:1], [4:4]]", describe(b.build()));
+  }
+
+  @Test
+  public void testWireTypeMustMatch() {
+    VersionOne.Builder builder = new VersionOne.Builder();
+    builder.addVarint(2, 1);
+    builder.addFixed32(3, 1);
+    try {
+      builder.addFixed32(2, 1);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private static String describe(Message message) {
+    List<List<String>> result = new ArrayList<List<String>>();
+    for (List<UnknownFieldMap.FieldValue> values : message.unknownFields()) {
+      List<String> strings = new ArrayList<String>();
+      for (UnknownFieldMap.FieldValue value : values) {
+        Object o = value.getWireType() == WireType.LENGTH_DELIMITED
+            ? value.getAsBytes().toString()
+            : value.getWireType() == WireType.FIXED32 ? value.getAsInteger() : value.getAsLong();
+        strings.add(value.getTag() + ":" + o);
+      }
+      result.add(strings);
+    }
+    return result.toString();
+  }
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import com.squareup.wire.protos.alltypes.AllTypes;
+import com.squareup.wire.protos.simple.SimpleMessage;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class WireInputTest {
+
+  private static final long[] VALUES = {
+      0L, 1L, 0x7fL, 0x80L, 0x3fffL, 0x4000L, 0x1fffffL, 0x200000L, 0xfffffffL, 0x10000000L,
+      0xffffffffL, 0x100000000L, 0x7fffffffffffffL, 0x80000000000000L, Long.MAX_VALUE, -1L,
+      Long.MIN_VALUE
+  };
+
+  /** Padding after each value so that the fast path is taken when reading from an array. */
+  private static final int PADDING = 10;
+
+  @Test
+  public void fastPathMatchesSlowPath() throws IOException {
+    for (long value : VALUES) {
+      byte[] varint = new byte[WireOutput.varint64Size(value)];
+      WireOutput.writeVarint(value, varint, 0);
+      for (WireInput input : inputs(varint)) {
+        assertEquals((int) value, input.readVarint32());
+      }
+      for (WireInput input : inputs(varint)) {
+        assertEquals(value, input.readVarint64());
+      }
+
+      byte[] fixed = new byte[8];
+      WireOutput output = WireOutput.newInstance(fixed);
+      output.writeFixed64(value);
+      for (WireInput input : inputs(fixed)) {
+        assertEquals(value, input.readFixed64());
+      }
+      for (WireInput input : inputs(Arrays.copyOf(fixed, 4))) {
+        assertEquals((int) value, input.readFixed32());
+      }
+    }
+  }
+
+  @Test
+  public void malformedVarint() throws IOException {
+    byte[] bytes = new byte[11];
+    Arrays.fill(bytes, (byte) 0x80);
+    for (WireInput input : inputs(bytes)) {
+      try {
+        input.readVarint32();
+        fail();
+      } catch (IOException expected) {
+      }
+    }
+    for (WireInput input : inputs(bytes)) {
+      try {
+        input.readVarint64();
+        fail();
+      } catch (IOException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void packedMatchesSingleValues() throws IOException {
+    // Runs of single-byte varints interleaved with longer ones.
+    long[] values = new long[100];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i % 13 == 0 ? VALUES[i % VALUES.length] : i;
+    }
+    int varintsSize = 0;
+    for (long value : values) {
+      varintsSize += WireOutput.varint64Size(value);
+    }
+    byte[] varints = new byte[varintsSize];
+    byte[] fixed = new byte[values.length * 8];
+    WireOutput varintOutput = WireOutput.newInstance(varints);
+    WireOutput fixedOutput = WireOutput.newInstance(fixed);
+    for (long value : values) {
+      varintOutput.writeVarint64(value);
+      fixedOutput.writeFixed64(value);
+    }
+
+    for (WireInput input : inputs(varints)) {
+      int[] actual = input.readPackedVarint32(varints.length);
+      assertEquals(values.length, actual.length);
+      for (int i = 0; i < values.length; i++) {
+        assertEquals((int) values[i], actual[i]);
+      }
+    }
+    for (WireInput input : inputs(varints)) {
+      assertEquals(Arrays.toString(values),
+          Arrays.toString(input.readPackedVarint64(varints.length)));
+    }
+    for (WireInput input : inputs(fixed)) {
+      assertEquals(Arrays.toString(values), Arrays.toString(input.readPackedFixed64(fixed.length)));
+    }
+    for (WireInput input : inputs(fixed)) {
+      int[] actual = input.readPackedFixed32(fixed.length);
+      assertEquals(values.length * 2, actual.length);
+      for (int i = 0; i < values.length; i++) {
+        assertEquals((int) values[i], actual[2 * i]);
+      }
+    }
+  }
+
+  @Test
+  public void truncatedPackedRun() throws IOException {
+    // A pack_int64 field (tag 306) whose length claims 0x10000000 bytes, followed by two.
+    byte[] bytes = {
+        (byte) 0x92, 0x13, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0x01, 0x02
+    };
+    try {
+      new Wire().parseFrom(bytes, AllTypes.class);
+      fail();
+    } catch (EOFException expected) {
+    }
+
+    int length = 0x10000000;
+    byte[] run = { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 };
+    for (WireInput input : inputs(run)) {
+      try {
+        input.readPackedVarint32(length);
+        fail();
+      } catch (EOFException expected) {
+      }
+    }
+    for (WireInput input : inputs(run)) {
+      try {
+        input.readPackedVarint64(length);
+        fail();
+      } catch (EOFException expected) {
+      }
+    }
+    for (WireInput input : inputs(run)) {
+      try {
+        input.readPackedFixed32(length);
+        fail();
+      } catch (EOFException expected) {
+      }
+    }
+    for (WireInput input : inputs(run)) {
+      try {
+        input.readPackedFixed64(length);
+        fail();
+      } catch (EOFException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void truncatedUnknownField() throws IOException {
+    // A SimpleMessage with an unknown field (tag 1000) whose length claims 0x7fffffff bytes.
+    byte[] bytes = {
+        0x28, 0x01, (byte) 0xba, 0x3e, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07
+    };
+    try {
+      new Wire().parseFrom(bytes, SimpleMessage.class);
+      fail();
+    } catch (EOFException expected) {
+    }
+    try {
+      new Wire().parseFrom(new ByteArrayInputStream(bytes), SimpleMessage.class);
+      fail();
+    } catch (EOFException expected) {
+    }
+
+    byte[] value = { 0x01, 0x02, 0x03, 0x04 };
+    for (WireInput input : inputs(value)) {
+      try {
+        new UnknownFieldMap().addLengthDelimited(1000, input, Integer.MAX_VALUE);
+        fail();
+      } catch (EOFException expected) {
+      }
+    }
+    try {
+      WireInput.newInstance(value).readRawBytes(new byte[4], 0, -1);
+      fail();
+    } catch (IOException expected) {
+    }
+    try {
+      WireInput.newInstance(value).readRawBytes(new byte[4], 1, Integer.MAX_VALUE);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  @Test
+  public void largeUnknownFieldFromStream() throws IOException {
+    byte[] value = new byte[5000];
+    for (int i = 0; i < value.length; i++) {
+      value[i] = (byte) i;
+    }
+    SimpleMessage.Builder builder = new SimpleMessage.Builder().required_int32(1);
+    builder.addLengthDelimited(1000, ByteString.of(value));
+    byte[] bytes = builder.build().toByteArray();
+
+    SimpleMessage parsed =
+        new Wire().parseFrom(new ByteArrayInputStream(bytes), SimpleMessage.class);
+    assertArrayEquals(bytes, parsed.toByteArray());
+  }
+
+  /**
+   * Returns inputs over {@code bytes} that exercise the fast path (a padded array) and the
+   * slow path (an exact array and a stream that returns one byte at a time).
+   */
+  private static WireInput[] inputs(byte[] bytes) {
+    byte[] padded = Arrays.copyOf(bytes, bytes.length + PADDING);
+    return new WireInput[] {
+        WireInput.newInstance(padded),
+        WireInput.newInstance(bytes),
+        WireInput.newInstance(new ByteArrayInputStream(bytes) {
+          @Override public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+          }
+        })
+    };
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.wire;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class WireOutputTest {
+
+  private static final int[] INTS = {
+      0, 1, 0x7f, 0x80, 0x3fff, 0x4000, 0x1fffff, 0x200000, 0xfffffff, 0x10000000,
+      Integer.MAX_VALUE, -1, Integer.MIN_VALUE
+  };
+
+  private static final long[] LONGS = {
+      0L, 1L, 0x7fL, 0x80L, 0xffffffffL, 0x100000000L, 0x7fffffffffffffL, 0x80000000000000L,
+      Long.MAX_VALUE, -1L, Long.MIN_VALUE
+  };
+
+  @Test
+  public void presizedMatchesChecked() throws IOException {
+    for (int value : INTS) {
+      assertVarint32(value);
+      assertFixed32(value);
+    }
+    for (long value : LONGS) {
+      assertVarint64(value);
+      assertFixed64(value);
+    }
+  }
+
+  @Test
+  public void checkedWritesNearLimit() throws IOException {
+    // Fewer bytes remain than the largest varint, but enough for this one.
+    byte[] bytes = new byte[3];
+    WireOutput output = WireOutput.newInstance(bytes);
+    output.writeVarint32(0x3fff);
+    output.writeRawByte(1);
+    assertEquals("[-1, 127, 1]", Arrays.toString(bytes));
+
+    output = WireOutput.newInstance(new byte[2]);
+    try {
+      output.writeVarint32(0x4000);
+      fail();
+    } catch (IOException expected) {
+    }
+
+    output = WireOutput.newInstance(new byte[7]);
+    try {
+      output.writeFixed64(1L);
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  private void assertVarint32(int value) throws IOException {
+    int size = WireOutput.varint32Size(value);
+    byte[] expected = new byte[size];
+    WireOutput.writeVarint(value & 0xffffffffL, expected, 0);
+
+    byte[] presized = new byte[size];
+    WireOutput.newPresizedInstance(presized).writeVarint32(value);
+    assertEquals(Arrays.toString(expected), Arrays.toString(presized));
+
+    // A flat array without room for the largest varint takes the checked path.
+    byte[] checked = new byte[size];
+    WireOutput.newInstance(checked).writeVarint32(value);
+    assertEquals(Arrays.toString(expected), Arrays.toString(checked));
+  }
+
+  private void assertVarint64(long value) throws IOException {
+    int size = WireOutput.varint64Size(value);
+    byte[] expected = new byte[size];
+    WireOutput.writeVarint(value, expected, 0);
+
+    byte[] presized = new byte[size];
+    WireOutput.newPresizedInstance(presized).writeVarint64(value);
+    assertEquals(Arrays.toString(expected), Arrays.toString(presized));
+
+    byte[] checked = new byte[size];
+    WireOutput.newInstance(checked).writeVarint64(value);
+    assertEquals(Arrays.toString(expected), Arrays.toString(checked));
+  }
+
+  private void assertFixed32(int value) throws IOException {
+    byte[] presized = new byte[4];
+    WireOutput.newPresizedInstance(presized).writeFixed32(value);
+    byte[] checked = new byte[4];
+    WireOutput.newInstance(checked).writeFixed32(value);
+    assertEquals(Arrays.toString(checked), Arrays.toString(presized));
+    assertEquals(value, WireInput.newInstance(presized).readFixed32());
+  }
+
+  private void assertFixed64(long value) throws IOException {
+    byte[] presized = new byte[8];
+    WireOutput.newPresizedInstance(presized).writeFixed64(value);
+    byte[] checked = new byte[8];
+    WireOutput.newInstance(checked).writeFixed64(value);
+    assertEquals(Arrays.toString(checked), Arrays.toString(presized));
+    assertEquals(value, WireInput.newInstance(presized).readFixed64());
+  }
+}
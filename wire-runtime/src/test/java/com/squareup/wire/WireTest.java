@@ -15,16 +15,28 @@
  */
 package com.squareup.wire;
 
+import com.squareup.wire.protos.edgecases.OneBytesField;
 import com.squareup.wire.protos.person.Person;
 import com.squareup.wire.protos.person.Person.PhoneNumber;
 import com.squareup.wire.protos.person.Person.PhoneType;
 import com.squareup.wire.protos.simple.Ext_simple_message;
 import com.squareup.wire.protos.simple.ExternalMessage;
 import com.squareup.wire.protos.simple.SimpleMessage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 
 import static com.squareup.wire.protos.simple.Ext_simple_message.barext;
@@ -174,6 +186,152 @@ public class WireTest {
     assertEquals(new Integer(222), newMsg.optional_external_msg.getExtension(bazext));
   }
 
+  @Test
+  public void testExtensionsDecodedLazily() throws Exception {
+    byte[] data = {
+        (byte) 0xe8, 0x07, (byte) 0xbc, 0x03, // fooext: 444
+        (byte) 0xea, 0x07, 0x04, (byte) 0xab, 0x04, (byte) 0x9a, 0x05, // fooext: [555, 666]
+        (byte) 0xf0, 0x07, 0x01, // barext: 1
+        (byte) 0xf0, 0x07, (byte) 0xcd, 0x02, // barext: 333
+    };
+    Wire wire = new Wire(Ext_simple_message.class);
+    ExternalMessage parsed = wire.parseFrom(data, ExternalMessage.class);
+
+    // Extensions are written back as they were read, even after being decoded.
+    assertEquals(ByteString.of(data), ByteString.of(parsed.toByteArray()));
+    assertEquals(Arrays.asList(444, 555, 666), parsed.getExtension(fooext));
+    assertEquals(new Integer(333), parsed.getExtension(barext));
+    assertEquals(ByteString.of(data), ByteString.of(parsed.toByteArray()));
+
+    ExternalMessage built = new ExternalMessage.Builder()
+        .setExtension(fooext, Arrays.asList(444, 555, 666))
+        .setExtension(barext, 333)
+        .build();
+    assertEquals(built, wire.parseFrom(data, ExternalMessage.class));
+    assertEquals(wire.parseFrom(data, ExternalMessage.class), built);
+    assertEquals(built.hashCode(), wire.parseFrom(data, ExternalMessage.class).hashCode());
+    assertEquals(built.toString(), parsed.toString());
+
+    // A value set on a builder replaces the encoded value.
+    ExternalMessage modified = new ExternalMessage.Builder(parsed).setExtension(barext, 7).build();
+    ExternalMessage reparsed = wire.parseFrom(modified.toByteArray(), ExternalMessage.class);
+    assertEquals(Arrays.asList(444, 555, 666), reparsed.getExtension(fooext));
+    assertEquals(new Integer(7), reparsed.getExtension(barext));
+
+    // Malformed values are only detected when decoded.
+    byte[] malformed = { (byte) 0xea, 0x07, 0x02, (byte) 0x80, (byte) 0x80 };
+    ExternalMessage bad = wire.parseFrom(malformed, ExternalMessage.class);
+    try {
+      bad.getExtension(fooext);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void testExtensionsCopyOnWrite() {
+    ExternalMessage.Builder builder = new ExternalMessage.Builder()
+        .setExtension(bazext, 222)
+        .setExtension(barext, 333);
+    ExternalMessage first = builder.build();
+    builder.setExtension(barext, 444).setExtension(fooext, Arrays.asList(1, 2));
+    ExternalMessage second = builder.build();
+    ExternalMessage third = new ExternalMessage.Builder(first).setExtension(bazext, 555).build();
+
+    assertEquals(Arrays.asList(barext, bazext), first.getExtensions());
+    assertEquals(new Integer(333), first.getExtension(barext));
+    assertEquals(new Integer(222), first.getExtension(bazext));
+    assertNull(first.getExtension(fooext));
+    assertEquals(Arrays.asList(fooext, barext, bazext), second.getExtensions());
+    assertEquals(new Integer(444), second.getExtension(barext));
+    assertEquals(new Integer(555), third.getExtension(bazext));
+    assertEquals(new Integer(222), first.getExtension(bazext));
+  }
+
+  @Test
+  public void testExtensionListIsSnapshot() {
+    ExtensionMap<ExternalMessage> map = new ExtensionMap<ExternalMessage>();
+    map.put(barext, 333);
+    List<Extension<ExternalMessage, ?>> extensions = map.getExtensions();
+    map.put(fooext, Arrays.asList(1, 2));
+    map.put(bazext, 222);
+    assertEquals(Arrays.asList(barext), extensions);
+    try {
+      extensions.add(bazext);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @Test
+  public void testRegisterExtensions() throws Exception {
+    byte[] data = new ExternalMessage.Builder()
+        .setExtension(barext, 333)
+        .build()
+        .toByteArray();
+    Wire wire = new Wire();
+    MessageAdapter<SimpleMessage> simpleAdapter = wire.messageAdapter(SimpleMessage.class);
+    ExternalMessage before = wire.parseFrom(data, ExternalMessage.class);
+    assertNull(before.getExtension(barext));
+
+    wire.registerExtensions(Ext_simple_message.class);
+    ExternalMessage after = wire.parseFrom(data, ExternalMessage.class);
+    assertEquals(new Integer(333), after.getExtension(barext));
+    assertEquals(Arrays.asList(barext), after.getExtensions());
+    // Adapters of types that are not extended are kept.
+    assertTrue(simpleAdapter == wire.messageAdapter(SimpleMessage.class));
+  }
+
+  @Test
+  public void missingRequiredFieldsAreListedByName() {
+    try {
+      new Person.Builder().email("a@b.c").build();
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("Required fields not set:\n  id\n  name", e.getMessage());
+    }
+    try {
+      new Person.Builder().name("Omar").build();
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("Required field not set:\n  id", e.getMessage());
+    }
+  }
+
+  @Test
+  public void reflectedMetadataIsSharedAcrossInstances() {
+    Wire first = new Wire();
+    Wire second = new Wire(Ext_simple_message.class);
+    assertTrue(first.messageAdapter(Person.class).getField("name")
+        == second.messageAdapter(Person.class).getField("name"));
+    assertTrue(first.messageAdapter(ExternalMessage.class).getField("f")
+        == second.messageAdapter(ExternalMessage.class).getField("f"));
+    assertTrue(first.enumAdapter(PhoneType.class) == second.enumAdapter(PhoneType.class));
+    assertTrue(first.builderAdapter(Person.Builder.class)
+        == second.builderAdapter(Person.Builder.class));
+  }
+
+  @Test
+  public void prewarmReachesReferencedTypes() {
+    Map<Class<?>, Long> timings = new Wire().prewarm(Person.class);
+    assertEquals(Arrays.<Class<?>>asList(Person.class, PhoneNumber.class, PhoneType.class),
+        new ArrayList<Class<?>>(timings.keySet()));
+  }
+
+  @Test
+  public void prewarmInParallel() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Wire wire = new Wire(Ext_simple_message.class);
+      Map<Class<?>, Long> timings = wire.prewarm(executor, ExternalMessage.class, Person.class);
+      assertEquals(new HashSet<Class<?>>(Arrays.<Class<?>>asList(ExternalMessage.class,
+          SimpleMessage.NestedMessage.class, SimpleMessage.NestedEnum.class, Person.class,
+          PhoneNumber.class, PhoneType.class)), timings.keySet());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void extensionToString() {
     assertEquals("[REPEATED INT32 squareup.protos.simple.fooext = 125]",
@@ -261,4 +419,118 @@ public class WireTest {
     assertNotNull(emptyListParsed.repeated_double);
     assertEquals(0, emptyListParsed.repeated_double.size());
   }
+
+  @Test
+  public void testGatheringWrite() throws IOException {
+    byte[] payload = new byte[5000];
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte) i;
+    }
+    OneBytesField msg = new OneBytesField.Builder().opt_bytes(ByteString.of(payload)).build();
+    byte[] expected = msg.toByteArray();
+
+    // The tag and length are copied; the payload is referenced
+    ByteBuffer[] buffers = msg.toByteBuffers();
+    assertEquals(2, buffers.length);
+    assertEquals(3, buffers[0].remaining());
+    assertEquals(payload.length, buffers[1].remaining());
+    assertTrue(buffers[1].isReadOnly());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (ByteBuffer buffer : buffers) {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      out.write(bytes);
+    }
+    assertEquals(ByteString.of(expected), ByteString.of(out.toByteArray()));
+
+    // Small messages are gathered into a single segment
+    Person person = new Person.Builder().name("Omar").id(1234).build();
+    buffers = person.toByteBuffers();
+    assertEquals(1, buffers.length);
+    assertEquals(person.getSerializedSize(), buffers[0].remaining());
+
+    // Copied runs that outgrow a segment continue in the next one
+    StringBuilder name = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      name.append((char) ('a' + i % 26));
+    }
+    person = new Person.Builder().name(name.toString()).id(1234).build();
+    out.reset();
+    for (ByteBuffer buffer : person.toByteBuffers()) {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      out.write(bytes);
+    }
+    assertEquals(ByteString.of(person.toByteArray()), ByteString.of(out.toByteArray()));
+
+    File file = File.createTempFile("wire", "gather");
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        FileChannel channel = raf.getChannel();
+        msg.writeTo(channel);
+        assertEquals(expected.length, channel.size());
+        byte[] written = new byte[expected.length];
+        raf.seek(0);
+        raf.readFully(written);
+        assertEquals(ByteString.of(expected), ByteString.of(written));
+      } finally {
+        raf.close();
+      }
+    } finally {
+      file.delete();
+    }
+
+    // A non-blocking channel may accept nothing, so it is rejected rather than spun on.
+    Pipe pipe = Pipe.open();
+    try {
+      pipe.sink().configureBlocking(false);
+      try {
+        msg.writeTo(pipe.sink());
+        fail();
+      } catch (IllegalBlockingModeException e) {
+      }
+    } finally {
+      pipe.sink().close();
+      pipe.source().close();
+    }
+  }
+
+  @Test
+  public void testParseRetainingBytes() throws IOException {
+    // Encode fields out of tag order, which re-encoding would not preserve.
+    byte[] phone = {
+        0x10, 0x02, // type: WORK
+        0x0a, 0x03, '5', '5', '5', // number: "555"
+    };
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(0xff);
+    out.write(new byte[] { 0x10, (byte) 0xd2, 0x09 }); // id: 1234
+    out.write(new byte[] { 0x0a, 0x04, 'O', 'm', 'a', 'r' }); // name: "Omar"
+    out.write(new byte[] { 0x22, (byte) phone.length }); // phone
+    out.write(phone);
+    byte[] data = out.toByteArray();
+    byte[] expected = Arrays.copyOfRange(data, 1, data.length);
+
+    Wire wire = new Wire();
+    Person person = wire.parseFromRetainingBytes(data, 1, data.length - 1, Person.class);
+    assertEquals(wire.parseFrom(expected, Person.class), person);
+    assertEquals(ByteString.of(expected), ByteString.of(person.toByteArray()));
+    assertEquals(expected.length, person.getSerializedSize());
+    byte[] written = new byte[expected.length];
+    person.writeTo(written);
+    assertEquals(ByteString.of(expected), ByteString.of(written));
+
+    // A rebuilt message is encoded again, but its unchanged nested messages are copied.
+    Person renamed = new Person.Builder(person).name("Omar").build();
+    assertEquals(person, renamed);
+    byte[] renamedBytes = renamed.toByteArray();
+    assertTrue(!Arrays.equals(expected, renamedBytes));
+    assertEquals(ByteString.of(phone),
+        ByteString.of(renamedBytes, renamedBytes.length - phone.length, phone.length));
+
+    // Plain parsing does not retain bytes.
+    Person parsed = wire.parseFrom(expected, Person.class);
+    assertTrue(!Arrays.equals(expected, parsed.toByteArray()));
+  }
 }
@@ -19,12 +19,15 @@ import com.squareup.wire.ByteString;
 import com.squareup.wire.Extension;
 import com.squareup.wire.Message;
 import com.squareup.wire.protos.alltypes.AllTypes;
+import com.squareup.wire.protos.alltypes.AllTypesView;
 import com.squareup.wire.protos.alltypes.Ext_all_types;
 import com.squareup.wire.Wire;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.Test;
 
@@ -346,6 +349,61 @@ public class TestAllTypes {
     assertTrue(extensions.contains(Ext_all_types.ext_pack_bool));
   }
 
+  @Test
+  public void testReadView() throws IOException {
+    AllTypes message = getBuilder()
+        .rep_int32(Arrays.asList(1, 300, -5))
+        .pack_sint64(Arrays.asList(-1L, Long.MAX_VALUE, Long.MIN_VALUE))
+        .pack_double(Arrays.asList(0.5, -2.0))
+        .build();
+    byte[] data = message.toByteArray();
+    AllTypesView view = new AllTypesView(data);
+
+    assertEquals(message.opt_int32, (Integer) view.opt_int32());
+    assertEquals(message.opt_sint64, (Long) view.opt_sint64());
+    assertEquals(message.opt_fixed64, (Long) view.opt_fixed64());
+    assertEquals(message.opt_float, (Float) view.opt_float());
+    assertEquals(message.opt_double, (Double) view.opt_double());
+    assertEquals(message.req_bool, view.req_bool());
+    assertEquals(message.req_string, view.req_string());
+    assertEquals(message.req_bytes, view.req_bytes());
+    assertEquals(message.req_nested_enum, view.req_nested_enum());
+    assertEquals(message.req_nested_message.a, (Integer) view.req_nested_message().a());
+
+    // Unpacked and packed repeated fields.
+    assertEquals(3, view.rep_int32_count());
+    assertEquals(300, view.rep_int32(1));
+    assertEquals(-5, view.rep_int32(2));
+    assertEquals(1, view.rep_int32(0));
+    assertEquals(3, view.pack_sint64_count());
+    assertEquals(Long.MIN_VALUE, view.pack_sint64(2));
+    assertEquals(Long.MAX_VALUE, view.pack_sint64(1));
+    assertEquals(2, view.pack_double_count());
+    assertEquals(-2.0, view.pack_double(1), 0.0);
+    assertEquals(2, view.pack_nested_enum_count());
+    assertEquals(AllTypes.NestedEnum.A, view.pack_nested_enum(0));
+    assertEquals(2, view.rep_nested_message_count());
+    assertEquals(999, view.rep_nested_message(1).a());
+
+    // Absent fields report their defaults.
+    assertFalse(view.has_default_string());
+    assertEquals(AllTypes.DEFAULT_DEFAULT_STRING, view.default_string());
+    assertEquals(AllTypes.DEFAULT_DEFAULT_NESTED_ENUM, view.default_nested_enum());
+    assertTrue(view.has_opt_string());
+
+    // A view over a buffer at a nonzero position.
+    byte[] padded = new byte[data.length + 3];
+    System.arraycopy(data, 0, padded, 3, data.length);
+    ByteBuffer buffer = ByteBuffer.wrap(padded);
+    buffer.position(3);
+    assertEquals(message.req_string, new AllTypesView(buffer).req_string());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testReadViewOutOfBounds() throws IOException {
+    new AllTypesView(allTypes.toByteArray()).pack_int32(2);
+  }
+
   @Test
   public void testReadWithOffset() throws IOException {
     byte[] data = new byte[TestAllTypesData.expectedOutput.length + 100];
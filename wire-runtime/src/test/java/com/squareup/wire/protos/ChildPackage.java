@@ -51,6 +51,13 @@ public final class ChildPackage extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.inner_foreign_enum = null;
+      return this;
+    }
+
     @Override
     public ChildPackage build() {
       return new ChildPackage(this);
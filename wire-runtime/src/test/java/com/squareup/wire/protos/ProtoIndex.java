@@ -0,0 +1,72 @@
+// Code generated by Wire protocol buffer compiler, do not edit.
+package com.squareup.wire.protos;
+
+import com.squareup.wire.TypeIndex;
+
+import static com.squareup.wire.Message.Datatype.DOUBLE;
+import static com.squareup.wire.Message.Datatype.ENUM;
+import static com.squareup.wire.Message.Datatype.FLOAT;
+import static com.squareup.wire.Message.Datatype.INT32;
+import static com.squareup.wire.Message.Datatype.MESSAGE;
+import static com.squareup.wire.Message.Datatype.STRING;
+import static com.squareup.wire.Message.Label.OPTIONAL;
+import static com.squareup.wire.Message.Label.REPEATED;
+import static com.squareup.wire.Message.Label.REQUIRED;
+
+public final class ProtoIndex {
+
+  public static final TypeIndex TYPES;
+
+  static {
+    TypeIndex.Builder builder = new TypeIndex.Builder();
+    addTypes0(builder);
+    addTypes1(builder);
+    addTypes2(builder);
+    TYPES = builder.build();
+  }
+
+  // Source file: ../wire-runtime/src/test/proto/simple_message.proto
+  private static void addTypes0(TypeIndex.Builder builder) {
+    builder.message(com.squareup.wire.protos.simple.SimpleMessage.class,
+        com.squareup.wire.protos.simple.SimpleMessage.Builder.class);
+    builder.field(1, "optional_int32", INT32, OPTIONAL);
+    builder.field(2, "optional_nested_msg", MESSAGE, OPTIONAL,
+        com.squareup.wire.protos.simple.SimpleMessage.NestedMessage.class);
+    builder.field(3, "optional_external_msg", MESSAGE, OPTIONAL,
+        com.squareup.wire.protos.simple.ExternalMessage.class);
+    builder.field(4, "default_nested_enum", ENUM, OPTIONAL,
+        com.squareup.wire.protos.simple.SimpleMessage.NestedEnum.class);
+    builder.field(5, "required_int32", INT32, REQUIRED);
+    builder.field(6, "repeated_double", DOUBLE, REPEATED);
+    builder.field(7, "default_foreign_enum", ENUM, OPTIONAL,
+        com.squareup.wire.protos.foreign.ForeignEnum.class);
+    builder.field(8, "no_default_foreign_enum", ENUM, OPTIONAL,
+        com.squareup.wire.protos.foreign.ForeignEnum.class);
+    builder.field(9, "_package", STRING, OPTIONAL);
+    builder.field(10, "result", STRING, OPTIONAL);
+    builder.field(11, "other", STRING, OPTIONAL);
+    builder.field(12, "o", STRING, OPTIONAL);
+    builder.message(com.squareup.wire.protos.simple.SimpleMessage.NestedMessage.class,
+        com.squareup.wire.protos.simple.SimpleMessage.NestedMessage.Builder.class);
+    builder.field(1, "bb", INT32, OPTIONAL);
+    builder.enumType(com.squareup.wire.protos.simple.SimpleMessage.NestedEnum.class, 1, 2, 3);
+  }
+
+  // Source file: ../wire-runtime/src/test/proto/external_message.proto
+  private static void addTypes1(TypeIndex.Builder builder) {
+    builder.message(com.squareup.wire.protos.simple.ExternalMessage.class,
+        com.squareup.wire.protos.simple.ExternalMessage.Builder.class);
+    builder.field(1, "f", FLOAT, OPTIONAL);
+  }
+
+  // Source file: ../wire-runtime/src/test/proto/foreign.proto
+  private static void addTypes2(TypeIndex.Builder builder) {
+    builder.enumType(com.squareup.wire.protos.foreign.ForeignEnum.class, 0, 1);
+    builder.message(com.squareup.wire.protos.foreign.ForeignMessage.class,
+        com.squareup.wire.protos.foreign.ForeignMessage.Builder.class);
+    builder.field(1, "i", INT32, OPTIONAL);
+  }
+
+  private ProtoIndex() {
+  }
+}
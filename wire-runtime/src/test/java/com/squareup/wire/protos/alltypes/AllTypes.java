@@ -1205,9 +1205,114 @@ public final class AllTypes extends ExtendableMessage<AllTypes> {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.opt_int32 = null;
+      this.opt_uint32 = null;
+      this.opt_sint32 = null;
+      this.opt_fixed32 = null;
+      this.opt_sfixed32 = null;
+      this.opt_int64 = null;
+      this.opt_uint64 = null;
+      this.opt_sint64 = null;
+      this.opt_fixed64 = null;
+      this.opt_sfixed64 = null;
+      this.opt_bool = null;
+      this.opt_float = null;
+      this.opt_double = null;
+      this.opt_string = null;
+      this.opt_bytes = null;
+      this.opt_nested_enum = null;
+      this.opt_nested_message = null;
+      this.req_int32 = null;
+      this.req_uint32 = null;
+      this.req_sint32 = null;
+      this.req_fixed32 = null;
+      this.req_sfixed32 = null;
+      this.req_int64 = null;
+      this.req_uint64 = null;
+      this.req_sint64 = null;
+      this.req_fixed64 = null;
+      this.req_sfixed64 = null;
+      this.req_bool = null;
+      this.req_float = null;
+      this.req_double = null;
+      this.req_string = null;
+      this.req_bytes = null;
+      this.req_nested_enum = null;
+      this.req_nested_message = null;
+      this.rep_int32 = null;
+      this.rep_uint32 = null;
+      this.rep_sint32 = null;
+      this.rep_fixed32 = null;
+      this.rep_sfixed32 = null;
+      this.rep_int64 = null;
+      this.rep_uint64 = null;
+      this.rep_sint64 = null;
+      this.rep_fixed64 = null;
+      this.rep_sfixed64 = null;
+      this.rep_bool = null;
+      this.rep_float = null;
+      this.rep_double = null;
+      this.rep_string = null;
+      this.rep_bytes = null;
+      this.rep_nested_enum = null;
+      this.rep_nested_message = null;
+      this.pack_int32 = null;
+      this.pack_uint32 = null;
+      this.pack_sint32 = null;
+      this.pack_fixed32 = null;
+      this.pack_sfixed32 = null;
+      this.pack_int64 = null;
+      this.pack_uint64 = null;
+      this.pack_sint64 = null;
+      this.pack_fixed64 = null;
+      this.pack_sfixed64 = null;
+      this.pack_bool = null;
+      this.pack_float = null;
+      this.pack_double = null;
+      this.pack_nested_enum = null;
+      this.default_int32 = null;
+      this.default_uint32 = null;
+      this.default_sint32 = null;
+      this.default_fixed32 = null;
+      this.default_sfixed32 = null;
+      this.default_int64 = null;
+      this.default_uint64 = null;
+      this.default_sint64 = null;
+      this.default_fixed64 = null;
+      this.default_sfixed64 = null;
+      this.default_bool = null;
+      this.default_float = null;
+      this.default_double = null;
+      this.default_string = null;
+      this.default_bytes = null;
+      this.default_nested_enum = null;
+      return this;
+    }
+
     @Override
     public AllTypes build() {
-      checkRequiredFields();
+      if (req_bool == null || req_bytes == null || req_double == null || req_fixed32 == null || req_fixed64 == null || req_float == null || req_int32 == null || req_int64 == null || req_nested_enum == null || req_nested_message == null || req_sfixed32 == null || req_sfixed64 == null || req_sint32 == null || req_sint64 == null || req_string == null || req_uint32 == null || req_uint64 == null) {
+        throw missingRequiredFields(req_bool, "req_bool",
+            req_bytes, "req_bytes",
+            req_double, "req_double",
+            req_fixed32, "req_fixed32",
+            req_fixed64, "req_fixed64",
+            req_float, "req_float",
+            req_int32, "req_int32",
+            req_int64, "req_int64",
+            req_nested_enum, "req_nested_enum",
+            req_nested_message, "req_nested_message",
+            req_sfixed32, "req_sfixed32",
+            req_sfixed64, "req_sfixed64",
+            req_sint32, "req_sint32",
+            req_sint64, "req_sint64",
+            req_string, "req_string",
+            req_uint32, "req_uint32",
+            req_uint64, "req_uint64");
+      }
       return new AllTypes(this);
     }
   }
@@ -1260,6 +1365,13 @@ public final class AllTypes extends ExtendableMessage<AllTypes> {
         return this;
       }
 
+      @Override
+      public Builder clear() {
+        super.clear();
+        this.a = null;
+        return this;
+      }
+
       @Override
       public NestedMessage build() {
         return new NestedMessage(this);
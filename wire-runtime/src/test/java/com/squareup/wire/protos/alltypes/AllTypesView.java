@@ -0,0 +1,850 @@
+// Code generated by Wire protocol buffer compiler, do not edit.
+// Source file: ../wire-runtime/src/test/proto/all_types.proto
+package com.squareup.wire.protos.alltypes;
+
+import com.squareup.wire.ByteString;
+import com.squareup.wire.MessageView;
+import java.nio.ByteBuffer;
+
+import static com.squareup.wire.Message.Datatype.BOOL;
+import static com.squareup.wire.Message.Datatype.BYTES;
+import static com.squareup.wire.Message.Datatype.DOUBLE;
+import static com.squareup.wire.Message.Datatype.ENUM;
+import static com.squareup.wire.Message.Datatype.FIXED32;
+import static com.squareup.wire.Message.Datatype.FIXED64;
+import static com.squareup.wire.Message.Datatype.FLOAT;
+import static com.squareup.wire.Message.Datatype.INT32;
+import static com.squareup.wire.Message.Datatype.INT64;
+import static com.squareup.wire.Message.Datatype.MESSAGE;
+import static com.squareup.wire.Message.Datatype.SFIXED32;
+import static com.squareup.wire.Message.Datatype.SFIXED64;
+import static com.squareup.wire.Message.Datatype.SINT32;
+import static com.squareup.wire.Message.Datatype.SINT64;
+import static com.squareup.wire.Message.Datatype.STRING;
+import static com.squareup.wire.Message.Datatype.UINT32;
+import static com.squareup.wire.Message.Datatype.UINT64;
+
+/**
+ * A read-only view of an encoded {@link AllTypes}.
+ */
+public final class AllTypesView extends MessageView {
+
+  public AllTypesView(byte[] data) {
+    super(data, 0, data.length);
+  }
+
+  public AllTypesView(byte[] data, int offset, int count) {
+    super(data, offset, count);
+  }
+
+  public AllTypesView(ByteBuffer buffer) {
+    super(buffer);
+  }
+
+  public boolean has_opt_int32() {
+    return lastOffset(1, INT32) != -1;
+  }
+
+  public int opt_int32() {
+    int offset = lastOffset(1, INT32);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_INT32;
+    return readVarint32(offset);
+  }
+
+  public boolean has_opt_uint32() {
+    return lastOffset(2, UINT32) != -1;
+  }
+
+  public int opt_uint32() {
+    int offset = lastOffset(2, UINT32);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_UINT32;
+    return readVarint32(offset);
+  }
+
+  public boolean has_opt_sint32() {
+    return lastOffset(3, SINT32) != -1;
+  }
+
+  public int opt_sint32() {
+    int offset = lastOffset(3, SINT32);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_SINT32;
+    return readSint32(offset);
+  }
+
+  public boolean has_opt_fixed32() {
+    return lastOffset(4, FIXED32) != -1;
+  }
+
+  public int opt_fixed32() {
+    int offset = lastOffset(4, FIXED32);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_FIXED32;
+    return readFixed32(offset);
+  }
+
+  public boolean has_opt_sfixed32() {
+    return lastOffset(5, SFIXED32) != -1;
+  }
+
+  public int opt_sfixed32() {
+    int offset = lastOffset(5, SFIXED32);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_SFIXED32;
+    return readFixed32(offset);
+  }
+
+  public boolean has_opt_int64() {
+    return lastOffset(6, INT64) != -1;
+  }
+
+  public long opt_int64() {
+    int offset = lastOffset(6, INT64);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_INT64;
+    return readVarint64(offset);
+  }
+
+  public boolean has_opt_uint64() {
+    return lastOffset(7, UINT64) != -1;
+  }
+
+  public long opt_uint64() {
+    int offset = lastOffset(7, UINT64);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_UINT64;
+    return readVarint64(offset);
+  }
+
+  public boolean has_opt_sint64() {
+    return lastOffset(8, SINT64) != -1;
+  }
+
+  public long opt_sint64() {
+    int offset = lastOffset(8, SINT64);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_SINT64;
+    return readSint64(offset);
+  }
+
+  public boolean has_opt_fixed64() {
+    return lastOffset(9, FIXED64) != -1;
+  }
+
+  public long opt_fixed64() {
+    int offset = lastOffset(9, FIXED64);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_FIXED64;
+    return readFixed64(offset);
+  }
+
+  public boolean has_opt_sfixed64() {
+    return lastOffset(10, SFIXED64) != -1;
+  }
+
+  public long opt_sfixed64() {
+    int offset = lastOffset(10, SFIXED64);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_SFIXED64;
+    return readFixed64(offset);
+  }
+
+  public boolean has_opt_bool() {
+    return lastOffset(11, BOOL) != -1;
+  }
+
+  public boolean opt_bool() {
+    int offset = lastOffset(11, BOOL);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_BOOL;
+    return readBool(offset);
+  }
+
+  public boolean has_opt_float() {
+    return lastOffset(12, FLOAT) != -1;
+  }
+
+  public float opt_float() {
+    int offset = lastOffset(12, FLOAT);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_FLOAT;
+    return readFloat(offset);
+  }
+
+  public boolean has_opt_double() {
+    return lastOffset(13, DOUBLE) != -1;
+  }
+
+  public double opt_double() {
+    int offset = lastOffset(13, DOUBLE);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_DOUBLE;
+    return readDouble(offset);
+  }
+
+  public boolean has_opt_string() {
+    return lastOffset(14, STRING) != -1;
+  }
+
+  public String opt_string() {
+    int offset = lastOffset(14, STRING);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_STRING;
+    return readString(offset);
+  }
+
+  public boolean has_opt_bytes() {
+    return lastOffset(15, BYTES) != -1;
+  }
+
+  public ByteString opt_bytes() {
+    int offset = lastOffset(15, BYTES);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_BYTES;
+    return readBytes(offset);
+  }
+
+  public boolean has_opt_nested_enum() {
+    return lastOffset(16, ENUM) != -1;
+  }
+
+  public AllTypes.NestedEnum opt_nested_enum() {
+    int offset = lastOffset(16, ENUM);
+    if (offset == -1) return AllTypes.DEFAULT_OPT_NESTED_ENUM;
+    return readEnum(offset, AllTypes.NestedEnum.class);
+  }
+
+  public boolean has_opt_nested_message() {
+    return lastOffset(17, MESSAGE) != -1;
+  }
+
+  public AllTypesView.NestedMessageView opt_nested_message() {
+    int offset = lastOffset(17, MESSAGE);
+    if (offset == -1) return null;
+    return new AllTypesView.NestedMessageView(array(), contentOffset(offset), readVarint32(offset));
+  }
+
+  public boolean has_req_int32() {
+    return lastOffset(101, INT32) != -1;
+  }
+
+  public int req_int32() {
+    int offset = lastOffset(101, INT32);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_INT32;
+    return readVarint32(offset);
+  }
+
+  public boolean has_req_uint32() {
+    return lastOffset(102, UINT32) != -1;
+  }
+
+  public int req_uint32() {
+    int offset = lastOffset(102, UINT32);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_UINT32;
+    return readVarint32(offset);
+  }
+
+  public boolean has_req_sint32() {
+    return lastOffset(103, SINT32) != -1;
+  }
+
+  public int req_sint32() {
+    int offset = lastOffset(103, SINT32);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_SINT32;
+    return readSint32(offset);
+  }
+
+  public boolean has_req_fixed32() {
+    return lastOffset(104, FIXED32) != -1;
+  }
+
+  public int req_fixed32() {
+    int offset = lastOffset(104, FIXED32);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_FIXED32;
+    return readFixed32(offset);
+  }
+
+  public boolean has_req_sfixed32() {
+    return lastOffset(105, SFIXED32) != -1;
+  }
+
+  public int req_sfixed32() {
+    int offset = lastOffset(105, SFIXED32);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_SFIXED32;
+    return readFixed32(offset);
+  }
+
+  public boolean has_req_int64() {
+    return lastOffset(106, INT64) != -1;
+  }
+
+  public long req_int64() {
+    int offset = lastOffset(106, INT64);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_INT64;
+    return readVarint64(offset);
+  }
+
+  public boolean has_req_uint64() {
+    return lastOffset(107, UINT64) != -1;
+  }
+
+  public long req_uint64() {
+    int offset = lastOffset(107, UINT64);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_UINT64;
+    return readVarint64(offset);
+  }
+
+  public boolean has_req_sint64() {
+    return lastOffset(108, SINT64) != -1;
+  }
+
+  public long req_sint64() {
+    int offset = lastOffset(108, SINT64);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_SINT64;
+    return readSint64(offset);
+  }
+
+  public boolean has_req_fixed64() {
+    return lastOffset(109, FIXED64) != -1;
+  }
+
+  public long req_fixed64() {
+    int offset = lastOffset(109, FIXED64);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_FIXED64;
+    return readFixed64(offset);
+  }
+
+  public boolean has_req_sfixed64() {
+    return lastOffset(110, SFIXED64) != -1;
+  }
+
+  public long req_sfixed64() {
+    int offset = lastOffset(110, SFIXED64);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_SFIXED64;
+    return readFixed64(offset);
+  }
+
+  public boolean has_req_bool() {
+    return lastOffset(111, BOOL) != -1;
+  }
+
+  public boolean req_bool() {
+    int offset = lastOffset(111, BOOL);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_BOOL;
+    return readBool(offset);
+  }
+
+  public boolean has_req_float() {
+    return lastOffset(112, FLOAT) != -1;
+  }
+
+  public float req_float() {
+    int offset = lastOffset(112, FLOAT);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_FLOAT;
+    return readFloat(offset);
+  }
+
+  public boolean has_req_double() {
+    return lastOffset(113, DOUBLE) != -1;
+  }
+
+  public double req_double() {
+    int offset = lastOffset(113, DOUBLE);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_DOUBLE;
+    return readDouble(offset);
+  }
+
+  public boolean has_req_string() {
+    return lastOffset(114, STRING) != -1;
+  }
+
+  public String req_string() {
+    int offset = lastOffset(114, STRING);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_STRING;
+    return readString(offset);
+  }
+
+  public boolean has_req_bytes() {
+    return lastOffset(115, BYTES) != -1;
+  }
+
+  public ByteString req_bytes() {
+    int offset = lastOffset(115, BYTES);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_BYTES;
+    return readBytes(offset);
+  }
+
+  public boolean has_req_nested_enum() {
+    return lastOffset(116, ENUM) != -1;
+  }
+
+  public AllTypes.NestedEnum req_nested_enum() {
+    int offset = lastOffset(116, ENUM);
+    if (offset == -1) return AllTypes.DEFAULT_REQ_NESTED_ENUM;
+    return readEnum(offset, AllTypes.NestedEnum.class);
+  }
+
+  public boolean has_req_nested_message() {
+    return lastOffset(117, MESSAGE) != -1;
+  }
+
+  public AllTypesView.NestedMessageView req_nested_message() {
+    int offset = lastOffset(117, MESSAGE);
+    if (offset == -1) return null;
+    return new AllTypesView.NestedMessageView(array(), contentOffset(offset), readVarint32(offset));
+  }
+
+  public int rep_int32_count() {
+    return count(201, INT32);
+  }
+
+  public int rep_int32(int index) {
+    int offset = offset(201, INT32, index);
+    return readVarint32(offset);
+  }
+
+  public int rep_uint32_count() {
+    return count(202, UINT32);
+  }
+
+  public int rep_uint32(int index) {
+    int offset = offset(202, UINT32, index);
+    return readVarint32(offset);
+  }
+
+  public int rep_sint32_count() {
+    return count(203, SINT32);
+  }
+
+  public int rep_sint32(int index) {
+    int offset = offset(203, SINT32, index);
+    return readSint32(offset);
+  }
+
+  public int rep_fixed32_count() {
+    return count(204, FIXED32);
+  }
+
+  public int rep_fixed32(int index) {
+    int offset = offset(204, FIXED32, index);
+    return readFixed32(offset);
+  }
+
+  public int rep_sfixed32_count() {
+    return count(205, SFIXED32);
+  }
+
+  public int rep_sfixed32(int index) {
+    int offset = offset(205, SFIXED32, index);
+    return readFixed32(offset);
+  }
+
+  public int rep_int64_count() {
+    return count(206, INT64);
+  }
+
+  public long rep_int64(int index) {
+    int offset = offset(206, INT64, index);
+    return readVarint64(offset);
+  }
+
+  public int rep_uint64_count() {
+    return count(207, UINT64);
+  }
+
+  public long rep_uint64(int index) {
+    int offset = offset(207, UINT64, index);
+    return readVarint64(offset);
+  }
+
+  public int rep_sint64_count() {
+    return count(208, SINT64);
+  }
+
+  public long rep_sint64(int index) {
+    int offset = offset(208, SINT64, index);
+    return readSint64(offset);
+  }
+
+  public int rep_fixed64_count() {
+    return count(209, FIXED64);
+  }
+
+  public long rep_fixed64(int index) {
+    int offset = offset(209, FIXED64, index);
+    return readFixed64(offset);
+  }
+
+  public int rep_sfixed64_count() {
+    return count(210, SFIXED64);
+  }
+
+  public long rep_sfixed64(int index) {
+    int offset = offset(210, SFIXED64, index);
+    return readFixed64(offset);
+  }
+
+  public int rep_bool_count() {
+    return count(211, BOOL);
+  }
+
+  public boolean rep_bool(int index) {
+    int offset = offset(211, BOOL, index);
+    return readBool(offset);
+  }
+
+  public int rep_float_count() {
+    return count(212, FLOAT);
+  }
+
+  public float rep_float(int index) {
+    int offset = offset(212, FLOAT, index);
+    return readFloat(offset);
+  }
+
+  public int rep_double_count() {
+    return count(213, DOUBLE);
+  }
+
+  public double rep_double(int index) {
+    int offset = offset(213, DOUBLE, index);
+    return readDouble(offset);
+  }
+
+  public int rep_string_count() {
+    return count(214, STRING);
+  }
+
+  public String rep_string(int index) {
+    int offset = offset(214, STRING, index);
+    return readString(offset);
+  }
+
+  public int rep_bytes_count() {
+    return count(215, BYTES);
+  }
+
+  public ByteString rep_bytes(int index) {
+    int offset = offset(215, BYTES, index);
+    return readBytes(offset);
+  }
+
+  public int rep_nested_enum_count() {
+    return count(216, ENUM);
+  }
+
+  public AllTypes.NestedEnum rep_nested_enum(int index) {
+    int offset = offset(216, ENUM, index);
+    return readEnum(offset, AllTypes.NestedEnum.class);
+  }
+
+  public int rep_nested_message_count() {
+    return count(217, MESSAGE);
+  }
+
+  public AllTypesView.NestedMessageView rep_nested_message(int index) {
+    int offset = offset(217, MESSAGE, index);
+    return new AllTypesView.NestedMessageView(array(), contentOffset(offset), readVarint32(offset));
+  }
+
+  public int pack_int32_count() {
+    return count(301, INT32);
+  }
+
+  public int pack_int32(int index) {
+    int offset = offset(301, INT32, index);
+    return readVarint32(offset);
+  }
+
+  public int pack_uint32_count() {
+    return count(302, UINT32);
+  }
+
+  public int pack_uint32(int index) {
+    int offset = offset(302, UINT32, index);
+    return readVarint32(offset);
+  }
+
+  public int pack_sint32_count() {
+    return count(303, SINT32);
+  }
+
+  public int pack_sint32(int index) {
+    int offset = offset(303, SINT32, index);
+    return readSint32(offset);
+  }
+
+  public int pack_fixed32_count() {
+    return count(304, FIXED32);
+  }
+
+  public int pack_fixed32(int index) {
+    int offset = offset(304, FIXED32, index);
+    return readFixed32(offset);
+  }
+
+  public int pack_sfixed32_count() {
+    return count(305, SFIXED32);
+  }
+
+  public int pack_sfixed32(int index) {
+    int offset = offset(305, SFIXED32, index);
+    return readFixed32(offset);
+  }
+
+  public int pack_int64_count() {
+    return count(306, INT64);
+  }
+
+  public long pack_int64(int index) {
+    int offset = offset(306, INT64, index);
+    return readVarint64(offset);
+  }
+
+  public int pack_uint64_count() {
+    return count(307, UINT64);
+  }
+
+  public long pack_uint64(int index) {
+    int offset = offset(307, UINT64, index);
+    return readVarint64(offset);
+  }
+
+  public int pack_sint64_count() {
+    return count(308, SINT64);
+  }
+
+  public long pack_sint64(int index) {
+    int offset = offset(308, SINT64, index);
+    return readSint64(offset);
+  }
+
+  public int pack_fixed64_count() {
+    return count(309, FIXED64);
+  }
+
+  public long pack_fixed64(int index) {
+    int offset = offset(309, FIXED64, index);
+    return readFixed64(offset);
+  }
+
+  public int pack_sfixed64_count() {
+    return count(310, SFIXED64);
+  }
+
+  public long pack_sfixed64(int index) {
+    int offset = offset(310, SFIXED64, index);
+    return readFixed64(offset);
+  }
+
+  public int pack_bool_count() {
+    return count(311, BOOL);
+  }
+
+  public boolean pack_bool(int index) {
+    int offset = offset(311, BOOL, index);
+    return readBool(offset);
+  }
+
+  public int pack_float_count() {
+    return count(312, FLOAT);
+  }
+
+  public float pack_float(int index) {
+    int offset = offset(312, FLOAT, index);
+    return readFloat(offset);
+  }
+
+  public int pack_double_count() {
+    return count(313, DOUBLE);
+  }
+
+  public double pack_double(int index) {
+    int offset = offset(313, DOUBLE, index);
+    return readDouble(offset);
+  }
+
+  public int pack_nested_enum_count() {
+    return count(316, ENUM);
+  }
+
+  public AllTypes.NestedEnum pack_nested_enum(int index) {
+    int offset = offset(316, ENUM, index);
+    return readEnum(offset, AllTypes.NestedEnum.class);
+  }
+
+  public boolean has_default_int32() {
+    return lastOffset(401, INT32) != -1;
+  }
+
+  public int default_int32() {
+    int offset = lastOffset(401, INT32);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_INT32;
+    return readVarint32(offset);
+  }
+
+  public boolean has_default_uint32() {
+    return lastOffset(402, UINT32) != -1;
+  }
+
+  public int default_uint32() {
+    int offset = lastOffset(402, UINT32);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_UINT32;
+    return readVarint32(offset);
+  }
+
+  public boolean has_default_sint32() {
+    return lastOffset(403, SINT32) != -1;
+  }
+
+  public int default_sint32() {
+    int offset = lastOffset(403, SINT32);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_SINT32;
+    return readSint32(offset);
+  }
+
+  public boolean has_default_fixed32() {
+    return lastOffset(404, FIXED32) != -1;
+  }
+
+  public int default_fixed32() {
+    int offset = lastOffset(404, FIXED32);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_FIXED32;
+    return readFixed32(offset);
+  }
+
+  public boolean has_default_sfixed32() {
+    return lastOffset(405, SFIXED32) != -1;
+  }
+
+  public int default_sfixed32() {
+    int offset = lastOffset(405, SFIXED32);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_SFIXED32;
+    return readFixed32(offset);
+  }
+
+  public boolean has_default_int64() {
+    return lastOffset(406, INT64) != -1;
+  }
+
+  public long default_int64() {
+    int offset = lastOffset(406, INT64);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_INT64;
+    return readVarint64(offset);
+  }
+
+  public boolean has_default_uint64() {
+    return lastOffset(407, UINT64) != -1;
+  }
+
+  public long default_uint64() {
+    int offset = lastOffset(407, UINT64);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_UINT64;
+    return readVarint64(offset);
+  }
+
+  public boolean has_default_sint64() {
+    return lastOffset(408, SINT64) != -1;
+  }
+
+  public long default_sint64() {
+    int offset = lastOffset(408, SINT64);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_SINT64;
+    return readSint64(offset);
+  }
+
+  public boolean has_default_fixed64() {
+    return lastOffset(409, FIXED64) != -1;
+  }
+
+  public long default_fixed64() {
+    int offset = lastOffset(409, FIXED64);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_FIXED64;
+    return readFixed64(offset);
+  }
+
+  public boolean has_default_sfixed64() {
+    return lastOffset(410, SFIXED64) != -1;
+  }
+
+  public long default_sfixed64() {
+    int offset = lastOffset(410, SFIXED64);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_SFIXED64;
+    return readFixed64(offset);
+  }
+
+  public boolean has_default_bool() {
+    return lastOffset(411, BOOL) != -1;
+  }
+
+  public boolean default_bool() {
+    int offset = lastOffset(411, BOOL);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_BOOL;
+    return readBool(offset);
+  }
+
+  public boolean has_default_float() {
+    return lastOffset(412, FLOAT) != -1;
+  }
+
+  public float default_float() {
+    int offset = lastOffset(412, FLOAT);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_FLOAT;
+    return readFloat(offset);
+  }
+
+  public boolean has_default_double() {
+    return lastOffset(413, DOUBLE) != -1;
+  }
+
+  public double default_double() {
+    int offset = lastOffset(413, DOUBLE);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_DOUBLE;
+    return readDouble(offset);
+  }
+
+  public boolean has_default_string() {
+    return lastOffset(414, STRING) != -1;
+  }
+
+  public String default_string() {
+    int offset = lastOffset(414, STRING);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_STRING;
+    return readString(offset);
+  }
+
+  public boolean has_default_bytes() {
+    return lastOffset(415, BYTES) != -1;
+  }
+
+  public ByteString default_bytes() {
+    int offset = lastOffset(415, BYTES);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_BYTES;
+    return readBytes(offset);
+  }
+
+  public boolean has_default_nested_enum() {
+    return lastOffset(416, ENUM) != -1;
+  }
+
+  public AllTypes.NestedEnum default_nested_enum() {
+    int offset = lastOffset(416, ENUM);
+    if (offset == -1) return AllTypes.DEFAULT_DEFAULT_NESTED_ENUM;
+    return readEnum(offset, AllTypes.NestedEnum.class);
+  }
+
+  /**
+   * A read-only view of an encoded {@link AllTypes.NestedMessage}.
+   */
+  public static final class NestedMessageView extends MessageView {
+
+    public NestedMessageView(byte[] data) {
+      super(data, 0, data.length);
+    }
+
+    public NestedMessageView(byte[] data, int offset, int count) {
+      super(data, offset, count);
+    }
+
+    public NestedMessageView(ByteBuffer buffer) {
+      super(buffer);
+    }
+
+    public boolean has_a() {
+      return lastOffset(1, INT32) != -1;
+    }
+
+    public int a() {
+      int offset = lastOffset(1, INT32);
+      if (offset == -1) return AllTypes.NestedMessage.DEFAULT_A;
+      return readVarint32(offset);
+    }
+  }
+}
@@ -21,45 +21,55 @@ import static com.squareup.wire.Message.Label.REPEATED;
 
 public final class FooBar extends ExtendableMessage<FooBar> {
 
-  public static final FieldOptions FIELD_OPTIONS_FOO = new FieldOptions.Builder()
-      .setExtension(Ext_custom_options.my_field_option_one, 17)
-      .build();
-  public static final FieldOptions FIELD_OPTIONS_BAR = new FieldOptions.Builder()
-      .setExtension(Ext_custom_options.my_field_option_two, 33.5F)
-      .build();
-  public static final FieldOptions FIELD_OPTIONS_BAZ = new FieldOptions.Builder()
-      .setExtension(Ext_custom_options.my_field_option_three, FooBarBazEnum.BAR)
-      .build();
-  public static final FieldOptions FIELD_OPTIONS_QUX = new FieldOptions.Builder()
-      .setExtension(Ext_custom_options.my_field_option_one, 18)
-      .setExtension(Ext_custom_options.my_field_option_two, 34.5F)
-      .build();
-  public static final FieldOptions FIELD_OPTIONS_FRED = new FieldOptions.Builder()
-      .setExtension(Ext_custom_options.my_field_option_four, new FooBar.Builder()
-          .foo(11)
-          .bar("22")
-          .baz(new Nested.Builder()
-              .value(FooBarBazEnum.BAR)
-              .build())
-          .fred(asList(
-              444.0F,
-              555.0F))
-          .nested(asList(new FooBar.Builder()
-              .foo(33)
-              .fred(asList(
-                  100.0F,
-                  200.0F))
-              .build()))
-          .build())
-      .setExtension(Ext_custom_options.my_field_option_two, 99.9F)
-      .build();
-  public static final FieldOptions FIELD_OPTIONS_DAISY = new FieldOptions.Builder()
-      .setExtension(Ext_custom_options.my_field_option_four, new FooBar.Builder()
-          .baz(new Nested.Builder()
-              .value(FooBarBazEnum.FOO)
-              .build())
-          .build())
-      .build();
+  /**
+   * Options of this message and its fields, built when first used rather than when this
+   * message class is initialized.
+   */
+  public static final class Options {
+
+    public static final FieldOptions FIELD_OPTIONS_FOO = new FieldOptions.Builder()
+        .setExtension(Ext_custom_options.my_field_option_one, 17)
+        .build();
+    public static final FieldOptions FIELD_OPTIONS_BAR = new FieldOptions.Builder()
+        .setExtension(Ext_custom_options.my_field_option_two, 33.5F)
+        .build();
+    public static final FieldOptions FIELD_OPTIONS_BAZ = new FieldOptions.Builder()
+        .setExtension(Ext_custom_options.my_field_option_three, FooBarBazEnum.BAR)
+        .build();
+    public static final FieldOptions FIELD_OPTIONS_QUX = new FieldOptions.Builder()
+        .setExtension(Ext_custom_options.my_field_option_one, 18)
+        .setExtension(Ext_custom_options.my_field_option_two, 34.5F)
+        .build();
+    public static final FieldOptions FIELD_OPTIONS_FRED = new FieldOptions.Builder()
+        .setExtension(Ext_custom_options.my_field_option_four, new FooBar.Builder()
+            .foo(11)
+            .bar("22")
+            .baz(new Nested.Builder()
+                .value(FooBarBazEnum.BAR)
+                .build())
+            .fred(asList(
+                444.0F,
+                555.0F))
+            .nested(asList(new FooBar.Builder()
+                .foo(33)
+                .fred(asList(
+                    100.0F,
+                    200.0F))
+                .build()))
+            .build())
+        .setExtension(Ext_custom_options.my_field_option_two, 99.9F)
+        .build();
+    public static final FieldOptions FIELD_OPTIONS_DAISY = new FieldOptions.Builder()
+        .setExtension(Ext_custom_options.my_field_option_four, new FooBar.Builder()
+            .baz(new Nested.Builder()
+                .value(FooBarBazEnum.FOO)
+                .build())
+            .build())
+        .build();
+
+    private Options() {
+    }
+  }
 
   public static final Integer DEFAULT_FOO = 0;
   public static final String DEFAULT_BAR = "";
@@ -198,6 +208,19 @@ public final class FooBar extends ExtendableMessage<FooBar> {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.foo = null;
+      this.bar = null;
+      this.baz = null;
+      this.qux = null;
+      this.fred = null;
+      this.daisy = null;
+      this.nested = null;
+      return this;
+    }
+
     @Override
     public FooBar build() {
       return new FooBar(this);
@@ -247,6 +270,13 @@ public final class FooBar extends ExtendableMessage<FooBar> {
         return this;
       }
 
+      @Override
+      public Builder clear() {
+        super.clear();
+        this.value = null;
+        return this;
+      }
+
       @Override
       public Nested build() {
         return new Nested(this);
@@ -0,0 +1,157 @@
+// Code generated by Wire protocol buffer compiler, do not edit.
+// Source file: ../wire-runtime/src/test/proto/custom_options.proto
+package com.squareup.wire.protos.custom_options;
+
+import com.google.protobuf.FieldOptions;
+import com.google.protobuf.MessageOptions;
+import com.squareup.wire.Message;
+import com.squareup.wire.ProtoField;
+
+import static com.squareup.wire.Message.Datatype.INT32;
+
+/**
+ * The class that holds this message's options can't be named Options.
+ */
+public final class MessageWithNestedOptions extends Message {
+
+  /**
+   * Options of this message and its fields, built when first used rather than when this
+   * message class is initialized.
+   */
+  public static final class Options_ {
+
+    public static final MessageOptions MESSAGE_OPTIONS = new MessageOptions.Builder()
+        .setExtension(Ext_custom_options.my_message_option_two, 1.5F)
+        .build();
+
+    public static final FieldOptions FIELD_OPTIONS_OPTIONS = new FieldOptions.Builder()
+        .setExtension(Ext_custom_options.my_field_option_one, 2)
+        .build();
+
+    private Options_() {
+    }
+  }
+
+  @ProtoField(tag = 1)
+  public final Options options;
+
+  private MessageWithNestedOptions(Builder builder) {
+    super(builder);
+    this.options = builder.options;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) return true;
+    if (!(other instanceof MessageWithNestedOptions)) return false;
+    return equals(options, ((MessageWithNestedOptions) other).options);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = hashCode;
+    return result != 0 ? result : (hashCode = options != null ? options.hashCode() : 0);
+  }
+
+  public static final class Builder extends Message.Builder<MessageWithNestedOptions> {
+
+    public Options options;
+
+    public Builder() {
+    }
+
+    public Builder(MessageWithNestedOptions message) {
+      super(message);
+      if (message == null) return;
+      this.options = message.options;
+    }
+
+    public Builder options(Options options) {
+      this.options = options;
+      return this;
+    }
+
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.options = null;
+      return this;
+    }
+
+    @Override
+    public MessageWithNestedOptions build() {
+      return new MessageWithNestedOptions(this);
+    }
+  }
+
+  public static final class Options extends Message {
+
+    /**
+     * Options of this message and its fields, built when first used rather than when this
+     * message class is initialized.
+     */
+    public static final class Options_ {
+
+      public static final MessageOptions MESSAGE_OPTIONS = new MessageOptions.Builder()
+        .setExtension(Ext_custom_options.my_message_option_two, 1.5F)
+        .build();
+
+      private Options_() {
+      }
+    }
+
+    public static final Integer DEFAULT_VALUE = 0;
+
+    @ProtoField(tag = 1, type = INT32)
+    public final Integer value;
+
+    private Options(Builder builder) {
+      super(builder);
+      this.value = builder.value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (other == this) return true;
+      if (!(other instanceof Options)) return false;
+      return equals(value, ((Options) other).value);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = hashCode;
+      return result != 0 ? result : (hashCode = value != null ? value.hashCode() : 0);
+    }
+
+    public static final class Builder extends Message.Builder<Options> {
+
+      public Integer value;
+
+      public Builder() {
+      }
+
+      public Builder(Options message) {
+        super(message);
+        if (message == null) return;
+        this.value = message.value;
+      }
+
+      public Builder value(Integer value) {
+        this.value = value;
+        return this;
+      }
+
+      @Override
+      public Builder clear() {
+        super.clear();
+        this.value = null;
+        return this;
+      }
+
+      @Override
+      public Options build() {
+        return new Options(this);
+      }
+    }
+  }
+}
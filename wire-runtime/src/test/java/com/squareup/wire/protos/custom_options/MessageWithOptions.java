@@ -9,60 +9,70 @@ import com.squareup.wire.protos.foreign.ForeignMessage;
 
 public final class MessageWithOptions extends Message {
 
-  public static final MessageOptions MESSAGE_OPTIONS = new MessageOptions.Builder()
-      .setExtension(Ext_custom_options.my_message_option_one, new FooBar.Builder()
-          .foo(1234)
-          .bar("5678")
-          .baz(new FooBar.Nested.Builder()
-              .value(FooBar.FooBarBazEnum.BAZ)
-              .build())
-          .qux(-1L)
-          .fred(asList(
-              123.0F,
-              321.0F))
-          .daisy(456.0D)
-          .build())
-      .setExtension(Ext_custom_options.my_message_option_two, 91011.0F)
-      .setExtension(Ext_custom_options.my_message_option_three, new FooBar.Builder()
-          .foo(11)
-          .bar("22")
-          .baz(new FooBar.Nested.Builder()
-              .value(FooBar.FooBarBazEnum.BAR)
-              .build())
-          .fred(asList(
-              444.0F,
-              555.0F))
-          .nested(asList(new FooBar.Builder()
-              .foo(33)
-              .fred(asList(
-                  100.0F,
-                  200.0F))
-              .build()))
-          .build())
-      .setExtension(Ext_custom_options.my_message_option_four, FooBar.FooBarBazEnum.FOO)
-      .setExtension(Ext_foreign.foreign_message_option, new ForeignMessage.Builder()
-          .i(9876)
-          .build())
-      .setExtension(Ext_custom_options.my_message_option_five, new FooBar.Builder()
-          .setExtension(Ext_custom_options.ext, FooBar.FooBarBazEnum.BAZ)
-          .setExtension(Ext_custom_options.rep, asList(
-              FooBar.FooBarBazEnum.FOO,
-              FooBar.FooBarBazEnum.BAZ))
-          .build())
-      .setExtension(Ext_custom_options.my_message_option_six, new FooBar.Builder()
-          .setExtension(Ext_custom_options.rep, asList(
-              FooBar.FooBarBazEnum.FOO,
-              FooBar.FooBarBazEnum.BAR))
-          .nested(asList(
-              new FooBar.Builder()
-                  .foo(44)
-                  .setExtension(Ext_custom_options.ext, FooBar.FooBarBazEnum.BAR)
-                  .build(),
-              new FooBar.Builder()
-                  .foo(55)
-                  .build()))
-          .build())
-      .build();
+  /**
+   * Options of this message and its fields, built when first used rather than when this
+   * message class is initialized.
+   */
+  public static final class Options {
+
+    public static final MessageOptions MESSAGE_OPTIONS = new MessageOptions.Builder()
+        .setExtension(Ext_custom_options.my_message_option_one, new FooBar.Builder()
+            .foo(1234)
+            .bar("5678")
+            .baz(new FooBar.Nested.Builder()
+                .value(FooBar.FooBarBazEnum.BAZ)
+                .build())
+            .qux(-1L)
+            .fred(asList(
+                123.0F,
+                321.0F))
+            .daisy(456.0D)
+            .build())
+        .setExtension(Ext_custom_options.my_message_option_two, 91011.0F)
+        .setExtension(Ext_custom_options.my_message_option_three, new FooBar.Builder()
+            .foo(11)
+            .bar("22")
+            .baz(new FooBar.Nested.Builder()
+                .value(FooBar.FooBarBazEnum.BAR)
+                .build())
+            .fred(asList(
+                444.0F,
+                555.0F))
+            .nested(asList(new FooBar.Builder()
+                .foo(33)
+                .fred(asList(
+                    100.0F,
+                    200.0F))
+                .build()))
+            .build())
+        .setExtension(Ext_custom_options.my_message_option_four, FooBar.FooBarBazEnum.FOO)
+        .setExtension(Ext_foreign.foreign_message_option, new ForeignMessage.Builder()
+            .i(9876)
+            .build())
+        .setExtension(Ext_custom_options.my_message_option_five, new FooBar.Builder()
+            .setExtension(Ext_custom_options.ext, FooBar.FooBarBazEnum.BAZ)
+            .setExtension(Ext_custom_options.rep, asList(
+                FooBar.FooBarBazEnum.FOO,
+                FooBar.FooBarBazEnum.BAZ))
+            .build())
+        .setExtension(Ext_custom_options.my_message_option_six, new FooBar.Builder()
+            .setExtension(Ext_custom_options.rep, asList(
+                FooBar.FooBarBazEnum.FOO,
+                FooBar.FooBarBazEnum.BAR))
+            .nested(asList(
+                new FooBar.Builder()
+                    .foo(44)
+                    .setExtension(Ext_custom_options.ext, FooBar.FooBarBazEnum.BAR)
+                    .build(),
+                new FooBar.Builder()
+                    .foo(55)
+                    .build()))
+            .build())
+        .build();
+
+    private Options() {
+    }
+  }
 
   private MessageWithOptions(Builder builder) {
     super(builder);
@@ -87,6 +97,12 @@ public final class MessageWithOptions extends Message {
       super(message);
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      return this;
+    }
+
     @Override
     public MessageWithOptions build() {
       return new MessageWithOptions(this);
@@ -29,6 +29,12 @@ public final class NoFields extends Message {
       super(message);
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      return this;
+    }
+
     @Override
     public NoFields build() {
       return new NoFields(this);
@@ -51,6 +51,13 @@ public final class OneBytesField extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.opt_bytes = null;
+      return this;
+    }
+
     @Override
     public OneBytesField build() {
       return new OneBytesField(this);
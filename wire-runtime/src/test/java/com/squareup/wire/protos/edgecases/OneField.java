@@ -50,6 +50,13 @@ public final class OneField extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.opt_int32 = null;
+      return this;
+    }
+
     @Override
     public OneField build() {
       return new OneField(this);
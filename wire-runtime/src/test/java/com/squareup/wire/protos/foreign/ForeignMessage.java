@@ -64,6 +64,13 @@ public final class ForeignMessage extends ExtendableMessage<ForeignMessage> {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.i = null;
+      return this;
+    }
+
     @Override
     public ForeignMessage build() {
       return new ForeignMessage(this);
@@ -0,0 +1,86 @@
+// Code generated by Wire protocol buffer compiler, do not edit.
+// Source file: ../wire-runtime/src/test/proto/lazy.proto
+package com.squareup.wire.protos.lazy;
+
+import com.squareup.wire.LazyMessage;
+import com.squareup.wire.Message;
+import com.squareup.wire.ProtoField;
+
+import static com.squareup.wire.Message.Label.REQUIRED;
+
+public final class Envelope extends Message {
+
+  @ProtoField(tag = 1, label = REQUIRED)
+  public final Header header;
+
+  @ProtoField(tag = 2)
+  public final LazyMessage<Payload> payload;
+
+  private Envelope(Builder builder) {
+    super(builder);
+    this.header = builder.header;
+    this.payload = builder.payload;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) return true;
+    if (!(other instanceof Envelope)) return false;
+    Envelope o = (Envelope) other;
+    return equals(header, o.header)
+        && equals(payload, o.payload);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = hashCode;
+    if (result == 0) {
+      result = header != null ? header.hashCode() : 0;
+      result = result * 37 + (payload != null ? payload.hashCode() : 0);
+      hashCode = result;
+    }
+    return result;
+  }
+
+  public static final class Builder extends Message.Builder<Envelope> {
+
+    public Header header;
+    public LazyMessage<Payload> payload;
+
+    public Builder() {
+    }
+
+    public Builder(Envelope message) {
+      super(message);
+      if (message == null) return;
+      this.header = message.header;
+      this.payload = message.payload;
+    }
+
+    public Builder header(Header header) {
+      this.header = header;
+      return this;
+    }
+
+    public Builder payload(LazyMessage<Payload> payload) {
+      this.payload = payload;
+      return this;
+    }
+
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.header = null;
+      this.payload = null;
+      return this;
+    }
+
+    @Override
+    public Envelope build() {
+      if (header == null) {
+        throw missingRequiredFields(header, "header");
+      }
+      return new Envelope(this);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+// Code generated by Wire protocol buffer compiler, do not edit.
+// Source file: ../wire-runtime/src/test/proto/lazy.proto
+package com.squareup.wire.protos.lazy;
+
+import com.squareup.wire.Message;
+import com.squareup.wire.ProtoField;
+
+import static com.squareup.wire.Message.Datatype.STRING;
+
+public final class Header extends Message {
+
+  public static final String DEFAULT_ID = "";
+
+  @ProtoField(tag = 1, type = STRING)
+  public final String id;
+
+  private Header(Builder builder) {
+    super(builder);
+    this.id = builder.id;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) return true;
+    if (!(other instanceof Header)) return false;
+    return equals(id, ((Header) other).id);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = hashCode;
+    return result != 0 ? result : (hashCode = id != null ? id.hashCode() : 0);
+  }
+
+  public static final class Builder extends Message.Builder<Header> {
+
+    public String id;
+
+    public Builder() {
+    }
+
+    public Builder(Header message) {
+      super(message);
+      if (message == null) return;
+      this.id = message.id;
+    }
+
+    public Builder id(String id) {
+      this.id = id;
+      return this;
+    }
+
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.id = null;
+      return this;
+    }
+
+    @Override
+    public Header build() {
+      return new Header(this);
+    }
+  }
+}
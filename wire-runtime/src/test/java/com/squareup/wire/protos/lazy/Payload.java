@@ -0,0 +1,87 @@
+// Code generated by Wire protocol buffer compiler, do not edit.
+// Source file: ../wire-runtime/src/test/proto/lazy.proto
+package com.squareup.wire.protos.lazy;
+
+import com.squareup.wire.Message;
+import com.squareup.wire.ProtoField;
+import java.util.Collections;
+import java.util.List;
+
+import static com.squareup.wire.Message.Datatype.STRING;
+import static com.squareup.wire.Message.Label.REPEATED;
+
+public final class Payload extends Message {
+
+  public static final List<String> DEFAULT_LINES = Collections.emptyList();
+
+  @ProtoField(tag = 1, type = STRING, label = REPEATED)
+  public final List<String> lines;
+
+  @ProtoField(tag = 2)
+  public final Header header;
+
+  private Payload(Builder builder) {
+    super(builder);
+    this.lines = immutableCopyOf(builder.lines);
+    this.header = builder.header;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) return true;
+    if (!(other instanceof Payload)) return false;
+    Payload o = (Payload) other;
+    return equals(lines, o.lines)
+        && equals(header, o.header);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = hashCode;
+    if (result == 0) {
+      result = lines != null ? lines.hashCode() : 1;
+      result = result * 37 + (header != null ? header.hashCode() : 0);
+      hashCode = result;
+    }
+    return result;
+  }
+
+  public static final class Builder extends Message.Builder<Payload> {
+
+    public List<String> lines;
+    public Header header;
+
+    public Builder() {
+    }
+
+    public Builder(Payload message) {
+      super(message);
+      if (message == null) return;
+      this.lines = copyOf(message.lines);
+      this.header = message.header;
+    }
+
+    public Builder lines(List<String> lines) {
+      this.lines = lines;
+      return this;
+    }
+
+    public Builder header(Header header) {
+      this.header = header;
+      return this;
+    }
+
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.lines = null;
+      this.header = null;
+      return this;
+    }
+
+    @Override
+    public Payload build() {
+      return new Payload(this);
+    }
+  }
+}
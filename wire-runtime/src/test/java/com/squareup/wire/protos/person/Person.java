@@ -128,9 +128,22 @@ public final class Person extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.name = null;
+      this.id = null;
+      this.email = null;
+      this.phone = null;
+      return this;
+    }
+
     @Override
     public Person build() {
-      checkRequiredFields();
+      if (id == null || name == null) {
+        throw missingRequiredFields(id, "id",
+            name, "name");
+      }
       return new Person(this);
     }
   }
@@ -221,9 +234,19 @@ public final class Person extends Message {
         return this;
       }
 
+      @Override
+      public Builder clear() {
+        super.clear();
+        this.number = null;
+        this.type = null;
+        return this;
+      }
+
       @Override
       public PhoneNumber build() {
-        checkRequiredFields();
+        if (number == null) {
+          throw missingRequiredFields(number, "number");
+        }
         return new PhoneNumber(this);
       }
     }
@@ -0,0 +1,124 @@
+// Code generated by Wire protocol buffer compiler, do not edit.
+// Source file: ../wire-runtime/src/test/proto/person.proto
+package com.squareup.wire.protos.person;
+
+import com.squareup.wire.MessageView;
+import java.nio.ByteBuffer;
+
+import static com.squareup.wire.Message.Datatype.ENUM;
+import static com.squareup.wire.Message.Datatype.INT32;
+import static com.squareup.wire.Message.Datatype.MESSAGE;
+import static com.squareup.wire.Message.Datatype.STRING;
+
+/**
+ * A read-only view of an encoded {@link Person}.
+ */
+public final class PersonView extends MessageView {
+
+  public PersonView(byte[] data) {
+    super(data, 0, data.length);
+  }
+
+  public PersonView(byte[] data, int offset, int count) {
+    super(data, offset, count);
+  }
+
+  public PersonView(ByteBuffer buffer) {
+    super(buffer);
+  }
+
+  public boolean has_name() {
+    return lastOffset(1, STRING) != -1;
+  }
+
+  /**
+   * The customer's full name.
+   */
+  public String name() {
+    int offset = lastOffset(1, STRING);
+    if (offset == -1) return Person.DEFAULT_NAME;
+    return readString(offset);
+  }
+
+  public boolean has_id() {
+    return lastOffset(2, INT32) != -1;
+  }
+
+  /**
+   * The customer's ID number.
+   */
+  public int id() {
+    int offset = lastOffset(2, INT32);
+    if (offset == -1) return Person.DEFAULT_ID;
+    return readVarint32(offset);
+  }
+
+  public boolean has_email() {
+    return lastOffset(3, STRING) != -1;
+  }
+
+  /**
+   * Email address for the customer.
+   */
+  public String email() {
+    int offset = lastOffset(3, STRING);
+    if (offset == -1) return Person.DEFAULT_EMAIL;
+    return readString(offset);
+  }
+
+  public int phone_count() {
+    return count(4, MESSAGE);
+  }
+
+  /**
+   * A list of the customer's phone numbers.
+   */
+  public PersonView.PhoneNumberView phone(int index) {
+    int offset = offset(4, MESSAGE, index);
+    return new PersonView.PhoneNumberView(array(), contentOffset(offset), readVarint32(offset));
+  }
+
+  /**
+   * A read-only view of an encoded {@link Person.PhoneNumber}.
+   */
+  public static final class PhoneNumberView extends MessageView {
+
+    public PhoneNumberView(byte[] data) {
+      super(data, 0, data.length);
+    }
+
+    public PhoneNumberView(byte[] data, int offset, int count) {
+      super(data, offset, count);
+    }
+
+    public PhoneNumberView(ByteBuffer buffer) {
+      super(buffer);
+    }
+
+    public boolean has_number() {
+      return lastOffset(1, STRING) != -1;
+    }
+
+    /**
+     * The customer's phone number.
+     */
+    public String number() {
+      int offset = lastOffset(1, STRING);
+      if (offset == -1) return Person.PhoneNumber.DEFAULT_NUMBER;
+      return readString(offset);
+    }
+
+    public boolean has_type() {
+      return lastOffset(2, ENUM) != -1;
+    }
+
+    /**
+     * The type of phone stored here.
+     */
+    public Person.PhoneType type() {
+      int offset = lastOffset(2, ENUM);
+      if (offset == -1) return Person.PhoneNumber.DEFAULT_TYPE;
+      return readEnum(offset, Person.PhoneType.class);
+    }
+  }
+}
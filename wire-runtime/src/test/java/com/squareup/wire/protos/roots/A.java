@@ -79,6 +79,14 @@ public final class A extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.c = null;
+      this.d = null;
+      return this;
+    }
+
     @Override
     public A build() {
       return new A(this);
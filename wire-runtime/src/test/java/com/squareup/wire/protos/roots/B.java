@@ -48,9 +48,18 @@ public final class B extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.c = null;
+      return this;
+    }
+
     @Override
     public B build() {
-      checkRequiredFields();
+      if (c == null) {
+        throw missingRequiredFields(c, "c");
+      }
       return new B(this);
     }
   }
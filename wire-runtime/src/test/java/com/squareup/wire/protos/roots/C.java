@@ -50,6 +50,13 @@ public final class C extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.i = null;
+      return this;
+    }
+
     @Override
     public C build() {
       return new C(this);
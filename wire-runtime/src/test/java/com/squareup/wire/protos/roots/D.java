@@ -50,6 +50,13 @@ public final class D extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.i = null;
+      return this;
+    }
+
     @Override
     public D build() {
       return new D(this);
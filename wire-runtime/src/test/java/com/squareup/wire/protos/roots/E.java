@@ -69,6 +69,14 @@ public final class E extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.f = null;
+      this.g = null;
+      return this;
+    }
+
     @Override
     public E build() {
       return new E(this);
@@ -118,6 +126,13 @@ public final class E extends Message {
         return this;
       }
 
+      @Override
+      public Builder clear() {
+        super.clear();
+        this.i = null;
+        return this;
+      }
+
       @Override
       public F build() {
         return new F(this);
@@ -46,6 +46,13 @@ public final class H extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.ef = null;
+      return this;
+    }
+
     @Override
     public H build() {
       return new H(this);
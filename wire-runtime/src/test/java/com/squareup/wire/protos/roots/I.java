@@ -64,6 +64,13 @@ public final class I extends ExtendableMessage<I> {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.i = null;
+      return this;
+    }
+
     @Override
     public I build() {
       return new I(this);
@@ -46,6 +46,13 @@ public final class J extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.k = null;
+      return this;
+    }
+
     @Override
     public J build() {
       return new J(this);
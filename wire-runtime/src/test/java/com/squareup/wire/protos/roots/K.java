@@ -50,6 +50,13 @@ public final class K extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.i = null;
+      return this;
+    }
+
     @Override
     public K build() {
       return new K(this);
@@ -64,6 +64,13 @@ public final class ExternalMessage extends ExtendableMessage<ExternalMessage> {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.f = null;
+      return this;
+    }
+
     @Override
     public ExternalMessage build() {
       return new ExternalMessage(this);
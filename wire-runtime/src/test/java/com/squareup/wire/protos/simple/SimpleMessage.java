@@ -290,9 +290,29 @@ public final class SimpleMessage extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.optional_int32 = null;
+      this.optional_nested_msg = null;
+      this.optional_external_msg = null;
+      this.default_nested_enum = null;
+      this.required_int32 = null;
+      this.repeated_double = null;
+      this.default_foreign_enum = null;
+      this.no_default_foreign_enum = null;
+      this._package = null;
+      this.result = null;
+      this.other = null;
+      this.o = null;
+      return this;
+    }
+
     @Override
     public SimpleMessage build() {
-      checkRequiredFields();
+      if (required_int32 == null) {
+        throw missingRequiredFields(required_int32, "required_int32");
+      }
       return new SimpleMessage(this);
     }
   }
@@ -346,6 +366,13 @@ public final class SimpleMessage extends Message {
         return this;
       }
 
+      @Override
+      public Builder clear() {
+        super.clear();
+        this.bb = null;
+        return this;
+      }
+
       @Override
       public NestedMessage build() {
         return new NestedMessage(this);
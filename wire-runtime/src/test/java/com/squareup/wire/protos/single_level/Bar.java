@@ -50,6 +50,13 @@ public final class Bar extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.baz = null;
+      return this;
+    }
+
     @Override
     public Bar build() {
       return new Bar(this);
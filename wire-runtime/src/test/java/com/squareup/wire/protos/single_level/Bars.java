@@ -52,6 +52,13 @@ public final class Bars extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.bars = null;
+      return this;
+    }
+
     @Override
     public Bars build() {
       return new Bars(this);
@@ -50,6 +50,13 @@ public final class Foo extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.bar = null;
+      return this;
+    }
+
     @Override
     public Foo build() {
       return new Foo(this);
@@ -52,6 +52,13 @@ public final class Foos extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.foos = null;
+      return this;
+    }
+
     @Override
     public Foos build() {
       return new Foos(this);
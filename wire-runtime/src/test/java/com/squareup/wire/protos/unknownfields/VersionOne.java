@@ -50,6 +50,13 @@ public final class VersionOne extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.i = null;
+      return this;
+    }
+
     @Override
     public VersionOne build() {
       return new VersionOne(this);
@@ -114,6 +114,17 @@ public final class VersionTwo extends Message {
       return this;
     }
 
+    @Override
+    public Builder clear() {
+      super.clear();
+      this.i = null;
+      this.v2_i = null;
+      this.v2_s = null;
+      this.v2_f32 = null;
+      this.v2_f64 = null;
+      return this;
+    }
+
     @Override
     public VersionTwo build() {
       return new VersionTwo(this);